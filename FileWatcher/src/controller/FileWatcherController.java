@@ -37,6 +37,14 @@ public class FileWatcherController implements PropertyChangeListener {
         this.dbManager = DatabaseManager.getInstance();
         this.queryManager = new QueryManager();
         this.fileWatcher = new FileWatcher(model);
+        // Record what changed while the app was closed when watching resumes
+        fileWatcher.setCatchUp(true);
+        // Skip version control, dependency and build directories entirely
+        fileWatcher.setIgnorePatterns(IgnoreRules.DEFAULT_PATTERNS);
+        // Report a burst of changes on one file, such as a save, as one event
+        fileWatcher.setCoalesceWindow(200);
+        // Report an editor's save through temporary files as one modification
+        fileWatcher.setSavePatterns(SavePatterns.DEFAULT_PATTERNS);
 
         // Link Model to View
         model.addPropertyChangeListener(this);
@@ -251,7 +259,8 @@ public class FileWatcherController implements PropertyChangeListener {
         switch (evt.getPropertyName()) {
             case "fileEventAdded":
                 FileEvent event = (FileEvent) evt.getNewValue();
-                dbManager.saveToDatabase(event);
+                // Queued for the write-behind writer so the watch thread never waits on the disk
+                dbManager.submit(event);
                 SwingUtilities.invokeLater(() -> {
                     DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
                     String formattedTime = event.getMyTimeStamp().format(formatter);
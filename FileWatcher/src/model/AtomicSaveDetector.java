@@ -0,0 +1,362 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Recognizes a safe save, in which an editor or tool replaces a file through
+ * temporary files named by SavePatterns, and reports it as one ENTRY_MODIFY
+ * of the real file. Typical saves are:
+ *   - write "notes.txt.tmp", then rename it over "notes.txt";
+ *   - rename "notes.txt" to "notes.txt~", write a new "notes.txt", then
+ *     delete "notes.txt~";
+ *   - write "notes.txt___jb_tmp___", rename "notes.txt" to
+ *     "notes.txt___jb_old___", rename the first over "notes.txt" and delete
+ *     the second.
+ *
+ * An event on a temporary file opens a save and is held. Every later event
+ * on one of its temporary files or on the real file joins it, and the save
+ * ends once they have been quiet for a window. If the real file was put back
+ * in place by then, the whole save is passed on as a single modification;
+ * otherwise its events are passed on as they were, in order. A rename of an
+ * unnamed temporary file, such as ".goutputstream-ABC123", tells the real
+ * file.
+ *
+ * A backend may report the real file going away before the temporary file
+ * appears, as the JDK WatchService reports "notes.txt" deleted before
+ * "notes.txt~" created when the two cannot be paired into a rename. So a
+ * delete of any other file, or a rename moving it away, is held for a
+ * window as well; a save of that file opened within the window takes it
+ * in, and otherwise it is passed on when the window ends or when another
+ * event on its paths comes. A rename away taken in by a save that puts the
+ * file back is still passed on, since the file it was renamed to remains.
+ * Other events pass straight through. The stage is not thread safe; the
+ * FileWatcher's dispatch thread drives it.
+ *
+ * @param <T> context passed along with each event, such as its watched root
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+final class AtomicSaveDetector<T> implements EventStage {
+
+    /** Default quiet time that ends a save, in milliseconds. */
+    static final long DEFAULT_WINDOW_MILLIS = 200;
+
+    /** How long a save must be quiet to end. */
+    private final long myWindow;
+
+    /** Names of the temporary files. */
+    private final SavePatterns myPatterns;
+
+    /** Receives the events. */
+    private final BiConsumer<T, RawWatchEvent> myDownstream;
+
+    /** The saves in progress, oldest first. */
+    private final List<Save<T>> mySaves;
+
+    /** The save each temporary or real file takes part in. */
+    private final Map<Path, Save<T>> myPaths;
+
+    /** Held deletes and renames away, oldest first. */
+    private final List<Held<T>> myHeld;
+
+    /** The held event on each path, before and after a rename. */
+    private final Map<Path, Held<T>> myHeldPaths;
+
+    /**
+     * A delete or rename away of a real file, held in case a save of it follows.
+     *
+     * @param context the context of the event
+     * @param event the event
+     * @param deadline when it is passed on unless a save takes it in
+     * @param <T> the type of the context
+     */
+    private record Held<T>(T context, RawWatchEvent event, long deadline) {
+    }
+
+    /**
+     * A save in progress.
+     *
+     * @param <T> the type of the context
+     */
+    private static final class Save<T> {
+
+        /** The real file, or null until an unnamed temporary file is renamed onto it. */
+        private Path myTarget;
+
+        /** The contexts of the held events. */
+        private final List<T> myContexts = new ArrayList<>();
+
+        /** The held events, in order. */
+        private final List<RawWatchEvent> myEvents = new ArrayList<>();
+
+        /** The paths taking part. */
+        private final List<Path> myPaths = new ArrayList<>();
+
+        /** True if the last event on the real file put it back in place. */
+        private boolean myReplaced;
+
+        /** When the save ends unless more events arrive. */
+        private long myDeadline;
+    }
+
+    /**
+     * Creates a detector.
+     *
+     * @param theWindowMillis how long a save must be quiet to end; 0 detects nothing
+     * @param thePatterns names of the temporary files
+     * @param theDownstream receives the events
+     */
+    AtomicSaveDetector(final long theWindowMillis, final SavePatterns thePatterns,
+                       final BiConsumer<T, RawWatchEvent> theDownstream) {
+        myWindow = theWindowMillis;
+        myPatterns = thePatterns;
+        myDownstream = theDownstream;
+        mySaves = new ArrayList<>();
+        myPaths = new HashMap<>();
+        myHeld = new ArrayList<>();
+        myHeldPaths = new HashMap<>();
+    }
+
+    /**
+     * Takes one event. It joins the save its path takes part in, opens a new
+     * save if it is about a temporary file, is held if it removes a real
+     * file, or is passed on right away.
+     *
+     * @param theContext context of the event
+     * @param theEvent the event
+     * @param theNow the current time in milliseconds
+     */
+    void accept(final T theContext, final RawWatchEvent theEvent, final long theNow) {
+        if (myWindow <= 0 || myPatterns.isEmpty()) {
+            myDownstream.accept(theContext, theEvent);
+            return;
+        }
+        if (theEvent.isOverflow()) {
+            flushAll();
+            myDownstream.accept(theContext, theEvent);
+            return;
+        }
+        Path path = theEvent.getMyPath();
+        Path previous = theEvent.getMyPreviousPath();
+        Save<T> save = myPaths.get(path);
+        if (save == null && previous != null) {
+            save = myPaths.get(previous);
+        }
+        if (save == null) {
+            save = open(previous != null && isTemporary(previous) ? previous : path);
+        }
+        if (save == null) {
+            // Whatever is held on these paths happened first
+            release(path);
+            release(previous);
+            if (theEvent.getMyKind() == StandardWatchEventKinds.ENTRY_DELETE || previous != null) {
+                // The real file went away; a save of it may still show up
+                hold(new Held<>(theContext, theEvent, theNow + myWindow));
+            } else {
+                myDownstream.accept(theContext, theEvent);
+            }
+            return;
+        }
+        if (previous != null && save.myTarget == null && !isTemporary(path)) {
+            // An unnamed temporary file was renamed onto the real file
+            save.myTarget = path;
+        }
+        if (save.myTarget != null) {
+            Held<T> held = myHeldPaths.get(save.myTarget);
+            Path moved = held == null ? null : held.event().getMyPreviousPath();
+            if (held != null && (moved == null || moved.equals(save.myTarget))) {
+                // The real file went away as the save began
+                unhold(held);
+                add(save, held.context(), held.event());
+            }
+        }
+        release(path);
+        release(previous);
+        add(save, theContext, theEvent);
+        save.myDeadline = theNow + myWindow;
+    }
+
+    @Override
+    public void flush(final long theNow) {
+        while (!myHeld.isEmpty() && myHeld.get(0).deadline() <= theNow) {
+            release(myHeld.get(0));
+        }
+        Iterator<Save<T>> saves = mySaves.iterator();
+        while (saves.hasNext()) {
+            Save<T> save = saves.next();
+            if (save.myDeadline <= theNow) {
+                saves.remove();
+                end(save);
+            }
+        }
+    }
+
+    @Override
+    public void flushAll() {
+        flush(Long.MAX_VALUE);
+    }
+
+    @Override
+    public long timeToNextFlush(final long theNow) {
+        long wait = myHeld.isEmpty() ? -1 : Math.max(0, myHeld.get(0).deadline() - theNow);
+        for (Save<T> save : mySaves) {
+            long due = Math.max(0, save.myDeadline - theNow);
+            wait = wait < 0 ? due : Math.min(wait, due);
+        }
+        return wait;
+    }
+
+    /**
+     * Opens a save if a path is a temporary file.
+     *
+     * @param theTemporary the path that may be a temporary file
+     * @return the new save, or null if the path is not temporary
+     */
+    private Save<T> open(final Path theTemporary) {
+        String name = theTemporary.getFileName().toString();
+        if (!myPatterns.isTemporary(name)) {
+            return null;
+        }
+        Save<T> save = new Save<>();
+        String realName = myPatterns.realNameOf(name);
+        if (realName != null) {
+            save.myTarget = theTemporary.resolveSibling(realName);
+            join(save, save.myTarget);
+        }
+        mySaves.add(save);
+        return save;
+    }
+
+    /**
+     * Adds an event to a save.
+     *
+     * @param theSave the save
+     * @param theContext context of the event
+     * @param theEvent the event
+     */
+    private void add(final Save<T> theSave, final T theContext, final RawWatchEvent theEvent) {
+        Path path = theEvent.getMyPath();
+        Path previous = theEvent.getMyPreviousPath();
+        theSave.myContexts.add(theContext);
+        theSave.myEvents.add(theEvent);
+        join(theSave, path);
+        if (previous != null) {
+            join(theSave, previous);
+        }
+        if (path.equals(theSave.myTarget)) {
+            theSave.myReplaced = theEvent.getMyKind() != StandardWatchEventKinds.ENTRY_DELETE;
+        } else if (previous != null && previous.equals(theSave.myTarget)) {
+            theSave.myReplaced = false;
+        }
+    }
+
+    /**
+     * Holds a delete or rename away.
+     *
+     * @param theHeld the held event
+     */
+    private void hold(final Held<T> theHeld) {
+        myHeld.add(theHeld);
+        myHeldPaths.put(theHeld.event().getMyPath(), theHeld);
+        if (theHeld.event().getMyPreviousPath() != null) {
+            myHeldPaths.put(theHeld.event().getMyPreviousPath(), theHeld);
+        }
+    }
+
+    /**
+     * Stops holding an event without passing it on.
+     *
+     * @param theHeld the held event
+     */
+    private void unhold(final Held<T> theHeld) {
+        myHeld.remove(theHeld);
+        myHeldPaths.remove(theHeld.event().getMyPath(), theHeld);
+        if (theHeld.event().getMyPreviousPath() != null) {
+            myHeldPaths.remove(theHeld.event().getMyPreviousPath(), theHeld);
+        }
+    }
+
+    /**
+     * Passes on the event held on a path, if any.
+     *
+     * @param thePath the path, or null
+     */
+    private void release(final Path thePath) {
+        Held<T> held = thePath == null ? null : myHeldPaths.get(thePath);
+        if (held != null) {
+            release(held);
+        }
+    }
+
+    /**
+     * Passes on a held event.
+     *
+     * @param theHeld the held event
+     */
+    private void release(final Held<T> theHeld) {
+        unhold(theHeld);
+        myDownstream.accept(theHeld.context(), theHeld.event());
+    }
+
+    /**
+     * Makes a path take part in a save, unless it already takes part in another.
+     *
+     * @param theSave the save
+     * @param thePath the path
+     */
+    private void join(final Save<T> theSave, final Path thePath) {
+        if (myPaths.putIfAbsent(thePath, theSave) == null) {
+            theSave.myPaths.add(thePath);
+        }
+    }
+
+    /**
+     * Ends a save and passes on what it stands for.
+     *
+     * @param theSave the save
+     */
+    private void end(final Save<T> theSave) {
+        for (Path path : theSave.myPaths) {
+            myPaths.remove(path, theSave);
+        }
+        if (theSave.myReplaced) {
+            boolean reconciled = true;
+            for (int i = 0; i < theSave.myEvents.size(); i++) {
+                RawWatchEvent event = theSave.myEvents.get(i);
+                reconciled &= event.isReconciled();
+                if (event.getMyPreviousPath() != null && event.getMyPreviousPath().equals(theSave.myTarget)
+                        && !isTemporary(event.getMyPath())) {
+                    // Moved away to a file that remains, not to a backup
+                    myDownstream.accept(theSave.myContexts.get(i), event);
+                }
+            }
+            myDownstream.accept(theSave.myContexts.get(theSave.myContexts.size() - 1),
+                    new RawWatchEvent(StandardWatchEventKinds.ENTRY_MODIFY, theSave.myTarget, null,
+                            reconciled));
+            return;
+        }
+        for (int i = 0; i < theSave.myEvents.size(); i++) {
+            myDownstream.accept(theSave.myContexts.get(i), theSave.myEvents.get(i));
+        }
+    }
+
+    /**
+     * Returns true if a path is named like a temporary file.
+     *
+     * @param thePath the path
+     * @return whether its name matches a pattern
+     */
+    private boolean isTemporary(final Path thePath) {
+        return myPatterns.isTemporary(thePath.getFileName().toString());
+    }
+}
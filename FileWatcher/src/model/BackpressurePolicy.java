@@ -0,0 +1,43 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+/**
+ * What happens to the events of a subscriber to a FileWatcher that takes
+ * them more slowly than they are reported. The FileWatcher hands its events
+ * to the subscribers through a fixed size ring; the policy says what to do
+ * when a subscriber falls a whole ring behind.
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+public enum BackpressurePolicy {
+
+    /**
+     * Lose nothing: the FileWatcher waits for the subscriber before it
+     * reuses a slot of the ring. The backends keep queuing changes while it
+     * waits, so no change is lost to the kernel either.
+     */
+    BLOCK,
+
+    /**
+     * Never hold up the FileWatcher: when the subscriber falls a ring
+     * behind, the oldest events it has not taken are lost and counted.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Like DROP_OLDEST, but a subscriber that falls behind takes all waiting
+     * events at once and gets the changes on the same file merged into one
+     * event, so it catches up sooner.
+     */
+    COALESCE,
+
+    /**
+     * Lose nothing and never hold up the FileWatcher for long: the events
+     * are moved off the ring at once, kept in memory up to the size of the
+     * ring and written to a temporary file beyond that, and handed to the
+     * subscriber in order on a thread of its own.
+     */
+    SPILL
+}
@@ -4,14 +4,29 @@ package model;
 /* TCSS 360 File watcher project */
 
 import java.sql.*;
+import java.time.Instant;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Manages all interactions with the SQLite database.
- * Implements singleton pattern to ensure only one connection is used.
+ * Implements singleton pattern so the whole application shares one writer.
+ * The database runs in WAL mode with a single writer connection, owned by an
+ * EventWriter that writes events in batches, and a small pool of read-only
+ * connections for queries. Queries read a consistent snapshot and never
+ * block ingestion, so the watcher thread and the UI can use it concurrently.
+ * Events are stored in daily partitions (see EventPartitions): queries only
+ * read the days in their time range, and retention and clearing drop whole days.
+ * Per-minute and per-hour counts are kept up to date with every batch (see
+ * EventRollups), so countEvents() reads buckets instead of events.
  * Provides methods to insert, query, and clear file events.
  *
  * Note: Requires SQLite JDBC driver.
@@ -26,33 +41,174 @@ public class DatabaseManager {
     /** Path to the SQLite database file. */
     private final String myDBPath = "file_events.db";
 
-    /** Connection to the SQLite database. */
+    /** Writer connection; set up the schema, then owned by the EventWriter. */
     private Connection myConnection;
 
+    /** Read-only connections used by queries. */
+    private ReaderPool myReaders;
+
+    /** Event table of schema version 1, kept for the version 0 migration. */
+    private static final String CREATE_EVENTS_TABLE_V1 = """
+            CREATE TABLE file_events (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                file_name TEXT,
+                file_extension TEXT,
+                path TEXT,
+                event_type TEXT,
+                timestamp INTEGER NOT NULL
+            );
+            """;
+
+    /**
+     * Matches events in a directory subtree; bound with subtreeRange().
+     * Both branches are answered from the directories and idx_events_dir_time indexes.
+     */
+    private static final String SUBTREE_CLAUSE = """
+            (e.directory_id IN (SELECT id FROM directories WHERE path >= ? AND path < ?)
+             OR (e.directory_id = (SELECT id FROM directories WHERE path = ?)
+                 AND COALESCE(e.leaf_name, n.name) = ?))
+            """;
+
+    /** Matches events with one extension; bound with the extension string. */
+    private static final String EXTENSION_CLAUSE =
+            "e.extension_id = (SELECT id FROM extensions WHERE extension = ?)";
+
+    /** Dictionary of directory paths, each ending with its separator. */
+    private static final String CREATE_DIRECTORIES_TABLE = """
+            CREATE TABLE IF NOT EXISTS directories (
+                id INTEGER PRIMARY KEY,
+                path TEXT NOT NULL UNIQUE
+            );
+            """;
+
+    /** Dictionary of file names. */
+    private static final String CREATE_FILE_NAMES_TABLE = """
+            CREATE TABLE IF NOT EXISTS file_names (
+                id INTEGER PRIMARY KEY,
+                name TEXT NOT NULL UNIQUE
+            );
+            """;
+
+    /**
+     * Trigram full-text indexes over the file name and directory dictionaries.
+     * They use the dictionaries as external content, so the strings are not
+     * stored twice, and triggers index every newly interned string in the
+     * same transaction as the event batch that introduced it.
+     */
+    private static final String[] CREATE_SEARCH_INDEXES = {
+        """
+            CREATE VIRTUAL TABLE IF NOT EXISTS file_names_fts USING fts5 (
+                name, content = 'file_names', content_rowid = 'id', tokenize = 'trigram'
+            );
+            """,
+        """
+            CREATE TRIGGER IF NOT EXISTS file_names_fts_insert AFTER INSERT ON file_names BEGIN
+                INSERT INTO file_names_fts (rowid, name) VALUES (new.id, new.name);
+            END;
+            """,
+        """
+            CREATE VIRTUAL TABLE IF NOT EXISTS directories_fts USING fts5 (
+                path, content = 'directories', content_rowid = 'id', tokenize = 'trigram'
+            );
+            """,
+        """
+            CREATE TRIGGER IF NOT EXISTS directories_fts_insert AFTER INSERT ON directories BEGIN
+                INSERT INTO directories_fts (rowid, path) VALUES (new.id, new.path);
+            END;
+            """
+    };
+
+    /** Dictionary of file extensions. */
+    private static final String CREATE_EXTENSIONS_TABLE = """
+            CREATE TABLE IF NOT EXISTS extensions (
+                id INTEGER PRIMARY KEY,
+                extension TEXT NOT NULL UNIQUE
+            );
+            """;
+
+    /** Placeholder replaced by a partition table name in event queries. */
+    private static final String PARTITION = "{partition}";
+
+    /**
+     * Selects the events of one partition with their dictionary ids resolved
+     * back to strings.
+     */
+    private static final String SELECT_EVENTS = """
+            SELECT e.id, n.name AS file_name, x.extension AS file_extension,
+                   d.path || COALESCE(e.leaf_name, n.name) AS path,
+                   e.event_type, e.timestamp, e.reconciled,
+                   pd.path || pn.name AS previous_path, e.event_count, e.last_timestamp,
+                   e.file_size
+            FROM {partition} e
+            LEFT JOIN file_names n ON n.id = e.name_id
+            LEFT JOIN directories d ON d.id = e.directory_id
+            LEFT JOIN extensions x ON x.id = e.extension_id
+            LEFT JOIN file_names pn ON pn.id = e.previous_name_id
+            LEFT JOIN directories pd ON pd.id = e.previous_directory_id
+            """;
+
+    /** Default number of rows fetched at a time by streaming queries. */
+    public static final int DEFAULT_FETCH_SIZE = 500;
+
+    /** Number of rows fetched at a time by streaming queries. */
+    private volatile int myFetchSize = DEFAULT_FETCH_SIZE;
+
+    /** Write-behind writer that persists events in batches. */
+    private EventWriter myWriter;
+
     /** Singleton instance. */
-    private static DatabaseManager myInstance;
+    private static volatile DatabaseManager myInstance;
 
-    /** Date and time formatter. */
-    private final DateTimeFormatter formatter;
+    /**
+     * Current schema version, stored in PRAGMA user_version.
+     * Version 0 is the original schema with ISO text timestamps and no indexes.
+     */
+    static final int SCHEMA_VERSION = 9;
 
     /**
      * Private constructor (singleton pattern).
      */
     private DatabaseManager() {
         connect();
-        formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        migrate();
+        try {
+            myWriter = new EventWriter(myConnection);
+            List<Connection> readers = new ArrayList<>();
+            for (int i = 0; i < ReaderPool.DEFAULT_SIZE; i++) {
+                Connection reader = openConnection();
+                try (Statement stmt = reader.createStatement()) {
+                    stmt.execute("PRAGMA query_only = ON;");
+                }
+                // Each query reads the catalog and its partitions in one snapshot
+                reader.setAutoCommit(false);
+                readers.add(reader);
+            }
+            myReaders = new ReaderPool(readers);
+            myWriter.execute(EventPartitions::applyRetention);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "database-shutdown"));
     }
 
     /**
-     * Returns the singleton instance of the database manager.
+     * Returns the singleton instance of the database manager. Safe to call
+     * from any thread; the instance is created once.
      *
      * @return instance of DatabaseManager
      */
     public static DatabaseManager getInstance() {
-        if (myInstance == null) {
-            myInstance = new DatabaseManager();
+        DatabaseManager instance = myInstance;
+        if (instance == null) {
+            synchronized (DatabaseManager.class) {
+                instance = myInstance;
+                if (instance == null) {
+                    instance = new DatabaseManager();
+                    myInstance = instance;
+                }
+            }
         }
-        return myInstance;
+        return instance;
     }
 
     /**
@@ -60,137 +216,524 @@ public class DatabaseManager {
      */
     private void connect() {
         try {
-            myConnection = DriverManager.getConnection("jdbc:sqlite:" + myDBPath);
+            myConnection = openConnection();
+            try (Statement stmt = myConnection.createStatement()) {
+                // WAL is stored in the file, so every later connection uses it too
+                stmt.execute("PRAGMA journal_mode = WAL;");
+                stmt.execute("PRAGMA synchronous = NORMAL;");
+            }
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * Creates the table for file events if it doesn't already exist.
+     * Opens a new connection to the database file. Connections wait for
+     * locks held by other connections instead of failing right away.
+     *
+     * @return the new connection
+     * @throws SQLException if the connection cannot be opened
+     */
+    private Connection openConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + myDBPath);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = 5000;");
+        }
+        return connection;
+    }
+
+    /**
+     * Flushes pending events and closes the writer and reader connections.
+     */
+    public void close() {
+        if (myWriter != null) {
+            myWriter.close();
+        }
+        if (myReaders != null) {
+            myReaders.close();
+        }
+    }
+
+    /**
+     * Brings the database schema up to SCHEMA_VERSION. Each step runs in its
+     * own transaction and bumps PRAGMA user_version, so an interrupted upgrade
+     * resumes from the last completed step on the next start. Steps that
+     * rebuild the event table re-insert every event through the current
+     * EventInserter, which already produces the newest schema, so no further
+     * steps are needed after them.
+     */
+    private void migrate() {
+        if (myConnection == null) {
+            return;
+        }
+        try {
+            int version = readSchemaVersion();
+            if (version == 0 && !tableExists("file_events")) {
+                createTables();
+                writeSchemaVersion(SCHEMA_VERSION);
+                return;
+            }
+            while (version < SCHEMA_VERSION) {
+                myConnection.setAutoCommit(false);
+                try {
+                    boolean rebuilt = applyMigration(version + 1);
+                    version = rebuilt ? SCHEMA_VERSION : version + 1;
+                    writeSchemaVersion(version);
+                    myConnection.commit();
+                } catch (SQLException e) {
+                    myConnection.rollback();
+                    throw e;
+                } finally {
+                    myConnection.setAutoCommit(true);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("SQLException in migrate: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Creates the current schema in an empty database.
+     *
+     * @throws SQLException if a statement fails
+     */
+    private void createTables() throws SQLException {
+        try (Statement stmt = myConnection.createStatement()) {
+            stmt.execute(CREATE_DIRECTORIES_TABLE);
+            stmt.execute(CREATE_EXTENSIONS_TABLE);
+            stmt.execute(CREATE_FILE_NAMES_TABLE);
+            for (String sql : CREATE_SEARCH_INDEXES) {
+                stmt.execute(sql);
+            }
+            EventPartitions.createCatalog(stmt);
+            EventRollups.createTables(stmt);
+        }
+    }
+
+    /**
+     * Applies the migration that upgrades the schema to the given version.
+     *
+     * @param theVersion the version to upgrade to
+     * @return true if the step rebuilt the events into the current schema
+     * @throws SQLException if a statement fails
+     */
+    private boolean applyMigration(final int theVersion) throws SQLException {
+        try (Statement stmt = myConnection.createStatement()) {
+            switch (theVersion) {
+                case 1:
+                    // Text timestamps were LocalDateTime.toString() in local time
+                    stmt.execute("ALTER TABLE file_events RENAME TO file_events_v0;");
+                    stmt.execute(CREATE_EVENTS_TABLE_V1);
+                    stmt.execute("""
+                            INSERT INTO file_events (id, file_name, file_extension, path, event_type, timestamp)
+                            SELECT id, file_name, file_extension, path, event_type,
+                                   COALESCE(CAST(round((julianday(timestamp, 'utc') - 2440587.5) * 86400000)
+                                                 AS INTEGER), 0)
+                            FROM file_events_v0;
+                            """);
+                    stmt.execute("DROP TABLE file_events_v0;");
+                    stmt.execute("CREATE INDEX idx_events_time ON file_events (timestamp);");
+                    stmt.execute("CREATE INDEX idx_events_type_time ON file_events (event_type, timestamp);");
+                    stmt.execute("CREATE INDEX idx_events_ext_time ON file_events (file_extension, timestamp);");
+                    return false;
+                case 2:
+                    // Paths and extensions move into dictionary tables
+                    rebuildEvents("SELECT *, 0 AS reconciled, NULL AS previous_path, 1 AS event_count, "
+                            + "NULL AS last_timestamp, NULL AS file_size FROM file_events_old e");
+                    return true;
+                case 3:
+                    // File names move into a dictionary with a trigram search index
+                    rebuildEvents("""
+                            SELECT e.id, e.file_name, x.extension AS file_extension,
+                                   d.path || COALESCE(e.leaf_name, e.file_name) AS path,
+                                   e.event_type, e.timestamp, 0 AS reconciled, NULL AS previous_path,
+                                   1 AS event_count, NULL AS last_timestamp, NULL AS file_size
+                            FROM file_events_old e
+                            LEFT JOIN directories d ON d.id = e.directory_id
+                            LEFT JOIN extensions x ON x.id = e.extension_id
+                            """);
+                    return true;
+                case 4:
+                    // The single event table is split into daily partitions
+                    rebuildEvents("""
+                            SELECT e.id, n.name AS file_name, x.extension AS file_extension,
+                                   d.path || COALESCE(e.leaf_name, n.name) AS path,
+                                   e.event_type, e.timestamp, 0 AS reconciled, NULL AS previous_path,
+                                   1 AS event_count, NULL AS last_timestamp, NULL AS file_size
+                            FROM file_events_old e
+                            LEFT JOIN file_names n ON n.id = e.name_id
+                            LEFT JOIN directories d ON d.id = e.directory_id
+                            LEFT JOIN extensions x ON x.id = e.extension_id
+                            """);
+                    return true;
+                case 5:
+                    // Rollup counts of the events stored so far
+                    EventRollups.createTables(stmt);
+                    countStoredEvents();
+                    return false;
+                case 6:
+                    // Events can be marked as found on start, for changes made while not watching
+                    for (String partition : EventPartitions.overlapping(myConnection, null, null)) {
+                        stmt.execute("ALTER TABLE " + partition
+                                + " ADD COLUMN reconciled INTEGER NOT NULL DEFAULT 0;");
+                    }
+                    return false;
+                case 7:
+                    // Renames keep the path they came from
+                    for (String partition : EventPartitions.overlapping(myConnection, null, null)) {
+                        stmt.execute("ALTER TABLE " + partition
+                                + " ADD COLUMN previous_name_id INTEGER REFERENCES file_names (id);");
+                        stmt.execute("ALTER TABLE " + partition
+                                + " ADD COLUMN previous_directory_id INTEGER REFERENCES directories (id);");
+                    }
+                    return false;
+                case 8:
+                    // Coalesced events keep how many changes they stand for
+                    for (String partition : EventPartitions.overlapping(myConnection, null, null)) {
+                        stmt.execute("ALTER TABLE " + partition
+                                + " ADD COLUMN event_count INTEGER NOT NULL DEFAULT 1;");
+                        stmt.execute("ALTER TABLE " + partition + " ADD COLUMN last_timestamp INTEGER;");
+                    }
+                    return false;
+                case 9:
+                    // Events keep the size of the file, such as the final size of a settled copy
+                    for (String partition : EventPartitions.overlapping(myConnection, null, null)) {
+                        stmt.execute("ALTER TABLE " + partition + " ADD COLUMN file_size INTEGER;");
+                    }
+                    return false;
+                default:
+                    throw new SQLException("Unknown schema version: " + theVersion);
+            }
+        }
+    }
+
+    /**
+     * Moves the event table aside as file_events_old, creates the current
+     * schema and re-inserts every old event through an EventInserter.
+     * Dictionary tables that already exist are kept and reused.
+     *
+     * @param theOldSelect query over file_events_old, aliased e, returning the id, file_name,
+     *                     file_extension, path, event_type, timestamp, reconciled,
+     *                     previous_path, event_count, last_timestamp and file_size columns
+     * @throws SQLException if a statement fails
+     */
+    private void rebuildEvents(final String theOldSelect) throws SQLException {
+        try (Statement stmt = myConnection.createStatement()) {
+            stmt.execute("ALTER TABLE file_events RENAME TO file_events_old;");
+            List<String> oldIndexes = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery("SELECT name FROM sqlite_master WHERE type = 'index' "
+                    + "AND tbl_name = 'file_events_old' AND sql IS NOT NULL;")) {
+                while (rs.next()) {
+                    oldIndexes.add(rs.getString(1));
+                }
+            }
+            for (String index : oldIndexes) {
+                stmt.execute("DROP INDEX " + index + ";");
+            }
+            createTables();
+            // Index dictionary entries that existed before their search index did
+            stmt.execute("INSERT INTO directories_fts (directories_fts) VALUES ('rebuild');");
+            copyEncodedEvents(theOldSelect + " ORDER BY e.id");
+            stmt.execute("DROP TABLE file_events_old;");
+        }
+    }
+
+    /**
+     * Adds every stored event to the rollup counts.
+     *
+     * @throws SQLException if the events cannot be read or counted
+     */
+    private void countStoredEvents() throws SQLException {
+        EventInserter inserter = new EventInserter(myConnection);
+        try (Statement stmt = myConnection.createStatement()) {
+            for (String partition : EventPartitions.overlapping(myConnection, null, null)) {
+                // The partitions get their later columns in the next steps
+                String select = """
+                        SELECT e.id, n.name AS file_name, x.extension AS file_extension,
+                               d.path || COALESCE(e.leaf_name, n.name) AS path,
+                               e.event_type, e.timestamp, 0 AS reconciled, NULL AS previous_path,
+                               1 AS event_count, NULL AS last_timestamp, NULL AS file_size
+                        FROM {partition} e
+                        LEFT JOIN file_names n ON n.id = e.name_id
+                        LEFT JOIN directories d ON d.id = e.directory_id
+                        LEFT JOIN extensions x ON x.id = e.extension_id
+                        """;
+                try (ResultSet rs = stmt.executeQuery(select.replace(PARTITION, partition))) {
+                    while (rs.next()) {
+                        inserter.count(parseResultSet(rs));
+                    }
+                }
+                inserter.execute();
+            }
+        } finally {
+            inserter.close();
+        }
+    }
+
+    /**
+     * Copies events into their partitions, interning strings on the way. Row ids are kept.
+     *
+     * @param theSelect query returning the columns read by parseResultSet
+     * @throws SQLException if the copy fails
+     */
+    private void copyEncodedEvents(final String theSelect) throws SQLException {
+        EventInserter inserter = new EventInserter(myConnection);
+        try (Statement stmt = myConnection.createStatement();
+             ResultSet rs = stmt.executeQuery(theSelect)) {
+            int pending = 0;
+            while (rs.next()) {
+                inserter.add(parseResultSet(rs), rs.getLong("id"));
+                if (++pending == EventWriter.DEFAULT_BATCH_SIZE) {
+                    inserter.execute();
+                    pending = 0;
+                }
+            }
+            inserter.execute();
+        } finally {
+            inserter.close();
+        }
+    }
+
+    /**
+     * Reads the schema version stored in the database file.
+     *
+     * @return the stored version, 0 for a new or original database
+     * @throws SQLException if the pragma cannot be read
+     */
+    private int readSchemaVersion() throws SQLException {
+        try (Statement stmt = myConnection.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version;")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Stores the schema version in the database file.
+     *
+     * @param theVersion the version to store
+     * @throws SQLException if the pragma cannot be written
      */
-    private void createTableIfNotExists() {
-        String sql = """
-                CREATE TABLE IF NOT EXISTS file_events (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    file_name TEXT,
-                    file_extension TEXT,
-                    path TEXT,
-                    event_type TEXT,
-                    timestamp TEXT
-                );
-                """;
+    private void writeSchemaVersion(final int theVersion) throws SQLException {
         try (Statement stmt = myConnection.createStatement()) {
-            stmt.execute(sql);
+            stmt.execute("PRAGMA user_version = " + theVersion + ";");
+        }
+    }
+
+    /**
+     * Checks whether a table exists in the database.
+     *
+     * @param theTable the table name
+     * @return true if the table exists
+     * @throws SQLException if the catalog cannot be read
+     */
+    private boolean tableExists(final String theTable) throws SQLException {
+        try (PreparedStatement pstmt = myConnection.prepareStatement(
+                "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?;")) {
+            pstmt.setString(1, theTable);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * Returns the schema version of the open database.
+     *
+     * @return the schema version, or -1 if it cannot be read
+     */
+    public int getSchemaVersion() {
+        if (myReaders == null) {
+            return -1;
+        }
+        try {
+            Connection reader = myReaders.borrow();
+            try (Statement stmt = reader.createStatement();
+                 ResultSet rs = stmt.executeQuery("PRAGMA user_version;")) {
+                return rs.next() ? rs.getInt(1) : 0;
+            } finally {
+                myReaders.release(reader);
+            }
         } catch (SQLException e) {
             e.printStackTrace();
+            return -1;
         }
     }
 
     /**
-     * Saves a FileEvent into the database.
+     * Queues a FileEvent to be saved by the write-behind writer. Returns
+     * immediately; the event is committed with the writer's next batch.
      *
      * @param theEvent the FileEvent to save
      */
-    public void saveToDatabase(final FileEvent theEvent) {
-        connect();
-        createTableIfNotExists();
+    public void submit(final FileEvent theEvent) {
+        if (theEvent == null) {
+            System.err.println("Error: FileEvent is null");
+            return;
+        }
+
+        if (myWriter == null) {
+            System.err.println("Error: Event writer is not available");
+            return;
+        }
+        myWriter.submit(theEvent);
+    }
 
+    /**
+     * Saves a FileEvent into the database and waits until it is committed.
+     * Use submit() to save without waiting.
+     *
+     * @param theEvent the FileEvent to save
+     */
+    public void saveToDatabase(final FileEvent theEvent) {
         if (theEvent == null) {
             System.err.println("Error: FileEvent is null");
             return;
         }
 
-        if (myConnection == null) {
-            System.err.println("Error: Database connection is null after ensureConnection");
+        if (myWriter == null) {
+            System.err.println("Error: Event writer is not available");
             return;
         }
-        String sql = """
-            INSERT INTO file_events (file_name, file_extension, path, event_type, timestamp)
-            VALUES (?, ?, ?, ?, ?);
-            """;
-        try (PreparedStatement pstmt = myConnection.prepareStatement(sql)) {
-            pstmt.setString(1, theEvent.getMyFileName());
-            pstmt.setString(2, theEvent.getMyFileExtension());
-            pstmt.setString(3, theEvent.getMyPath());
-            pstmt.setString(4, theEvent.getMyEventType().toString());
-            pstmt.setString(5, theEvent.getMyTimeStamp().toString());
-            pstmt.executeUpdate();
+        myWriter.submit(theEvent);
+        myWriter.flush();
+    }
+
+    /**
+     * Returns the write-behind writer used to persist events.
+     *
+     * @return the event writer
+     */
+    public EventWriter getEventWriter() {
+        return myWriter;
+    }
+
+    /**
+     * Converts a local timestamp to the epoch milliseconds stored in the database.
+     *
+     * @param theTime the local date and time
+     * @return milliseconds since the epoch
+     */
+    static long toEpochMillis(final LocalDateTime theTime) {
+        return theTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Converts stored epoch milliseconds back to a local timestamp.
+     *
+     * @param theMillis milliseconds since the epoch
+     * @return the local date and time
+     */
+    static LocalDateTime toLocalDateTime(final long theMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(theMillis), ZoneId.systemDefault());
+    }
+
+    /**
+     * Clears all events from the database by dropping every partition.
+     * Takes about the same time no matter how many events are stored.
+     */
+    public void clearDatabase() {
+        if (myWriter == null) {
+            System.err.println("Error: Database connection is null");
+            return;
+        }
+        try {
+            myWriter.execute(connection -> EventPartitions.dropBefore(connection, Long.MAX_VALUE));
         } catch (SQLException e) {
-            System.err.println("SQLException in saveToDatabase: " + e.getMessage());
-            e.printStackTrace();
-        } catch (Exception e) {
-            System.err.println("Unexpected exception in saveToDatabase: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
     /**
-     * Clears all events from the database.
+     * Sets how many days of events are kept, counting today, and drops the
+     * days that are now older. The setting is stored in the database, and
+     * later days are dropped as new days start.
+     *
+     * @param theDays number of days to keep, or 0 to keep events forever
      */
-    public void clearDatabase() {
-        String sql = "DELETE FROM file_events;";
-        try (Statement stmt = myConnection.createStatement()) {
-            stmt.executeUpdate(sql);
+    public void setRetentionDays(final int theDays) {
+        if (theDays < 0) {
+            throw new IllegalArgumentException("Retention must not be negative: " + theDays);
+        }
+        if (myWriter == null) {
+            System.err.println("Error: Database connection is null");
+            return;
+        }
+        try {
+            myWriter.execute(connection -> {
+                EventPartitions.setRetentionDays(connection, theDays);
+                EventPartitions.applyRetention(connection);
+            });
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * Queries for all events in the database.
+     * Returns how many days of events are kept.
      *
-     * @return list of FileEvents
+     * @return number of days kept, 0 if events are kept forever, or -1 if it cannot be read
      */
-    public List<FileEvent> queryAllEvents() {
-        List<FileEvent> results = new ArrayList<>();
-        String sql = "SELECT * FROM file_events;";
-        try (Statement stmt = myConnection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-
-            while (rs.next()) {
-                results.add(parseResultSet(rs));
+    public int getRetentionDays() {
+        if (myReaders == null) {
+            return -1;
+        }
+        try {
+            Connection reader = myReaders.borrow();
+            try {
+                return EventPartitions.getRetentionDays(reader);
+            } finally {
+                myReaders.release(reader);
             }
-
         } catch (SQLException e) {
             e.printStackTrace();
+            return -1;
         }
-        return results;
+    }
+
+    /**
+     * Queries for all events in the database.
+     *
+     * @return list of FileEvents
+     */
+    public List<FileEvent> queryAllEvents() {
+        return collect(streamAllEvents());
     }
 
     /**
      * Helper method to query by one condition.
      */
     private List<FileEvent> queryByCondition(final String clause, final String value) {
-        List<FileEvent> results = new ArrayList<>();
-        String sql = "SELECT * FROM file_events WHERE " + clause + ";";
-        try (PreparedStatement pstmt = myConnection.prepareStatement(sql)) {
-            pstmt.setString(1, value);
-            ResultSet rs = pstmt.executeQuery();
-            while (rs.next()) {
-                results.add(parseResultSet(rs));
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return results;
+        return collect(streamQuery(SELECT_EVENTS + " WHERE " + clause, null, null, value));
     }
 
     /**
      * Parses a ResultSet row into a FileEvent object.
      */
     private FileEvent parseResultSet(final ResultSet rs) throws SQLException {
-        return new FileEvent(
+        FileEvent event = new FileEvent(
                 rs.getString("file_name"),
                 rs.getString("file_extension"),
                 rs.getString("path"),
                 EventType.valueOf(rs.getString("event_type")),
-                LocalDateTime.parse(rs.getString("timestamp"))
+                toLocalDateTime(rs.getLong("timestamp"))
         );
+        event.setMyId(rs.getLong("id"));
+        event.setMyReconciled(rs.getInt("reconciled") != 0);
+        event.setMyPreviousPath(rs.getString("previous_path"));
+        event.setMyCount(rs.getInt("event_count"));
+        long last = rs.getLong("last_timestamp");
+        if (!rs.wasNull()) {
+            event.setMyLastTimeStamp(toLocalDateTime(last));
+        }
+        long size = rs.getLong("file_size");
+        event.setMyFileSize(rs.wasNull() ? -1 : size);
+        return event;
     }
 
     /**
-     * Returns the current database connection (for testing or external use).
+     * Returns the writer connection (for testing or external use).
+     * It is shared with the EventWriter thread, so prefer the query methods.
      *
      * @return the database connection
      */
@@ -198,6 +741,27 @@ public class DatabaseManager {
         return myConnection;
     }
 
+    /**
+     * Returns the number of rows fetched from the database at a time by streaming queries.
+     *
+     * @return the JDBC fetch size
+     */
+    public int getFetchSize() {
+        return myFetchSize;
+    }
+
+    /**
+     * Sets the number of rows fetched from the database at a time by streaming queries.
+     *
+     * @param theFetchSize the JDBC fetch size, must be positive
+     */
+    public void setFetchSize(final int theFetchSize) {
+        if (theFetchSize < 1) {
+            throw new IllegalArgumentException("Fetch size must be positive: " + theFetchSize);
+        }
+        myFetchSize = theFetchSize;
+    }
+
 
     /**
      * This method is to query by extension.
@@ -206,26 +770,7 @@ public class DatabaseManager {
      * @return
      */
     public List<FileEvent> queryByExtension(final String theExtension) {
-        List<FileEvent> events = new ArrayList<>();
-        if (myConnection == null) {
-            System.err.println("Error: Database connection is null");
-            return events;
-        }
-        String sql = theExtension == null || theExtension.isEmpty() ?
-                "SELECT * FROM file_events" :
-                "SELECT * FROM file_events WHERE file_extension = ?";
-        try (PreparedStatement pstmt = myConnection.prepareStatement(sql)) {
-            if (theExtension != null && !theExtension.isEmpty()) {
-                pstmt.setString(1, theExtension);
-            }
-            ResultSet rs = pstmt.executeQuery();
-            while (rs.next()) {
-                events.add(createFileEventFromResultSet(rs));
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return events;
+        return collect(streamByExtension(theExtension));
     }
 
     /**
@@ -236,23 +781,7 @@ public class DatabaseManager {
      * @return
      */
     public List<FileEvent> queryByDateRange(final LocalDateTime theStart, final LocalDateTime theEnd) {
-        List<FileEvent> events = new ArrayList<>();
-        if (myConnection == null) {
-            System.err.println("Error: Database connection is null");
-            return events;
-        }
-        String sql = "SELECT * FROM file_events WHERE timestamp BETWEEN ? AND ?";
-        try (PreparedStatement pstmt = myConnection.prepareStatement(sql)) {
-            pstmt.setString(1, theStart.format(formatter));
-            pstmt.setString(2, theEnd.format(formatter));
-            ResultSet rs = pstmt.executeQuery();
-            while (rs.next()) {
-                events.add(createFileEventFromResultSet(rs));
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return events;
+        return collect(streamByDateRange(theStart, theEnd));
     }
 
     /**
@@ -262,63 +791,490 @@ public class DatabaseManager {
      * @return
      */
     public List<FileEvent> queryByEventType(final EventType theType) {
-        List<FileEvent> events = new ArrayList<>();
-        if (myConnection == null) {
+        return collect(streamByEventType(theType));
+    }
+
+    /**
+     * Queries for events on a directory and everything below it. The subtree
+     * is matched as a range over the binary-ordered directories index, so
+     * sibling directories sharing a prefix (/data/ab for /data/a) are not
+     * included.
+     *
+     * @param theDirectoryPath the root of the subtree
+     * @return list of FileEvents in the subtree
+     */
+    public List<FileEvent> queryByDirectory(final String theDirectoryPath) {
+        return collect(streamByDirectory(theDirectoryPath));
+    }
+
+    /**
+     * Queries for the events matching all criteria of a query, in time order.
+     *
+     * @param theQuery the search criteria
+     * @return list of FileEvents
+     */
+    public List<FileEvent> query(final EventQuery theQuery) {
+        return collect(stream(theQuery));
+    }
+
+    /**
+     * Streams the events matching all criteria of a query, in time order.
+     * The criteria are combined into one SQL statement, run on each partition
+     * in the time range in turn, so only matching rows are read. The stream
+     * holds an open cursor and must be closed, e.g. with try-with-resources.
+     *
+     * @param theQuery the search criteria
+     * @return stream of FileEvents
+     */
+    public Stream<FileEvent> stream(final EventQuery theQuery) {
+        StringBuilder where = new StringBuilder();
+        List<Object> parameters = new ArrayList<>();
+
+        if (theQuery.getExtension() != null) {
+            appendCondition(where, EXTENSION_CLAUSE);
+            parameters.add(theQuery.getExtension());
+        }
+        if (theQuery.getEventType() != null) {
+            appendCondition(where, "e.event_type = ?");
+            parameters.add(theQuery.getEventType().toString());
+        }
+        if (theQuery.getDirectory() != null) {
+            appendCondition(where, SUBTREE_CLAUSE);
+            parameters.addAll(List.of(subtreeRange(theQuery.getDirectory())));
+        }
+        if (theQuery.getStart() != null) {
+            appendCondition(where, "e.timestamp >= ?");
+            parameters.add(toEpochMillis(theQuery.getStart()));
+        }
+        if (theQuery.getEnd() != null) {
+            appendCondition(where, "e.timestamp <= ?");
+            parameters.add(toEpochMillis(theQuery.getEnd()));
+        }
+        if (theQuery.getFileNamePattern() != null) {
+            String like = theQuery.toLikePattern();
+            appendCondition(where, "e.name_id IN (SELECT rowid FROM file_names_fts WHERE name "
+                    + likeOperator(like) + ")");
+            parameters.add(like);
+        }
+        if (theQuery.getPathPattern() != null) {
+            String like = theQuery.toPathLikePattern();
+            appendCondition(where, "(e.directory_id IN (SELECT rowid FROM directories_fts WHERE path "
+                    + likeOperator(like) + ") OR e.name_id IN (SELECT rowid FROM file_names_fts WHERE name "
+                    + likeOperator(like) + "))");
+            parameters.add(like);
+            parameters.add(like);
+        }
+        if (theQuery.getAfter() != null) {
+            appendCondition(where, "(e.timestamp, e.id) > (?, ?)");
+            parameters.add(toEpochMillis(theQuery.getAfter().getMyTimeStamp()));
+            parameters.add(theQuery.getAfter().getMyId());
+        }
+
+        StringBuilder sql = new StringBuilder(SELECT_EVENTS);
+        if (where.length() > 0) {
+            sql.append(" WHERE ").append(where);
+        }
+        sql.append(" ORDER BY e.timestamp, e.id");
+        if (theQuery.getLimit() > 0) {
+            sql.append(" LIMIT ?");
+            parameters.add(theQuery.getLimit());
+        }
+
+        Long start = theQuery.getStart() == null ? null : toEpochMillis(theQuery.getStart());
+        if (theQuery.getAfter() != null) {
+            long after = toEpochMillis(theQuery.getAfter().getMyTimeStamp());
+            start = start == null ? after : Math.max(start, after);
+        }
+        Long end = theQuery.getEnd() == null ? null : toEpochMillis(theQuery.getEnd());
+        Stream<FileEvent> events = streamQuery(sql.toString(), start, end, parameters.toArray());
+        return theQuery.getLimit() > 0 ? events.limit(theQuery.getLimit()) : events;
+    }
+
+    /**
+     * Returns the LIKE operator for a pattern. The ESCAPE clause is only added
+     * when the pattern needs it, because the trigram index cannot serve LIKE
+     * with ESCAPE and falls back to scanning the dictionary.
+     *
+     * @param theLikePattern the LIKE pattern
+     * @return the operator with its parameter placeholder
+     */
+    private static String likeOperator(final String theLikePattern) {
+        return theLikePattern.indexOf('\\') >= 0 ? "LIKE ? ESCAPE '\\'" : "LIKE ?";
+    }
+
+    /**
+     * Appends a condition to a WHERE clause, joining it with AND.
+     *
+     * @param theWhere the clause built so far
+     * @param theCondition the condition to add
+     */
+    private static void appendCondition(final StringBuilder theWhere, final String theCondition) {
+        if (theWhere.length() > 0) {
+            theWhere.append(" AND ");
+        }
+        theWhere.append(theCondition);
+    }
+
+    /**
+     * Counts events from the rollup tables. The work depends on the number
+     * of time buckets in the range, not on the number of events.
+     *
+     * @param theQuery the criteria and grouping
+     * @return one count per group, ordered by the grouped fields
+     */
+    public List<EventCount> countEvents(final EventCountQuery theQuery) {
+        List<String> columns = new ArrayList<>();
+        StringBuilder where = new StringBuilder();
+        List<Object> parameters = new ArrayList<>();
+        EventCountQuery.Resolution resolution = theQuery.getResolution();
+
+        columns.add(theQuery.isGroupedByTime() ? "r.bucket" : "NULL");
+        columns.add(theQuery.isGroupedByEventType() ? "r.event_type" : "NULL");
+        columns.add(theQuery.isGroupedByExtension() ? "x.extension" : "NULL");
+        columns.add(theQuery.isGroupedByDirectory() ? "d.path" : "NULL");
+
+        if (theQuery.getEventType() != null) {
+            appendCondition(where, "r.event_type = ?");
+            parameters.add(theQuery.getEventType().toString());
+        }
+        if (theQuery.getExtension() != null) {
+            appendCondition(where, "r.extension_id = (SELECT id FROM extensions WHERE extension = ?)");
+            parameters.add(theQuery.getExtension());
+        }
+        if (theQuery.getDirectory() != null) {
+            appendCondition(where, "r.root_id = (SELECT id FROM directories WHERE path = ?)");
+            parameters.add(theQuery.getDirectory());
+        }
+        if (theQuery.getStart() != null) {
+            appendCondition(where, "r.bucket >= ?");
+            parameters.add(resolution.floor(toEpochMillis(theQuery.getStart())));
+        }
+        if (theQuery.getEnd() != null) {
+            appendCondition(where, "r.bucket <= ?");
+            parameters.add(toEpochMillis(theQuery.getEnd()));
+        }
+
+        List<String> groups = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            if (!"NULL".equals(columns.get(i))) {
+                groups.add(String.valueOf(i + 1));
+            }
+        }
+        StringBuilder sql = new StringBuilder("SELECT ")
+                .append(String.join(", ", columns))
+                .append(", SUM(r.count) FROM ").append(EventRollups.tableFor(resolution)).append(" r")
+                .append(" LEFT JOIN extensions x ON x.id = r.extension_id")
+                .append(" LEFT JOIN directories d ON d.id = r.root_id");
+        if (where.length() > 0) {
+            sql.append(" WHERE ").append(where);
+        }
+        if (!groups.isEmpty()) {
+            String groupList = String.join(", ", groups);
+            sql.append(" GROUP BY ").append(groupList).append(" ORDER BY ").append(groupList);
+        }
+
+        List<EventCount> counts = new ArrayList<>();
+        if (myReaders == null) {
             System.err.println("Error: Database connection is null");
-            return events;
+            return counts;
         }
-        String sql = "SELECT * FROM file_events WHERE event_type = ?";
-        try (PreparedStatement pstmt = myConnection.prepareStatement(sql)) {
-            pstmt.setString(1, theType.toString());
-            ResultSet rs = pstmt.executeQuery();
-            while (rs.next()) {
-                events.add(createFileEventFromResultSet(rs));
+        try {
+            Connection reader = myReaders.borrow();
+            try (PreparedStatement pstmt = reader.prepareStatement(sql.toString())) {
+                for (int i = 0; i < parameters.size(); i++) {
+                    pstmt.setObject(i + 1, parameters.get(i));
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        long count = rs.getLong(5);
+                        if (count == 0) {
+                            continue;
+                        }
+                        long bucket = rs.getLong(1);
+                        LocalDateTime start = rs.wasNull() ? null : toLocalDateTime(bucket);
+                        String type = rs.getString(2);
+                        counts.add(new EventCount(start, type == null ? null : EventType.valueOf(type),
+                                rs.getString(3), rs.getString(4), count));
+                    }
+                }
+            } finally {
+                myReaders.release(reader);
             }
         } catch (SQLException e) {
+            System.err.println("SQLException in countEvents: " + e.getMessage());
             e.printStackTrace();
         }
-        return events;
+        return counts;
     }
 
     /**
-     * This method is to query by directory.
+     * Streams all events in the database in time order.
+     * The stream holds an open cursor and must be closed, e.g. with try-with-resources.
      *
-     * @param theDirectoryPath
-     * @return
+     * @return stream of FileEvents
      */
-    public List<FileEvent> queryByDirectory(final String theDirectoryPath) {
-        List<FileEvent> events = new ArrayList<>();
-        if (myConnection == null) {
+    public Stream<FileEvent> streamAllEvents() {
+        return stream(new EventQuery());
+    }
+
+    /**
+     * Streams events with the given extension, or all events if the extension is empty.
+     * The stream holds an open cursor and must be closed.
+     *
+     * @param theExtension the file extension (e.g. ".txt")
+     * @return stream of FileEvents
+     */
+    public Stream<FileEvent> streamByExtension(final String theExtension) {
+        return stream(new EventQuery().withExtension(theExtension));
+    }
+
+    /**
+     * Streams events between two timestamps, both inclusive.
+     * The stream holds an open cursor and must be closed.
+     *
+     * @param theStart the start datetime
+     * @param theEnd the end datetime
+     * @return stream of FileEvents
+     */
+    public Stream<FileEvent> streamByDateRange(final LocalDateTime theStart, final LocalDateTime theEnd) {
+        return stream(new EventQuery().withTimeRange(theStart, theEnd));
+    }
+
+    /**
+     * Streams events of the given type.
+     * The stream holds an open cursor and must be closed.
+     *
+     * @param theType the event type
+     * @return stream of FileEvents
+     */
+    public Stream<FileEvent> streamByEventType(final EventType theType) {
+        return stream(new EventQuery().withEventType(theType));
+    }
+
+    /**
+     * Streams events on a directory and everything below it.
+     * The stream holds an open cursor and must be closed.
+     *
+     * @param theDirectoryPath the root of the subtree
+     * @return stream of FileEvents
+     */
+    public Stream<FileEvent> streamByDirectory(final String theDirectoryPath) {
+        return stream(new EventQuery().withDirectory(theDirectoryPath));
+    }
+
+    /**
+     * Returns the next page of events in time order. Pages are keyed on
+     * (timestamp, id), so each page is a range scan of the timestamp index no
+     * matter how deep into the results it is.
+     *
+     * @param theAfter the last event of the previous page, or null for the first page
+     * @param theLimit maximum number of events in the page
+     * @return the page of FileEvents, empty when there are no more
+     */
+    public List<FileEvent> queryPage(final FileEvent theAfter, final int theLimit) {
+        return query(new EventQuery().withAfter(theAfter).withLimit(theLimit));
+    }
+
+    /**
+     * Returns the next page of events with the given extension, in time order.
+     *
+     * @param theExtension the file extension (e.g. ".txt"), or empty for all events
+     * @param theAfter the last event of the previous page, or null for the first page
+     * @param theLimit maximum number of events in the page
+     * @return the page of FileEvents, empty when there are no more
+     */
+    public List<FileEvent> queryPageByExtension(final String theExtension, final FileEvent theAfter,
+                                                final int theLimit) {
+        return query(new EventQuery().withExtension(theExtension).withAfter(theAfter).withLimit(theLimit));
+    }
+
+    /**
+     * Runs a query on every partition overlapping a time range, oldest
+     * partition first, and returns the rows as one lazily read stream. Only
+     * one partition's cursor is open at a time. Everything is read on one
+     * pooled reader connection in a single snapshot, so partitions dropped
+     * meanwhile are still seen whole. The connection goes back to the pool
+     * when the stream is closed. Errors are printed and end the stream, like
+     * the list queries.
+     *
+     * @param theSql the query over the PARTITION placeholder, selecting the columns of SELECT_EVENTS
+     * @param theStart earliest timestamp in epoch milliseconds, or null for no bound
+     * @param theEnd latest timestamp in epoch milliseconds, or null for no bound
+     * @param theParameters values for the query parameters
+     * @return stream of FileEvents
+     */
+    private Stream<FileEvent> streamQuery(final String theSql, final Long theStart, final Long theEnd,
+                                          final Object... theParameters) {
+        if (myReaders == null) {
             System.err.println("Error: Database connection is null");
-            return events;
+            return Stream.empty();
         }
-        String sql = "SELECT * FROM file_events WHERE path LIKE ?";
-        try (PreparedStatement pstmt = myConnection.prepareStatement(sql)) {
-            pstmt.setString(1, theDirectoryPath + "%");
-            ResultSet rs = pstmt.executeQuery();
-            while (rs.next()) {
-                events.add(createFileEventFromResultSet(rs));
+        Connection reader;
+        List<String> partitions;
+        try {
+            reader = myReaders.borrow();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return Stream.empty();
+        }
+        try {
+            partitions = EventPartitions.overlapping(reader, theStart, theEnd);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            myReaders.release(reader);
+            return Stream.empty();
+        }
+        PartitionCursor cursor = new PartitionCursor(reader, theSql, partitions, theParameters);
+        return StreamSupport.stream(cursor, false).onClose(() -> {
+            cursor.closeStatement();
+            myReaders.release(reader);
+        });
+    }
+
+    /**
+     * Reads the rows of a query from a list of partitions one after another.
+     */
+    private final class PartitionCursor extends Spliterators.AbstractSpliterator<FileEvent> {
+
+        /** Reader connection the statements run on. */
+        private final Connection myReader;
+
+        /** Query over the PARTITION placeholder. */
+        private final String mySql;
+
+        /** Partitions still to read, oldest first. */
+        private final List<String> myPartitions;
+
+        /** Values for the query parameters. */
+        private final Object[] myParameters;
+
+        /** Index of the next partition to open. */
+        private int myNext;
+
+        /** Statement of the current partition, or null between partitions. */
+        private PreparedStatement myStatement;
+
+        /** Rows of the current partition, or null between partitions. */
+        private ResultSet myRows;
+
+        /**
+         * Creates a cursor over the given partitions.
+         *
+         * @param theReader the reader connection
+         * @param theSql the query over the PARTITION placeholder
+         * @param thePartitions the partitions to read, oldest first
+         * @param theParameters values for the query parameters
+         */
+        PartitionCursor(final Connection theReader, final String theSql,
+                        final List<String> thePartitions, final Object[] theParameters) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            myReader = theReader;
+            mySql = theSql;
+            myPartitions = thePartitions;
+            myParameters = theParameters;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super FileEvent> theAction) {
+            try {
+                while (true) {
+                    if (myRows == null) {
+                        if (myNext == myPartitions.size()) {
+                            return false;
+                        }
+                        openPartition(myPartitions.get(myNext++));
+                    }
+                    if (myRows.next()) {
+                        theAction.accept(parseResultSet(myRows));
+                        return true;
+                    }
+                    closeStatement();
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+                closeStatement();
+                myNext = myPartitions.size();
+                return false;
             }
+        }
+
+        /**
+         * Runs the query on one partition.
+         *
+         * @param thePartition the partition table
+         * @throws SQLException if the query fails
+         */
+        private void openPartition(final String thePartition) throws SQLException {
+            myStatement = myReader.prepareStatement(mySql.replace(PARTITION, thePartition));
+            myStatement.setFetchSize(myFetchSize);
+            for (int i = 0; i < myParameters.length; i++) {
+                myStatement.setObject(i + 1, myParameters[i]);
+            }
+            myRows = myStatement.executeQuery();
+        }
+
+        /**
+         * Closes the statement of the current partition, if any.
+         */
+        void closeStatement() {
+            closeQuietly(myStatement);
+            myStatement = null;
+            myRows = null;
+        }
+    }
+
+    /**
+     * Drains and closes a stream into a list.
+     *
+     * @param theEvents the stream to collect
+     * @return list of FileEvents
+     */
+    private static List<FileEvent> collect(final Stream<FileEvent> theEvents) {
+        try (theEvents) {
+            return theEvents.collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    /**
+     * Closes a statement, printing any error.
+     *
+     * @param theStatement the statement to close, may be null
+     */
+    private static void closeQuietly(final Statement theStatement) {
+        if (theStatement == null) {
+            return;
+        }
+        try {
+            theStatement.close();
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        return events;
     }
 
     /**
-     * THis method creates file events from reslults.
+     * Computes the parameters of SUBTREE_CLAUSE for a directory: the
+     * half-open range [dir + separator, dir + next character) covering every
+     * directory below it, and the parent and leaf name matching events on
+     * the directory itself.
      *
-     * @param rs
-     * @throws SQLException
+     * @param theDirectoryPath the root of the subtree
+     * @return the low bound, high bound, parent directory and leaf name
      */
-    private FileEvent createFileEventFromResultSet(final ResultSet rs) throws SQLException {
-        String fileName = rs.getString("file_name");
-        String extension = rs.getString("file_extension");
-        String path = rs.getString("path");
-        EventType eventType = EventType.valueOf(rs.getString("event_type"));
-        String timestam = rs.getString("timestamp");
-        LocalDateTime timestamp = LocalDateTime.parse(timestam);
-        return new FileEvent(fileName, extension, path, eventType, timestamp);
+    static String[] subtreeRange(final String theDirectoryPath) {
+        String directory = theDirectoryPath == null ? "" : theDirectoryPath;
+        char separator = directory.indexOf('\\') >= 0 && directory.indexOf('/') < 0
+                ? '\\' : '/';
+        int end = directory.length();
+        while (end > 0 && (directory.charAt(end - 1) == '/' || directory.charAt(end - 1) == '\\')) {
+            end--;
+        }
+        String prefix = end == 0 ? directory : directory.substring(0, end) + separator;
+        if (prefix.isEmpty()) {
+            prefix = String.valueOf(separator);
+        }
+        String upper = prefix.substring(0, prefix.length() - 1) + (char) (separator + 1);
+        String[] parts = EventInserter.splitPath(directory.substring(0, end));
+        return new String[] {prefix, upper, parts[0], parts[1]};
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,458 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The entries of one directory as parallel primitive arrays (name id, size,
+ * modification time, file key) sorted by name id. Two listings of the same
+ * directory are compared with a single merge, and a listing can be kept up
+ * to date entry by entry as events arrive. Names are interned in a Names
+ * table shared by all listings of a tree, so the memory per entry is a few
+ * dozen bytes.
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+final class DirectoryListing {
+
+    /** Size recorded for directories. */
+    static final long DIRECTORY = -1;
+
+    /** True if file keys can be read as inode numbers. */
+    private static final boolean UNIX_ATTRIBUTES =
+            FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+
+    /** Attributes read for each entry when the unix view is available. */
+    private static final String UNIX_ATTRIBUTE_LIST = "unix:ino,size,lastModifiedTime,isDirectory";
+
+    /** Name id of each entry. */
+    private int[] myNames;
+
+    /** Size of each entry, or DIRECTORY. */
+    private long[] mySizes;
+
+    /** Modification time of each entry in milliseconds. */
+    private long[] myModified;
+
+    /** File key (inode number) of each entry, or 0 if unknown. */
+    private long[] myKeys;
+
+    /** Number of entries. */
+    private int mySize;
+
+    /**
+     * Receives the differences found by compareTo.
+     */
+    interface Changes {
+
+        /**
+         * An entry appeared.
+         *
+         * @param theName its name id
+         * @param theDirectory whether it is a directory
+         */
+        void created(int theName, boolean theDirectory);
+
+        /**
+         * An entry disappeared.
+         *
+         * @param theName its name id
+         * @param theDirectory whether it was a directory
+         */
+        void deleted(int theName, boolean theDirectory);
+
+        /**
+         * A file changed size, modification time or file key.
+         *
+         * @param theName its name id
+         */
+        void modified(int theName);
+
+        /**
+         * An entry disappeared while another with the same file key appeared.
+         *
+         * @param theFrom the old name id
+         * @param theTo the new name id
+         * @param theDirectory whether it is a directory
+         */
+        void renamed(int theFrom, int theTo, boolean theDirectory);
+    }
+
+    /**
+     * Interned entry names, shared by the listings of one tree. Safe to use
+     * from several threads.
+     */
+    static final class Names {
+
+        /** Ids of the names seen so far. */
+        private final Map<String, Integer> myIds = new ConcurrentHashMap<>();
+
+        /** Names by id. Guarded by this. */
+        private final List<String> myNames = new ArrayList<>();
+
+        /**
+         * Returns the id of a name, interning it on first sight.
+         *
+         * @param theName the entry name
+         * @return the name id
+         */
+        int idOf(final String theName) {
+            Integer id = myIds.get(theName);
+            if (id != null) {
+                return id;
+            }
+            synchronized (this) {
+                return myIds.computeIfAbsent(theName, name -> {
+                    myNames.add(name);
+                    return myNames.size() - 1;
+                });
+            }
+        }
+
+        /**
+         * Returns the name with an id.
+         *
+         * @param theId the name id
+         * @return the entry name
+         */
+        synchronized String nameOf(final int theId) {
+            return myNames.get(theId);
+        }
+    }
+
+    /**
+     * Creates an empty listing.
+     */
+    DirectoryListing() {
+        this(new int[0], new long[0], new long[0], new long[0], 0);
+    }
+
+    /**
+     * Creates a listing over arrays already sorted by name id.
+     *
+     * @param theNames name ids
+     * @param theSizes sizes
+     * @param theModified modification times
+     * @param theKeys file keys
+     * @param theSize number of entries used in the arrays
+     */
+    private DirectoryListing(final int[] theNames, final long[] theSizes, final long[] theModified,
+                             final long[] theKeys, final int theSize) {
+        myNames = theNames;
+        mySizes = theSizes;
+        myModified = theModified;
+        myKeys = theKeys;
+        mySize = theSize;
+    }
+
+    /**
+     * Lists a directory. Entries that vanish while being read are skipped;
+     * symbolic links are recorded but not followed.
+     *
+     * @param theDirectory the directory to list
+     * @param theNames the name table of the tree
+     * @return the listing, or null if the directory is gone
+     * @throws IOException if the directory cannot be listed
+     */
+    static DirectoryListing scan(final Path theDirectory, final Names theNames) throws IOException {
+        int capacity = 16;
+        int[] names = new int[capacity];
+        long[] sizes = new long[capacity];
+        long[] modified = new long[capacity];
+        long[] keys = new long[capacity];
+        long[] entry = new long[3];
+        int size = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(theDirectory)) {
+            for (Path path : entries) {
+                if (!read(path, entry)) {
+                    continue;
+                }
+                if (size == capacity) {
+                    capacity *= 2;
+                    names = Arrays.copyOf(names, capacity);
+                    sizes = Arrays.copyOf(sizes, capacity);
+                    modified = Arrays.copyOf(modified, capacity);
+                    keys = Arrays.copyOf(keys, capacity);
+                }
+                names[size] = theNames.idOf(path.getFileName().toString());
+                sizes[size] = entry[0];
+                modified[size] = entry[1];
+                keys[size] = entry[2];
+                size++;
+            }
+        } catch (NoSuchFileException | NotDirectoryException e) {
+            return null;
+        }
+        return sorted(names, sizes, modified, keys, size);
+    }
+
+    /**
+     * Creates a listing from parallel arrays in any order.
+     *
+     * @param theNames name ids
+     * @param theSizes sizes, or DIRECTORY
+     * @param theModified modification times
+     * @param theKeys file keys
+     * @param theSize number of entries used in the arrays
+     * @return the listing, sorted by name id
+     */
+    static DirectoryListing sorted(final int[] theNames, final long[] theSizes, final long[] theModified,
+                                   final long[] theKeys, final int theSize) {
+        // Sort (name id, index) pairs packed into longs, then gather in that order
+        long[] order = new long[theSize];
+        for (int i = 0; i < theSize; i++) {
+            order[i] = ((long) theNames[i] << 32) | i;
+        }
+        Arrays.sort(order);
+        DirectoryListing listing = new DirectoryListing(new int[theSize], new long[theSize],
+                new long[theSize], new long[theSize], theSize);
+        for (int i = 0; i < theSize; i++) {
+            int index = (int) order[i];
+            listing.myNames[i] = theNames[index];
+            listing.mySizes[i] = theSizes[index];
+            listing.myModified[i] = theModified[index];
+            listing.myKeys[i] = theKeys[index];
+        }
+        return listing;
+    }
+
+    /**
+     * Reads the size, modification time and file key of an entry.
+     *
+     * @param thePath the entry
+     * @param theEntry receives size (or DIRECTORY), modification time and key
+     * @return false if the entry does not exist
+     * @throws IOException if the attributes cannot be read
+     */
+    static boolean read(final Path thePath, final long[] theEntry) throws IOException {
+        try {
+            if (UNIX_ATTRIBUTES) {
+                Map<String, Object> attributes = Files.readAttributes(thePath,
+                        UNIX_ATTRIBUTE_LIST, LinkOption.NOFOLLOW_LINKS);
+                theEntry[0] = (Boolean) attributes.get("isDirectory")
+                        ? DIRECTORY : (Long) attributes.get("size");
+                theEntry[1] = ((FileTime) attributes.get("lastModifiedTime")).toMillis();
+                theEntry[2] = (Long) attributes.get("ino");
+            } else {
+                BasicFileAttributes attributes = Files.readAttributes(thePath,
+                        BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                theEntry[0] = attributes.isDirectory() ? DIRECTORY : attributes.size();
+                theEntry[1] = attributes.lastModifiedTime().toMillis();
+                Object fileKey = attributes.fileKey();
+                theEntry[2] = fileKey == null ? 0 : fileKey.hashCode();
+            }
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the entry count
+     */
+    int size() {
+        return mySize;
+    }
+
+    /**
+     * Returns the name id of an entry.
+     *
+     * @param theIndex the entry
+     * @return its name id
+     */
+    int nameAt(final int theIndex) {
+        return myNames[theIndex];
+    }
+
+    /**
+     * Returns the size of an entry.
+     *
+     * @param theIndex the entry
+     * @return its size, or DIRECTORY
+     */
+    long sizeAt(final int theIndex) {
+        return mySizes[theIndex];
+    }
+
+    /**
+     * Returns the modification time of an entry.
+     *
+     * @param theIndex the entry
+     * @return milliseconds since the epoch
+     */
+    long modifiedAt(final int theIndex) {
+        return myModified[theIndex];
+    }
+
+    /**
+     * Returns the file key of an entry.
+     *
+     * @param theIndex the entry
+     * @return its file key, or 0 if unknown
+     */
+    long keyAt(final int theIndex) {
+        return myKeys[theIndex];
+    }
+
+    /**
+     * Returns true if an entry is a directory.
+     *
+     * @param theIndex the entry
+     * @return whether the entry is a directory
+     */
+    boolean isDirectory(final int theIndex) {
+        return mySizes[theIndex] == DIRECTORY;
+    }
+
+    /**
+     * Looks up an entry by name.
+     *
+     * @param theName the entry's name id
+     * @param theEntry receives its size (or DIRECTORY), modification time and key
+     * @return false if the listing has no such entry
+     */
+    boolean get(final int theName, final long[] theEntry) {
+        int index = Arrays.binarySearch(myNames, 0, mySize, theName);
+        if (index < 0) {
+            return false;
+        }
+        theEntry[0] = mySizes[index];
+        theEntry[1] = myModified[index];
+        theEntry[2] = myKeys[index];
+        return true;
+    }
+
+    /**
+     * Removes an entry from the listing.
+     *
+     * @param theName the entry's name id
+     */
+    void remove(final int theName) {
+        int index = Arrays.binarySearch(myNames, 0, mySize, theName);
+        if (index >= 0) {
+            System.arraycopy(myNames, index + 1, myNames, index, mySize - index - 1);
+            System.arraycopy(mySizes, index + 1, mySizes, index, mySize - index - 1);
+            System.arraycopy(myModified, index + 1, myModified, index, mySize - index - 1);
+            System.arraycopy(myKeys, index + 1, myKeys, index, mySize - index - 1);
+            mySize--;
+        }
+    }
+
+    /**
+     * Brings one entry up to date after an event: reads its attributes and
+     * stores them, or removes the entry if it no longer exists.
+     *
+     * @param theDirectory the directory of this listing
+     * @param theName the entry's name id
+     * @param theNames the name table of the tree
+     * @throws IOException if the attributes cannot be read
+     */
+    void refresh(final Path theDirectory, final int theName, final Names theNames) throws IOException {
+        long[] entry = new long[3];
+        if (!read(theDirectory.resolve(theNames.nameOf(theName)), entry)) {
+            remove(theName);
+            return;
+        }
+        int index = Arrays.binarySearch(myNames, 0, mySize, theName);
+        if (index < 0) {
+            index = -index - 1;
+            if (mySize == myNames.length) {
+                int capacity = Math.max(16, mySize * 2);
+                myNames = Arrays.copyOf(myNames, capacity);
+                mySizes = Arrays.copyOf(mySizes, capacity);
+                myModified = Arrays.copyOf(myModified, capacity);
+                myKeys = Arrays.copyOf(myKeys, capacity);
+            }
+            System.arraycopy(myNames, index, myNames, index + 1, mySize - index);
+            System.arraycopy(mySizes, index, mySizes, index + 1, mySize - index);
+            System.arraycopy(myModified, index, myModified, index + 1, mySize - index);
+            System.arraycopy(myKeys, index, myKeys, index + 1, mySize - index);
+            mySize++;
+        }
+        myNames[index] = theName;
+        mySizes[index] = entry[0];
+        myModified[index] = entry[1];
+        myKeys[index] = entry[2];
+    }
+
+    /**
+     * Reports how a later listing of the same directory differs from this
+     * one, merging the two name-sorted arrays.
+     *
+     * @param theAfter the later listing
+     * @param theChanges receives the differences
+     * @return true if anything changed
+     */
+    boolean compareTo(final DirectoryListing theAfter, final Changes theChanges) {
+        List<Integer> removed = new ArrayList<>();
+        List<Integer> added = new ArrayList<>();
+        boolean changed = false;
+        int i = 0;
+        int j = 0;
+        while (i < mySize || j < theAfter.mySize) {
+            int before = i < mySize ? myNames[i] : Integer.MAX_VALUE;
+            int after = j < theAfter.mySize ? theAfter.myNames[j] : Integer.MAX_VALUE;
+            if (before < after) {
+                removed.add(i++);
+            } else if (after < before) {
+                added.add(j++);
+            } else {
+                if (isDirectory(i) != theAfter.isDirectory(j)) {
+                    removed.add(i);
+                    added.add(j);
+                } else if (!theAfter.isDirectory(j)
+                        && (mySizes[i] != theAfter.mySizes[j]
+                        || myModified[i] != theAfter.myModified[j]
+                        || myKeys[i] != theAfter.myKeys[j])) {
+                    theChanges.modified(after);
+                    changed = true;
+                }
+                i++;
+                j++;
+            }
+        }
+        if (removed.isEmpty() && added.isEmpty()) {
+            return changed;
+        }
+
+        // A file key that left under one name and came back under another is a rename
+        Map<Long, Integer> removedKeys = new HashMap<>();
+        for (int index : removed) {
+            if (myKeys[index] != 0) {
+                removedKeys.put(myKeys[index], index);
+            }
+        }
+        for (int index : added) {
+            Integer from = removedKeys.remove(theAfter.myKeys[index]);
+            if (from != null && isDirectory(from) == theAfter.isDirectory(index)) {
+                removed.remove(from);
+                theChanges.renamed(myNames[from], theAfter.myNames[index], theAfter.isDirectory(index));
+            } else {
+                theChanges.created(theAfter.myNames[index], theAfter.isDirectory(index));
+            }
+        }
+        for (int index : removed) {
+            theChanges.deleted(myNames[index], isDirectory(index));
+        }
+        return true;
+    }
+}
@@ -0,0 +1,267 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The directories of a watched tree with the modification time and file key
+ * each had when its listing was last known, saved when watching stops. A
+ * directory's modification time changes whenever an entry is added, removed
+ * or renamed in it, so on the next start an unchanged directory can be
+ * registered without listing it again.
+ *
+ * A manifest can also hold the listing of each directory, the state of
+ * every file when watching stopped, so that changes made while nothing was
+ * watching can be found on the next start.
+ *
+ * The file is gzipped and stores every directory as the index of its parent
+ * and its own name, parents first. Entry 0 is the root.
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+final class DirectoryManifest {
+
+    /** Marks a manifest file and its format version. */
+    private static final int MAGIC = 0x46574d32;
+
+    /**
+     * Directories modified this close to when the manifest was written may
+     * have changed again within the file system's timestamp resolution, so
+     * they are never trusted.
+     */
+    private static final long RACY_MILLIS = 2000;
+
+    /** Index of each directory's parent; -1 for the root. */
+    private final int[] myParents;
+
+    /** Name of each directory; empty for the root. */
+    private final String[] myNames;
+
+    /** Modification time of each directory in milliseconds. */
+    private final long[] myModified;
+
+    /** File key of each directory. */
+    private final long[] myKeys;
+
+    /** Listing of each directory when the manifest was written, or null. */
+    private final DirectoryListing[] myListings;
+
+    /** First child of each directory, or -1. */
+    private final int[] myFirstChild;
+
+    /** Next sibling of each directory, or -1. */
+    private final int[] myNextSibling;
+
+    /** When the manifest was written, in milliseconds since the epoch. */
+    private final long myWritten;
+
+    /**
+     * Creates a manifest from its parallel arrays.
+     *
+     * @param theParents parent indexes
+     * @param theNames directory names
+     * @param theModified modification times
+     * @param theKeys file keys
+     * @param theListings listings, or null entries where unknown
+     * @param theWritten when the manifest was written
+     */
+    private DirectoryManifest(final int[] theParents, final String[] theNames, final long[] theModified,
+                              final long[] theKeys, final DirectoryListing[] theListings,
+                              final long theWritten) {
+        myParents = theParents;
+        myNames = theNames;
+        myModified = theModified;
+        myKeys = theKeys;
+        myListings = theListings;
+        myWritten = theWritten;
+        myFirstChild = new int[theParents.length];
+        myNextSibling = new int[theParents.length];
+        Arrays.fill(myFirstChild, -1);
+        for (int i = theParents.length - 1; i > 0; i--) {
+            myNextSibling[i] = myFirstChild[theParents[i]];
+            myFirstChild[theParents[i]] = i;
+        }
+        if (theParents.length > 0) {
+            myNextSibling[0] = -1;
+        }
+    }
+
+    /**
+     * Returns the manifest file of a root in a directory of manifests.
+     *
+     * @param theDirectory where manifests are kept
+     * @param theRoot the watched root
+     * @return the manifest file
+     */
+    static Path fileFor(final Path theDirectory, final Path theRoot) {
+        return theDirectory.resolve(Integer.toHexString(theRoot.toString().hashCode()) + ".manifest");
+    }
+
+    /**
+     * Reads the manifest of a root.
+     *
+     * @param theFile the manifest file
+     * @param theRoot the watched root
+     * @param theNames interns the names of listed entries
+     * @return the manifest, or null if there is none for this root or it cannot be read
+     */
+    static DirectoryManifest read(final Path theFile, final Path theRoot, final DirectoryListing.Names theNames) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(theFile))))) {
+            if (in.readInt() != MAGIC || !in.readUTF().equals(theRoot.toString())) {
+                return null;
+            }
+            long written = in.readLong();
+            int count = in.readInt();
+            int[] parents = new int[count];
+            String[] names = new String[count];
+            long[] modified = new long[count];
+            long[] keys = new long[count];
+            DirectoryListing[] listings = new DirectoryListing[count];
+            for (int i = 0; i < count; i++) {
+                parents[i] = in.readInt();
+                names[i] = in.readUTF();
+                modified[i] = in.readLong();
+                keys[i] = in.readLong();
+                if (parents[i] >= i || (i > 0 && parents[i] < 0)) {
+                    return null;
+                }
+                int entries = in.readInt();
+                if (entries >= 0) {
+                    int[] entryNames = new int[entries];
+                    long[] entrySizes = new long[entries];
+                    long[] entryModified = new long[entries];
+                    long[] entryKeys = new long[entries];
+                    for (int j = 0; j < entries; j++) {
+                        entryNames[j] = theNames.idOf(in.readUTF());
+                        entrySizes[j] = in.readLong();
+                        entryModified[j] = in.readLong();
+                        entryKeys[j] = in.readLong();
+                    }
+                    listings[i] = DirectoryListing.sorted(entryNames, entrySizes, entryModified,
+                            entryKeys, entries);
+                }
+            }
+            return count == 0 ? null : new DirectoryManifest(parents, names, modified, keys, listings, written);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable manifest " + theFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the manifest of a root, replacing any previous one.
+     *
+     * @param theFile the manifest file
+     * @param theRoot the watched root
+     * @param theStamps modification time and file key of every directory
+     *                  below and including the root
+     * @param theListings listings to save with the directories; may be empty
+     * @param theNames names of the listed entries
+     * @throws IOException if the file cannot be written
+     */
+    static void write(final Path theFile, final Path theRoot, final Map<Path, long[]> theStamps,
+                      final Map<Path, DirectoryListing> theListings, final DirectoryListing.Names theNames)
+            throws IOException {
+        // Parents before children, so each entry can refer back to its parent
+        List<Path> directories = new ArrayList<>(theStamps.keySet());
+        directories.removeIf(dir -> !dir.startsWith(theRoot));
+        directories.sort(Comparator.comparingInt(Path::getNameCount));
+        Map<Path, Integer> indexes = new HashMap<>();
+        List<Path> ordered = new ArrayList<>();
+        for (Path dir : directories) {
+            if (dir.equals(theRoot) || indexes.containsKey(dir.getParent())) {
+                indexes.put(dir, ordered.size());
+                ordered.add(dir);
+            }
+        }
+        if (ordered.isEmpty() || !ordered.get(0).equals(theRoot)) {
+            return;
+        }
+
+        Files.createDirectories(theFile.getParent());
+        Path temporary = theFile.resolveSibling(theFile.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(temporary))))) {
+            out.writeInt(MAGIC);
+            out.writeUTF(theRoot.toString());
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(ordered.size());
+            for (Path dir : ordered) {
+                long[] stamp = theStamps.get(dir);
+                out.writeInt(dir.equals(theRoot) ? -1 : indexes.get(dir.getParent()));
+                out.writeUTF(dir.equals(theRoot) ? "" : dir.getFileName().toString());
+                out.writeLong(stamp[0]);
+                out.writeLong(stamp[1]);
+                DirectoryListing listing = theListings.get(dir);
+                out.writeInt(listing == null ? -1 : listing.size());
+                for (int i = 0; listing != null && i < listing.size(); i++) {
+                    out.writeUTF(theNames.nameOf(listing.nameAt(i)));
+                    out.writeLong(listing.sizeAt(i));
+                    out.writeLong(listing.modifiedAt(i));
+                    out.writeLong(listing.keyAt(i));
+                }
+            }
+        }
+        Files.move(temporary, theFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns true if a directory still has the modification time and file
+     * key it had when the manifest was written, and that time is old enough
+     * to be trusted.
+     *
+     * @param theIndex the directory
+     * @param theModified its current modification time
+     * @param theKey its current file key
+     * @return whether its listing is known to be unchanged
+     */
+    boolean isUnchanged(final int theIndex, final long theModified, final long theKey) {
+        return myModified[theIndex] == theModified && myKeys[theIndex] == theKey
+                && theModified < myWritten - RACY_MILLIS;
+    }
+
+    /**
+     * Returns the listing a directory had when the manifest was written.
+     *
+     * @param theIndex the directory
+     * @return the listing, or null if it was not saved
+     */
+    DirectoryListing listing(final int theIndex) {
+        return myListings[theIndex];
+    }
+
+    /**
+     * Returns the subdirectories of a directory by name.
+     *
+     * @param theIndex the directory
+     * @return the index of each subdirectory by its name
+     */
+    Map<String, Integer> children(final int theIndex) {
+        Map<String, Integer> children = new HashMap<>();
+        for (int child = myFirstChild[theIndex]; child >= 0; child = myNextSibling[child]) {
+            children.put(myNames[child], child);
+        }
+        return children;
+    }
+}
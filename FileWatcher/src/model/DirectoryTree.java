@@ -0,0 +1,368 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The registered directories of a watched tree, each with the handle it is
+ * watched by: a WatchKey or an inotify watch descriptor. The directories are
+ * kept as a tree of names, so a deleted or moved directory takes its whole
+ * subtree with it in one step, and a handle can be looked up by path or a
+ * path by handle.
+ *
+ * A node stores only its own name; its path follows from its parents. A
+ * moved directory is therefore re-attached under its new parent without
+ * touching anything below it.
+ *
+ * All methods are synchronized, since directories are registered from
+ * several threads while the watch thread removes them.
+ *
+ * @param <K> the type of the watch handles
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+final class DirectoryTree<K> {
+
+    /** The watched root. */
+    private final Path myRoot;
+
+    /** Node of the root. */
+    private final Node<K> myRootNode;
+
+    /** Node of each handle. */
+    private final Map<K, Node<K>> myNodes;
+
+    /**
+     * A directory of the tree.
+     *
+     * @param <K> the type of the watch handles
+     */
+    private static final class Node<K> {
+
+        /** Name of the directory within its parent; empty for the root. */
+        private String myName;
+
+        /** The parent, or null for the root and for detached nodes. */
+        private Node<K> myParent;
+
+        /** The subdirectories by name, created when the first one is added. */
+        private Map<String, Node<K>> myChildren;
+
+        /** The handle the directory is watched by, or null if it is not registered. */
+        private K myKey;
+
+        /**
+         * Creates a node.
+         *
+         * @param theName name of the directory within its parent
+         * @param theParent the parent, or null
+         */
+        Node(final String theName, final Node<K> theParent) {
+            myName = theName;
+            myParent = theParent;
+        }
+
+        /**
+         * Returns the subdirectory of the given name.
+         *
+         * @param theName the name
+         * @return the subdirectory, or null
+         */
+        Node<K> child(final String theName) {
+            return myChildren == null ? null : myChildren.get(theName);
+        }
+
+        /**
+         * Attaches a node as a subdirectory of this one.
+         *
+         * @param theChild the node to attach
+         */
+        void attach(final Node<K> theChild) {
+            if (myChildren == null) {
+                myChildren = new HashMap<>();
+            }
+            theChild.myParent = this;
+            myChildren.put(theChild.myName, theChild);
+        }
+
+        /**
+         * Detaches this node from its parent.
+         */
+        void detach() {
+            if (myParent != null) {
+                myParent.myChildren.remove(myName);
+                myParent = null;
+            }
+        }
+    }
+
+    /**
+     * Creates a tree with no registered directories.
+     *
+     * @param theRoot the watched root
+     */
+    DirectoryTree(final Path theRoot) {
+        myRoot = theRoot;
+        myRootNode = new Node<>("", null);
+        myNodes = new HashMap<>();
+    }
+
+    /**
+     * Records the handle of a directory. The root, or a directory whose
+     * parent is registered, can be added; anything else has left the tree
+     * and is refused, so a registration that races with the removal of its
+     * parent cannot leave a stray handle behind. A handle recorded before
+     * under another path moves to the new one, as happens when a moved
+     * directory is registered again.
+     *
+     * @param theDirectory the directory
+     * @param theKey its handle
+     * @return false if the directory's parent is not in the tree
+     */
+    synchronized boolean add(final Path theDirectory, final K theKey) {
+        Node<K> node;
+        if (theDirectory.equals(myRoot)) {
+            node = myRootNode;
+        } else {
+            Node<K> parent = find(theDirectory.getParent());
+            if (parent == null || parent.myKey == null) {
+                return false;
+            }
+            String name = theDirectory.getFileName().toString();
+            node = parent.child(name);
+            if (node == null) {
+                node = new Node<>(name, null);
+                parent.attach(node);
+            }
+        }
+        Node<K> previous = myNodes.put(theKey, node);
+        if (previous != null && previous != node) {
+            previous.myKey = null;
+            prune(previous);
+        }
+        if (node.myKey != null && !node.myKey.equals(theKey)) {
+            myNodes.remove(node.myKey);
+        }
+        node.myKey = theKey;
+        return true;
+    }
+
+    /**
+     * Returns the current path of the directory watched by a handle.
+     *
+     * @param theKey the handle
+     * @return the path, or null if the handle is not in the tree
+     */
+    synchronized Path pathOf(final K theKey) {
+        Node<K> node = myNodes.get(theKey);
+        return node == null ? null : pathOf(node);
+    }
+
+    /**
+     * Returns true if a directory is registered.
+     *
+     * @param theDirectory the directory
+     * @return whether it is in the tree with a handle
+     */
+    synchronized boolean contains(final Path theDirectory) {
+        Node<K> node = find(theDirectory);
+        return node != null && node.myKey != null;
+    }
+
+    /**
+     * Returns the number of registered directories.
+     *
+     * @return the directory count
+     */
+    synchronized int size() {
+        return myNodes.size();
+    }
+
+    /**
+     * Returns the paths of all registered directories.
+     *
+     * @return the paths, parents before children
+     */
+    synchronized List<Path> paths() {
+        List<Path> paths = new ArrayList<>();
+        collect(myRootNode, myRoot, paths, null);
+        return paths;
+    }
+
+    /**
+     * Removes a directory and everything below it.
+     *
+     * @param theDirectory the top of the subtree
+     * @return the handle of each removed directory by its path, parents first
+     */
+    synchronized Map<Path, K> removeSubtree(final Path theDirectory) {
+        Node<K> node = find(theDirectory);
+        if (node == null) {
+            return Map.of();
+        }
+        return remove(node, theDirectory);
+    }
+
+    /**
+     * Removes the directory of a handle and everything below it, as when
+     * the handle is found to be no longer valid.
+     *
+     * @param theKey the handle
+     * @return the handle of each removed directory by its path, parents first
+     */
+    synchronized Map<Path, K> remove(final K theKey) {
+        Node<K> node = myNodes.get(theKey);
+        if (node == null) {
+            return Map.of();
+        }
+        return remove(node, pathOf(node));
+    }
+
+    /**
+     * Moves a directory and everything below it to a new path, keeping
+     * their handles.
+     *
+     * @param theFrom the old path
+     * @param theTo the new path; its parent must be registered
+     * @return false if nothing was registered at theFrom or theTo is outside
+     *         the tree, in which case nothing is moved
+     */
+    synchronized boolean move(final Path theFrom, final Path theTo) {
+        Node<K> node = find(theFrom);
+        Node<K> parent = theTo.equals(myRoot) ? null : find(theTo.getParent());
+        if (node == null || node == myRootNode || parent == null) {
+            return false;
+        }
+        String name = theTo.getFileName().toString();
+        Node<K> replaced = parent.child(name);
+        if (replaced != null && replaced != node) {
+            remove(replaced, theTo);
+        }
+        node.detach();
+        node.myName = name;
+        parent.attach(node);
+        return true;
+    }
+
+    /**
+     * Detaches a node and drops the handles of its subtree.
+     *
+     * @param theNode the top of the subtree
+     * @param thePath its path
+     * @return the handle of each removed directory by its path, parents first
+     */
+    private Map<Path, K> remove(final Node<K> theNode, final Path thePath) {
+        Map<Path, K> removed = new LinkedHashMap<>();
+        collect(theNode, thePath, null, removed);
+        for (K key : removed.values()) {
+            myNodes.remove(key);
+        }
+        if (theNode == myRootNode) {
+            myRootNode.myKey = null;
+            myRootNode.myChildren = null;
+        } else {
+            theNode.detach();
+        }
+        return removed;
+    }
+
+    /**
+     * Walks a subtree without recursion, so deep trees cannot overflow the
+     * stack, and collects its registered directories.
+     *
+     * @param theNode the top of the subtree
+     * @param thePath its path
+     * @param thePaths receives the paths, or null
+     * @param theKeys receives the handles by path, or null
+     */
+    private void collect(final Node<K> theNode, final Path thePath, final List<Path> thePaths,
+                         final Map<Path, K> theKeys) {
+        Deque<Node<K>> nodes = new ArrayDeque<>();
+        Deque<Path> paths = new ArrayDeque<>();
+        nodes.add(theNode);
+        paths.add(thePath);
+        while (!nodes.isEmpty()) {
+            Node<K> node = nodes.poll();
+            Path path = paths.poll();
+            if (node.myKey != null) {
+                if (thePaths != null) {
+                    thePaths.add(path);
+                }
+                if (theKeys != null) {
+                    theKeys.put(path, node.myKey);
+                }
+            }
+            if (node.myChildren != null) {
+                for (Node<K> child : node.myChildren.values()) {
+                    nodes.add(child);
+                    paths.add(path.resolve(child.myName));
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the node of a path.
+     *
+     * @param theDirectory the path
+     * @return the node, or null if it is not in the tree
+     */
+    private Node<K> find(final Path theDirectory) {
+        if (theDirectory == null || !theDirectory.startsWith(myRoot)) {
+            return null;
+        }
+        Node<K> node = myRootNode;
+        for (Path name : myRoot.relativize(theDirectory)) {
+            if (name.toString().isEmpty()) {
+                continue;
+            }
+            node = node.child(name.toString());
+            if (node == null) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Returns the path of a node from the names of its parents.
+     *
+     * @param theNode the node
+     * @return its path
+     */
+    private Path pathOf(final Node<K> theNode) {
+        List<String> names = new ArrayList<>();
+        for (Node<K> node = theNode; node != myRootNode; node = node.myParent) {
+            if (node == null) {
+                return null;
+            }
+            names.add(node.myName);
+        }
+        Path path = myRoot;
+        for (int i = names.size() - 1; i >= 0; i--) {
+            path = path.resolve(names.get(i));
+        }
+        return path;
+    }
+
+    /**
+     * Detaches a node that lost its handle if nothing below it is registered.
+     *
+     * @param theNode the node
+     */
+    private void prune(final Node<K> theNode) {
+        if (theNode != myRootNode && theNode.myKey == null
+                && (theNode.myChildren == null || theNode.myChildren.isEmpty())) {
+            theNode.detach();
+        }
+    }
+}
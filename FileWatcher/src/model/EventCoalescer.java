@@ -0,0 +1,286 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Collapses bursts of events on the same path into one. An editor or a build
+ * tool saving a file can cause dozens of modifications in a row; each path
+ * with changes is held until it has been quiet for a window, and then passed
+ * on once, with the number of events it stands for and the times of the
+ * first and the last of them.
+ *
+ * Events on the same path merge as follows:
+ *   - a create absorbs the modifications and writes that follow it;
+ *   - a create followed by a delete is dropped, since the file is gone again;
+ *   - a modification or a completed write followed by the other becomes the later one;
+ *   - a modification followed by a delete becomes the delete.
+ * Anything else, such as a create after a delete, passes on what was held
+ * and starts over. A rename passes on what is held for both of its paths
+ * and then goes through at once, and an overflow passes on everything.
+ *
+ * A path that never goes quiet is still passed on after MAX_WINDOWS
+ * windows. Events on the same path keep their order; events on different
+ * paths leave in the order their windows end. The stage is not thread
+ * safe; the FileWatcher's dispatch thread drives it.
+ *
+ * @param <T> context passed along with each event, such as its watched root
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+final class EventCoalescer<T> implements EventStage {
+
+    /** Most windows an event is held for, however busy its path is. */
+    static final int MAX_WINDOWS = 10;
+
+    /** How long a path must be quiet before its events are passed on. */
+    private final long myWindow;
+
+    /** Receives the events. */
+    private final Sink<T> mySink;
+
+    /** Held events by path. */
+    private final Map<Path, Held<T>> myHeld;
+
+    /**
+     * Held events in the order of the deadlines they had when queued. A
+     * deadline only moves later, so an entry that comes up early is queued
+     * again; entries that were passed on or dropped are skipped.
+     */
+    private final PriorityQueue<Due<T>> myDue;
+
+    /**
+     * Receives the events of a coalescer.
+     *
+     * @param <T> the type of the context
+     */
+    @FunctionalInterface
+    interface Sink<T> {
+
+        /**
+         * Takes one event, possibly standing for several.
+         *
+         * @param theContext the context of the last merged event
+         * @param theEvent the event
+         * @param theCount how many events were merged into it
+         * @param theFirst wall clock time of the first of them in milliseconds
+         * @param theLast wall clock time of the last of them in milliseconds
+         */
+        void accept(T theContext, RawWatchEvent theEvent, int theCount, long theFirst, long theLast);
+    }
+
+    /**
+     * The events held for one path, merged so far.
+     *
+     * @param <T> the type of the context
+     */
+    private static final class Held<T> {
+
+        /** Context of the last event. */
+        private T myContext;
+
+        /** The merged event. */
+        private RawWatchEvent myEvent;
+
+        /** Number of events merged. */
+        private int myCount;
+
+        /** Wall clock time of the first event. */
+        private final long myFirst;
+
+        /** Wall clock time of the last event. */
+        private long myLast;
+
+        /** When the events are passed on unless more arrive. */
+        private long myDeadline;
+
+        /** When the events are passed on at the latest. */
+        private final long myLatest;
+
+        /**
+         * Starts holding an event.
+         *
+         * @param theContext its context
+         * @param theEvent the event
+         * @param theTime its wall clock time
+         * @param theDeadline when it is passed on unless more arrive
+         * @param theLatest when it is passed on at the latest
+         */
+        Held(final T theContext, final RawWatchEvent theEvent, final long theTime,
+             final long theDeadline, final long theLatest) {
+            myContext = theContext;
+            myEvent = theEvent;
+            myCount = 1;
+            myFirst = theTime;
+            myLast = theTime;
+            myDeadline = theDeadline;
+            myLatest = theLatest;
+        }
+    }
+
+    /**
+     * A held entry queued under the deadline it had at the time.
+     *
+     * @param deadline the deadline when queued
+     * @param held the entry
+     * @param <T> the type of the context
+     */
+    private record Due<T>(long deadline, Held<T> held) {
+    }
+
+    /**
+     * Creates a coalescer.
+     *
+     * @param theWindowMillis how long a path must be quiet; 0 passes every event on at once
+     * @param theSink receives the events
+     */
+    EventCoalescer(final long theWindowMillis, final Sink<T> theSink) {
+        myWindow = theWindowMillis;
+        mySink = theSink;
+        myHeld = new HashMap<>();
+        myDue = new PriorityQueue<>((a, b) -> Long.compare(a.deadline(), b.deadline()));
+    }
+
+    /**
+     * Takes one event and merges it with those held for its path.
+     *
+     * @param theContext context of the event
+     * @param theEvent the event
+     * @param theNow the current time in milliseconds, for the windows
+     */
+    void accept(final T theContext, final RawWatchEvent theEvent, final long theNow) {
+        long time = System.currentTimeMillis();
+        if (myWindow <= 0) {
+            mySink.accept(theContext, theEvent, 1, time, time);
+            return;
+        }
+        if (theEvent.isOverflow()) {
+            flushAll();
+            mySink.accept(theContext, theEvent, 1, time, time);
+            return;
+        }
+        Path path = theEvent.getMyPath();
+        if (theEvent.getMyKind() == RawWatchEvent.ENTRY_RENAME) {
+            release(theEvent.getMyPreviousPath());
+            release(path);
+            mySink.accept(theContext, theEvent, 1, time, time);
+            return;
+        }
+        Held<T> held = myHeld.get(path);
+        if (held != null) {
+            WatchEvent.Kind<?> kind = held.myEvent.getMyKind();
+            if (kind == StandardWatchEventKinds.ENTRY_CREATE
+                    && theEvent.getMyKind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                // Created and deleted again: nothing happened
+                myHeld.remove(path);
+                return;
+            }
+            WatchEvent.Kind<?> merged = merge(kind, theEvent.getMyKind());
+            if (merged != null) {
+                // The latest known identity of the file goes along
+                RawWatchEvent identity = theEvent.hasIdentity() ? theEvent : held.myEvent;
+                RawWatchEvent event = new RawWatchEvent(merged, path, null,
+                        held.myEvent.isReconciled() && theEvent.isReconciled());
+                if (identity.hasIdentity()) {
+                    event = event.withIdentity(identity.getMyFileKey(), identity.getMySize(),
+                            identity.getMyModified());
+                }
+                held.myContext = theContext;
+                held.myEvent = event;
+                held.myCount++;
+                held.myLast = time;
+                held.myDeadline = Math.min(theNow + myWindow, held.myLatest);
+                return;
+            }
+            release(path);
+        }
+        held = new Held<>(theContext, theEvent, time, theNow + myWindow,
+                theNow + myWindow * MAX_WINDOWS);
+        myHeld.put(path, held);
+        myDue.add(new Due<>(held.myDeadline, held));
+    }
+
+    /**
+     * Passes on the held events whose paths have been quiet long enough.
+     *
+     * @param theNow the current time in milliseconds
+     */
+    @Override
+    public void flush(final long theNow) {
+        while (!myDue.isEmpty() && myDue.peek().deadline() <= theNow) {
+            Held<T> held = myDue.poll().held();
+            if (myHeld.get(held.myEvent.getMyPath()) != held) {
+                continue;
+            }
+            if (held.myDeadline > theNow) {
+                myDue.add(new Due<>(held.myDeadline, held));
+            } else {
+                release(held.myEvent.getMyPath());
+            }
+        }
+    }
+
+    /**
+     * Passes on everything that is held.
+     */
+    @Override
+    public void flushAll() {
+        while (!myDue.isEmpty()) {
+            Held<T> held = myDue.poll().held();
+            if (myHeld.get(held.myEvent.getMyPath()) == held) {
+                release(held.myEvent.getMyPath());
+            }
+        }
+    }
+
+    /**
+     * Returns how long until the next held path may be due.
+     *
+     * @param theNow the current time in milliseconds
+     * @return milliseconds to wait, or -1 if nothing is held
+     */
+    @Override
+    public long timeToNextFlush(final long theNow) {
+        Due<T> due = myDue.peek();
+        return due == null ? -1 : Math.max(0, due.deadline() - theNow);
+    }
+
+    /**
+     * Returns the kind of a held event followed by another on the same path.
+     *
+     * @param theHeld the kind held so far
+     * @param theNext the kind of the new event
+     * @return the merged kind, or null if they do not merge
+     */
+    private static WatchEvent.Kind<?> merge(final WatchEvent.Kind<?> theHeld,
+                                            final WatchEvent.Kind<?> theNext) {
+        boolean nextWrites = theNext == StandardWatchEventKinds.ENTRY_MODIFY
+                || theNext == RawWatchEvent.ENTRY_CLOSE_WRITE;
+        if (theHeld == StandardWatchEventKinds.ENTRY_CREATE) {
+            return nextWrites ? theHeld : null;
+        }
+        if (theHeld == StandardWatchEventKinds.ENTRY_MODIFY || theHeld == RawWatchEvent.ENTRY_CLOSE_WRITE) {
+            return nextWrites || theNext == StandardWatchEventKinds.ENTRY_DELETE ? theNext : null;
+        }
+        return null;
+    }
+
+    /**
+     * Passes on the events held for a path, if any.
+     *
+     * @param thePath the path
+     */
+    private void release(final Path thePath) {
+        Held<T> held = thePath == null ? null : myHeld.remove(thePath);
+        if (held != null) {
+            mySink.accept(held.myContext, held.myEvent, held.myCount, held.myFirst, held.myLast);
+        }
+    }
+}
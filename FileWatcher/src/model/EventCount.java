@@ -0,0 +1,104 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+import java.time.LocalDateTime;
+
+/**
+ * One row of an event count: the number of events in a group. Fields the
+ * count was not grouped by are null.
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+public class EventCount {
+
+    /** Start of the time bucket, or null if not grouped by time. */
+    private final LocalDateTime myBucket;
+
+    /** Event type, or null if not grouped by event type. */
+    private final EventType myEventType;
+
+    /** Extension, or null if not grouped by extension or the events had none. */
+    private final String myExtension;
+
+    /** Top-level directory, or null if not grouped by directory or the events had none. */
+    private final String myDirectory;
+
+    /** Number of events in the group. */
+    private final long myCount;
+
+    /**
+     * Creates a count.
+     *
+     * @param theBucket start of the time bucket, or null
+     * @param theEventType the event type, or null
+     * @param theExtension the extension, or null
+     * @param theDirectory the top-level directory, or null
+     * @param theCount number of events in the group
+     */
+    public EventCount(final LocalDateTime theBucket, final EventType theEventType,
+                      final String theExtension, final String theDirectory, final long theCount) {
+        myBucket = theBucket;
+        myEventType = theEventType;
+        myExtension = theExtension;
+        myDirectory = theDirectory;
+        myCount = theCount;
+    }
+
+    /**
+     * Gets the start of the time bucket.
+     *
+     * @return The bucket start, or null if not grouped by time.
+     */
+    public LocalDateTime getMyBucket() {
+        return myBucket;
+    }
+
+    /**
+     * Gets the event type.
+     *
+     * @return The event type, or null if not grouped by event type.
+     */
+    public EventType getMyEventType() {
+        return myEventType;
+    }
+
+    /**
+     * Gets the extension.
+     *
+     * @return The extension, or null if not grouped by extension.
+     */
+    public String getMyExtension() {
+        return myExtension;
+    }
+
+    /**
+     * Gets the top-level directory.
+     *
+     * @return The directory, or null if not grouped by directory.
+     */
+    public String getMyDirectory() {
+        return myDirectory;
+    }
+
+    /**
+     * Gets the number of events in the group.
+     *
+     * @return The event count.
+     */
+    public long getMyCount() {
+        return myCount;
+    }
+
+    /**
+     * Returns a string representation of the count.
+     *
+     * @return A summary of the group and its count.
+     */
+    @Override
+    public String toString() {
+        return String.format("EventCount[bucket=%s, type=%s, ext=%s, dir=%s, count=%d]",
+                myBucket, myEventType, myExtension, myDirectory, myCount);
+    }
+}
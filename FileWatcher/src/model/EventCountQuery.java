@@ -0,0 +1,274 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Criteria and grouping for an event count, answered from the rollup tables
+ * instead of the events themselves. Counts can be grouped by time bucket,
+ * event type, extension and top-level directory; criteria left unset match
+ * everything.
+ *
+ * For example, deletes per hour per extension this week are
+ * new EventCountQuery().withEventType(EventType.ENTRY_DELETE)
+ * .withTimeRange(weekStart, null).groupByTime(Resolution.HOUR).groupByExtension().
+ *
+ * Time ranges are matched at the resolution of the buckets: a bucket is
+ * counted when it starts inside the range, or contains its start.
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+public class EventCountQuery {
+
+    /**
+     * Size of the time buckets counts are kept in.
+     */
+    public enum Resolution {
+
+        /** One bucket per minute. */
+        MINUTE(60_000L),
+
+        /** One bucket per hour. */
+        HOUR(3_600_000L);
+
+        /** Length of a bucket in milliseconds. */
+        private final long myMillis;
+
+        /**
+         * Creates a resolution.
+         *
+         * @param theMillis length of a bucket in milliseconds
+         */
+        Resolution(final long theMillis) {
+            myMillis = theMillis;
+        }
+
+        /**
+         * Returns the start of the local-time bucket holding a timestamp.
+         *
+         * @param theMillis milliseconds since the epoch
+         * @return start of the bucket in milliseconds since the epoch
+         */
+        long floor(final long theMillis) {
+            long offset = ZoneId.systemDefault().getRules()
+                    .getOffset(Instant.ofEpochMilli(theMillis)).getTotalSeconds() * 1000L;
+            return theMillis - Math.floorMod(theMillis + offset, myMillis);
+        }
+    }
+
+    /** Bucket size to count in. */
+    private Resolution myResolution = Resolution.HOUR;
+
+    /** True to return one count per bucket. */
+    private boolean myGroupByTime;
+
+    /** True to return one count per event type. */
+    private boolean myGroupByEventType;
+
+    /** True to return one count per extension. */
+    private boolean myGroupByExtension;
+
+    /** True to return one count per top-level directory. */
+    private boolean myGroupByDirectory;
+
+    /** Event type to count, or null for any. */
+    private EventType myEventType;
+
+    /** Extension to count (e.g. ".txt"), or null for any. */
+    private String myExtension;
+
+    /** Top-level directory to count, or null for any. */
+    private String myDirectory;
+
+    /** Earliest time to count (inclusive), or null for no bound. */
+    private LocalDateTime myStart;
+
+    /** Latest time to count (inclusive), or null for no bound. */
+    private LocalDateTime myEnd;
+
+    /**
+     * Returns one count per time bucket of the given size.
+     *
+     * @param theResolution the bucket size
+     * @return this query
+     */
+    public EventCountQuery groupByTime(final Resolution theResolution) {
+        if (theResolution == null) {
+            throw new IllegalArgumentException("Resolution must not be null");
+        }
+        myResolution = theResolution;
+        myGroupByTime = true;
+        return this;
+    }
+
+    /**
+     * Returns one count per event type.
+     *
+     * @return this query
+     */
+    public EventCountQuery groupByEventType() {
+        myGroupByEventType = true;
+        return this;
+    }
+
+    /**
+     * Returns one count per extension.
+     *
+     * @return this query
+     */
+    public EventCountQuery groupByExtension() {
+        myGroupByExtension = true;
+        return this;
+    }
+
+    /**
+     * Returns one count per top-level directory, e.g. "/home/" or "C:\Users\".
+     *
+     * @return this query
+     */
+    public EventCountQuery groupByDirectory() {
+        myGroupByDirectory = true;
+        return this;
+    }
+
+    /**
+     * Counts only one event type.
+     *
+     * @param theType the event type; null counts any
+     * @return this query
+     */
+    public EventCountQuery withEventType(final EventType theType) {
+        myEventType = theType;
+        return this;
+    }
+
+    /**
+     * Counts only one extension.
+     *
+     * @param theExtension the extension (e.g. ".txt"); null or empty counts any
+     * @return this query
+     */
+    public EventCountQuery withExtension(final String theExtension) {
+        myExtension = theExtension == null || theExtension.isEmpty() ? null : theExtension;
+        return this;
+    }
+
+    /**
+     * Counts only one top-level directory.
+     *
+     * @param theDirectory the top-level directory, ending with its separator;
+     *                     null or empty counts any
+     * @return this query
+     */
+    public EventCountQuery withDirectory(final String theDirectory) {
+        myDirectory = theDirectory == null || theDirectory.isEmpty() ? null : theDirectory;
+        return this;
+    }
+
+    /**
+     * Counts only a time range. Either bound may be null.
+     *
+     * @param theStart earliest time (inclusive)
+     * @param theEnd latest time (inclusive)
+     * @return this query
+     */
+    public EventCountQuery withTimeRange(final LocalDateTime theStart, final LocalDateTime theEnd) {
+        myStart = theStart;
+        myEnd = theEnd;
+        return this;
+    }
+
+    /**
+     * Returns the bucket size to count in.
+     *
+     * @return the resolution
+     */
+    Resolution getResolution() {
+        return myResolution;
+    }
+
+    /**
+     * Returns true if counts are grouped by time bucket.
+     *
+     * @return whether counts are grouped by time
+     */
+    boolean isGroupedByTime() {
+        return myGroupByTime;
+    }
+
+    /**
+     * Returns true if counts are grouped by event type.
+     *
+     * @return whether counts are grouped by event type
+     */
+    boolean isGroupedByEventType() {
+        return myGroupByEventType;
+    }
+
+    /**
+     * Returns true if counts are grouped by extension.
+     *
+     * @return whether counts are grouped by extension
+     */
+    boolean isGroupedByExtension() {
+        return myGroupByExtension;
+    }
+
+    /**
+     * Returns true if counts are grouped by top-level directory.
+     *
+     * @return whether counts are grouped by directory
+     */
+    boolean isGroupedByDirectory() {
+        return myGroupByDirectory;
+    }
+
+    /**
+     * Returns the event type criterion, or null.
+     *
+     * @return the event type criterion, or null
+     */
+    EventType getEventType() {
+        return myEventType;
+    }
+
+    /**
+     * Returns the extension criterion, or null.
+     *
+     * @return the extension criterion, or null
+     */
+    String getExtension() {
+        return myExtension;
+    }
+
+    /**
+     * Returns the directory criterion, or null.
+     *
+     * @return the directory criterion, or null
+     */
+    String getDirectory() {
+        return myDirectory;
+    }
+
+    /**
+     * Returns the start of the time range, or null.
+     *
+     * @return the start of the time range, or null
+     */
+    LocalDateTime getStart() {
+        return myStart;
+    }
+
+    /**
+     * Returns the end of the time range, or null.
+     *
+     * @return the end of the time range, or null
+     */
+    LocalDateTime getEnd() {
+        return myEnd;
+    }
+}
@@ -0,0 +1,270 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes FileEvents into rows of the daily file_events partitions and adds
+ * them to one JDBC batch per partition. File names, directory paths and
+ * extensions are interned into the file_names, directories and extensions
+ * dictionary tables, so each row only stores their integer ids.
+ *
+ * The partition for a day is created with its first event. Creating a new
+ * partition also drops the partitions that fell out of the retention period,
+ * so retention runs once per day without a timer. Row ids are handed out
+ * here and the next id is saved with every batch, together with the rollup
+ * counts of the batch (see EventRollups).
+ *
+ * A path is split at its last separator into a directory (which keeps the
+ * trailing separator) and a leaf name. The leaf is only stored when it is
+ * different from the file name, which it almost never is.
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+class EventInserter {
+
+    /** Insert statement for one encoded event into a partition. */
+    private static final String INSERT_SQL = """
+            INSERT INTO %s (id, name_id, leaf_name, directory_id, extension_id, event_type, timestamp,
+                            reconciled, previous_name_id, previous_directory_id, event_count,
+                            last_timestamp, file_size)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);
+            """;
+
+    /** Connection the events are written on. */
+    private final Connection myConnection;
+
+    /** Insert statements of the partitions written so far, by day. */
+    private final Map<LocalDate, PreparedStatement> myInserts;
+
+    /** Id of the next event, or null if it must be read from the store. */
+    private Long myNextId;
+
+    /** True if a partition was created since the last execute(). */
+    private boolean myCreatedPartition;
+
+    /** Dictionary of file names. */
+    private final StringDictionary myNames;
+
+    /** Dictionary of directory paths. */
+    private final StringDictionary myDirectories;
+
+    /** Dictionary of file extensions. */
+    private final StringDictionary myExtensions;
+
+    /** Event counts of the current batch. */
+    private final EventRollups myRollups;
+
+    /**
+     * Prepares the statements used to insert events on a connection.
+     *
+     * @param theConnection the connection to write to
+     * @throws SQLException if a statement cannot be prepared
+     */
+    EventInserter(final Connection theConnection) throws SQLException {
+        myConnection = theConnection;
+        myInserts = new HashMap<>();
+        myNames = new StringDictionary(theConnection, "file_names", "name",
+                StringDictionary.DEFAULT_CAPACITY);
+        myDirectories = new StringDictionary(theConnection, "directories", "path",
+                StringDictionary.DEFAULT_CAPACITY);
+        myExtensions = new StringDictionary(theConnection, "extensions", "extension",
+                StringDictionary.DEFAULT_CAPACITY);
+        myRollups = new EventRollups(theConnection);
+    }
+
+    /**
+     * Adds an event to the current batch with a generated id.
+     *
+     * @param theEvent the event to add
+     * @throws SQLException if the event cannot be encoded
+     */
+    void add(final FileEvent theEvent) throws SQLException {
+        add(theEvent, null);
+    }
+
+    /**
+     * Adds an event to the current batch.
+     *
+     * @param theEvent the event to add
+     * @param theId the row id to use, or null to generate one
+     * @throws SQLException if the event cannot be encoded
+     */
+    void add(final FileEvent theEvent, final Long theId) throws SQLException {
+        String[] parts = splitPath(theEvent.getMyPath());
+        String leaf = parts[1] != null && parts[1].equals(theEvent.getMyFileName()) ? null : parts[1];
+        long timestamp = DatabaseManager.toEpochMillis(theEvent.getMyTimeStamp());
+        PreparedStatement insert = insertFor(EventPartitions.dayOf(timestamp));
+
+        if (myNextId == null) {
+            myNextId = EventPartitions.readNextId(myConnection);
+        }
+        long id = theId == null ? myNextId : theId;
+        myNextId = Math.max(myNextId, id + 1);
+
+        Long extensionId = myExtensions.idOf(theEvent.getMyFileExtension());
+        insert.setLong(1, id);
+        setLong(insert, 2, myNames.idOf(theEvent.getMyFileName()));
+        insert.setString(3, leaf);
+        setLong(insert, 4, myDirectories.idOf(parts[0]));
+        setLong(insert, 5, extensionId);
+        insert.setString(6, theEvent.getMyEventType().toString());
+        insert.setLong(7, timestamp);
+        insert.setInt(8, theEvent.isMyReconciled() ? 1 : 0);
+        String[] previous = splitPath(theEvent.getMyPreviousPath());
+        setLong(insert, 9, myNames.idOf(previous[1]));
+        setLong(insert, 10, myDirectories.idOf(previous[0]));
+        insert.setInt(11, theEvent.getMyCount());
+        Long last = theEvent.getMyCount() == 1 ? null
+                : DatabaseManager.toEpochMillis(theEvent.getMyLastTimeStamp());
+        setLong(insert, 12, last);
+        setLong(insert, 13, theEvent.getMyFileSize() < 0 ? null : theEvent.getMyFileSize());
+        insert.addBatch();
+        count(theEvent, timestamp, extensionId);
+    }
+
+    /**
+     * Adds an already stored event to the rollup counts only.
+     *
+     * @param theEvent the event to count
+     * @throws SQLException if the event cannot be encoded
+     */
+    void count(final FileEvent theEvent) throws SQLException {
+        count(theEvent, DatabaseManager.toEpochMillis(theEvent.getMyTimeStamp()),
+                myExtensions.idOf(theEvent.getMyFileExtension()));
+    }
+
+    /**
+     * Adds an event to the rollup counts under its top-level directory.
+     *
+     * @param theEvent the event to count
+     * @param theTimestamp the event time in epoch milliseconds
+     * @param theExtensionId id of the event's extension, may be null
+     * @throws SQLException if the directory cannot be interned
+     */
+    private void count(final FileEvent theEvent, final long theTimestamp, final Long theExtensionId)
+            throws SQLException {
+        String root = EventRollups.topLevelDirectory(splitPath(theEvent.getMyPath())[0]);
+        myRollups.add(theTimestamp, theEvent.getMyEventType().toString(), theExtensionId,
+                myDirectories.idOf(root));
+    }
+
+    /**
+     * Executes the current batches and saves the next id. If a partition was
+     * created, partitions past the retention period are dropped. The caller commits.
+     *
+     * @throws SQLException if a batch fails
+     */
+    void execute() throws SQLException {
+        for (PreparedStatement insert : myInserts.values()) {
+            insert.executeBatch();
+        }
+        myRollups.write();
+        if (myNextId != null) {
+            EventPartitions.writeNextId(myConnection, myNextId);
+        }
+        if (myCreatedPartition) {
+            myCreatedPartition = false;
+            if (EventPartitions.applyRetention(myConnection) > 0) {
+                closeInserts();
+            }
+        }
+    }
+
+    /**
+     * Discards the current batches and everything cached about the database:
+     * counts, dictionary ids, partitions and the next id. Must be called when the
+     * surrounding transaction is rolled back or partitions were dropped.
+     */
+    void reset() {
+        closeInserts();
+        myNextId = null;
+        myCreatedPartition = false;
+        myRollups.clear();
+        myNames.clear();
+        myDirectories.clear();
+        myExtensions.clear();
+    }
+
+    /**
+     * Closes the prepared statements.
+     */
+    void close() {
+        closeInserts();
+        myRollups.close();
+        myNames.close();
+        myDirectories.close();
+        myExtensions.close();
+    }
+
+    /**
+     * Returns the insert statement for a day, creating its partition if needed.
+     *
+     * @param theDay the local day of the event
+     * @return the insert statement
+     * @throws SQLException if the partition cannot be created
+     */
+    private PreparedStatement insertFor(final LocalDate theDay) throws SQLException {
+        PreparedStatement insert = myInserts.get(theDay);
+        if (insert == null) {
+            myCreatedPartition |= EventPartitions.create(myConnection, theDay);
+            insert = myConnection.prepareStatement(INSERT_SQL.formatted(EventPartitions.tableFor(theDay)));
+            myInserts.put(theDay, insert);
+        }
+        return insert;
+    }
+
+    /**
+     * Closes and forgets the insert statements of all partitions.
+     */
+    private void closeInserts() {
+        for (PreparedStatement insert : myInserts.values()) {
+            try {
+                insert.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+        myInserts.clear();
+    }
+
+    /**
+     * Binds a nullable integer parameter.
+     *
+     * @param theStatement the statement to bind on
+     * @param theIndex the parameter index
+     * @param theValue the value, may be null
+     * @throws SQLException if the value cannot be bound
+     */
+    private static void setLong(final PreparedStatement theStatement, final int theIndex,
+                                final Long theValue) throws SQLException {
+        if (theValue == null) {
+            theStatement.setNull(theIndex, Types.INTEGER);
+        } else {
+            theStatement.setLong(theIndex, theValue);
+        }
+    }
+
+    /**
+     * Splits a path into its directory, including the trailing separator,
+     * and its leaf name. Both '/' and '\' are treated as separators.
+     *
+     * @param thePath the path to split, may be null
+     * @return the directory and the leaf name, both null if thePath is null
+     */
+    static String[] splitPath(final String thePath) {
+        if (thePath == null) {
+            return new String[] {null, null};
+        }
+        int index = Math.max(thePath.lastIndexOf('/'), thePath.lastIndexOf('\\'));
+        return new String[] {thePath.substring(0, index + 1), thePath.substring(index + 1)};
+    }
+}
@@ -0,0 +1,308 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Events are stored in one table per local day, named file_events_yyyyMMdd.
+ * The event_partitions catalog records the time range of every partition, so
+ * a query only opens the partitions its time range touches, and retention or
+ * clearing drops whole tables instead of deleting rows.
+ *
+ * Partitions are created by the EventInserter when the first event of a day
+ * is written. Row ids are unique across all partitions; the next id is kept
+ * in the one-row event_store table together with the retention setting.
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+final class EventPartitions {
+
+    /** Catalog of partitions and the half-open time range each one holds. */
+    private static final String CREATE_CATALOG = """
+            CREATE TABLE IF NOT EXISTS event_partitions (
+                name TEXT PRIMARY KEY,
+                start_time INTEGER NOT NULL,
+                end_time INTEGER NOT NULL
+            );
+            """;
+
+    /** Settings shared by all partitions, in a single row. */
+    private static final String CREATE_STORE = """
+            CREATE TABLE IF NOT EXISTS event_store (
+                next_id INTEGER NOT NULL,
+                retention_days INTEGER NOT NULL DEFAULT 0
+            );
+            """;
+
+    /**
+     * Table holding the events of one day. Timestamps are epoch milliseconds.
+     * File names, directories and extensions are ids into the dictionary
+     * tables, and the path is rebuilt as directory + (leaf_name or file name).
+     * reconciled is 1 for changes found on start that were made while the
+     * directory was not watched. A rename also stores the path it came from,
+     * split the same way. An event coalesced from several changes stores
+     * their number and the time of the last one; timestamp is the first.
+     * file_size is the size of the file when reported, if it was known.
+     */
+    private static final String CREATE_PARTITION = """
+            CREATE TABLE IF NOT EXISTS %1$s (
+                id INTEGER PRIMARY KEY,
+                name_id INTEGER REFERENCES file_names (id),
+                leaf_name TEXT,
+                directory_id INTEGER REFERENCES directories (id),
+                extension_id INTEGER REFERENCES extensions (id),
+                event_type TEXT,
+                timestamp INTEGER NOT NULL,
+                reconciled INTEGER NOT NULL DEFAULT 0,
+                previous_name_id INTEGER REFERENCES file_names (id),
+                previous_directory_id INTEGER REFERENCES directories (id),
+                event_count INTEGER NOT NULL DEFAULT 1,
+                last_timestamp INTEGER,
+                file_size INTEGER
+            );
+            """;
+
+    /**
+     * Indexes used by the date, event type, extension, directory and file
+     * name queries. The secondary indexes end with timestamp so that combined
+     * filters are answered with a single range scan.
+     */
+    private static final String[] CREATE_PARTITION_INDEXES = {
+        "CREATE INDEX IF NOT EXISTS %1$s_time ON %1$s (timestamp);",
+        "CREATE INDEX IF NOT EXISTS %1$s_type_time ON %1$s (event_type, timestamp);",
+        "CREATE INDEX IF NOT EXISTS %1$s_ext_time ON %1$s (extension_id, timestamp);",
+        "CREATE INDEX IF NOT EXISTS %1$s_dir_time ON %1$s (directory_id, timestamp);",
+        "CREATE INDEX IF NOT EXISTS %1$s_name_time ON %1$s (name_id, timestamp);"
+    };
+
+    /** Prefix of every partition table name. */
+    private static final String PREFIX = "file_events_";
+
+    /** Day part of a partition table name. */
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+    /**
+     * Utility class, not instantiated.
+     */
+    private EventPartitions() {
+    }
+
+    /**
+     * Creates the catalog and the settings row if they do not exist yet.
+     *
+     * @param theStatement statement to run the DDL on
+     * @throws SQLException if a statement fails
+     */
+    static void createCatalog(final Statement theStatement) throws SQLException {
+        theStatement.execute(CREATE_CATALOG);
+        theStatement.execute(CREATE_STORE);
+        theStatement.execute("INSERT INTO event_store (next_id) "
+                + "SELECT 1 WHERE NOT EXISTS (SELECT 1 FROM event_store);");
+    }
+
+    /**
+     * Returns the local day an epoch millisecond timestamp falls on.
+     *
+     * @param theMillis milliseconds since the epoch
+     * @return the local day
+     */
+    static LocalDate dayOf(final long theMillis) {
+        return DatabaseManager.toLocalDateTime(theMillis).toLocalDate();
+    }
+
+    /**
+     * Returns the name of the partition table holding a day.
+     *
+     * @param theDay the local day
+     * @return the table name
+     */
+    static String tableFor(final LocalDate theDay) {
+        return PREFIX + DAY_FORMAT.format(theDay);
+    }
+
+    /**
+     * Creates the partition for a day and records it in the catalog, if it
+     * does not exist yet. The caller commits.
+     *
+     * @param theConnection the writer connection
+     * @param theDay the local day
+     * @return true if the partition was created
+     * @throws SQLException if a statement fails
+     */
+    static boolean create(final Connection theConnection, final LocalDate theDay) throws SQLException {
+        String table = tableFor(theDay);
+        try (PreparedStatement pstmt = theConnection.prepareStatement(
+                "INSERT OR IGNORE INTO event_partitions (name, start_time, end_time) VALUES (?, ?, ?);")) {
+            pstmt.setString(1, table);
+            pstmt.setLong(2, startOf(theDay));
+            pstmt.setLong(3, startOf(theDay.plusDays(1)));
+            if (pstmt.executeUpdate() == 0) {
+                return false;
+            }
+        }
+        try (Statement stmt = theConnection.createStatement()) {
+            stmt.execute(CREATE_PARTITION.formatted(table));
+            for (String sql : CREATE_PARTITION_INDEXES) {
+                stmt.execute(sql.formatted(table));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lists the partitions overlapping a time range, oldest first. Every
+     * event in a partition is older than every event in the next one.
+     *
+     * @param theConnection the connection to read the catalog on
+     * @param theStart earliest timestamp in epoch milliseconds, or null for no bound
+     * @param theEnd latest timestamp in epoch milliseconds, or null for no bound
+     * @return the partition table names
+     * @throws SQLException if the catalog cannot be read
+     */
+    static List<String> overlapping(final Connection theConnection, final Long theStart,
+                                    final Long theEnd) throws SQLException {
+        List<String> tables = new ArrayList<>();
+        try (PreparedStatement pstmt = theConnection.prepareStatement("""
+                SELECT name FROM event_partitions
+                WHERE end_time > ? AND start_time <= ?
+                ORDER BY start_time;
+                """)) {
+            pstmt.setLong(1, theStart == null ? Long.MIN_VALUE : theStart);
+            pstmt.setLong(2, theEnd == null ? Long.MAX_VALUE : theEnd);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    tables.add(rs.getString(1));
+                }
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Drops every partition whose events are all older than a cutoff, and
+     * the rollup counts of the dropped days. The caller commits.
+     *
+     * @param theConnection the writer connection
+     * @param theCutoff epoch milliseconds; partitions ending at or before it are dropped
+     * @return the number of partitions dropped
+     * @throws SQLException if a statement fails
+     */
+    static int dropBefore(final Connection theConnection, final long theCutoff) throws SQLException {
+        List<String> tables = new ArrayList<>();
+        try (PreparedStatement pstmt = theConnection.prepareStatement(
+                "SELECT name FROM event_partitions WHERE end_time <= ?;")) {
+            pstmt.setLong(1, theCutoff);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    tables.add(rs.getString(1));
+                }
+            }
+        }
+        try (Statement stmt = theConnection.createStatement();
+             PreparedStatement uncatalog = theConnection.prepareStatement(
+                     "DELETE FROM event_partitions WHERE name = ?;")) {
+            for (String table : tables) {
+                stmt.execute("DROP TABLE IF EXISTS " + table + ";");
+                uncatalog.setString(1, table);
+                uncatalog.executeUpdate();
+            }
+        }
+        EventRollups.deleteBefore(theConnection, theCutoff);
+        return tables.size();
+    }
+
+    /**
+     * Drops the partitions that fall outside the stored retention period.
+     * Does nothing when events are kept forever. The caller commits.
+     *
+     * @param theConnection the writer connection
+     * @return the number of partitions dropped
+     * @throws SQLException if a statement fails
+     */
+    static int applyRetention(final Connection theConnection) throws SQLException {
+        int days = getRetentionDays(theConnection);
+        if (days <= 0) {
+            return 0;
+        }
+        return dropBefore(theConnection, startOf(LocalDate.now().minusDays(days - 1L)));
+    }
+
+    /**
+     * Reads the retention period.
+     *
+     * @param theConnection the connection to read on
+     * @return the number of days kept, or 0 to keep events forever
+     * @throws SQLException if the setting cannot be read
+     */
+    static int getRetentionDays(final Connection theConnection) throws SQLException {
+        try (Statement stmt = theConnection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT retention_days FROM event_store;")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Stores the retention period. The caller commits.
+     *
+     * @param theConnection the writer connection
+     * @param theDays the number of days kept, or 0 to keep events forever
+     * @throws SQLException if the setting cannot be written
+     */
+    static void setRetentionDays(final Connection theConnection, final int theDays) throws SQLException {
+        try (PreparedStatement pstmt = theConnection.prepareStatement(
+                "UPDATE event_store SET retention_days = ?;")) {
+            pstmt.setInt(1, theDays);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Reads the id the next event will get.
+     *
+     * @param theConnection the connection to read on
+     * @return the next row id
+     * @throws SQLException if the store cannot be read
+     */
+    static long readNextId(final Connection theConnection) throws SQLException {
+        try (Statement stmt = theConnection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT next_id FROM event_store;")) {
+            return rs.next() ? rs.getLong(1) : 1;
+        }
+    }
+
+    /**
+     * Stores the id the next event will get. The caller commits.
+     *
+     * @param theConnection the writer connection
+     * @param theNextId the next row id
+     * @throws SQLException if the store cannot be written
+     */
+    static void writeNextId(final Connection theConnection, final long theNextId) throws SQLException {
+        try (PreparedStatement pstmt = theConnection.prepareStatement(
+                "UPDATE event_store SET next_id = ?;")) {
+            pstmt.setLong(1, theNextId);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Returns the epoch milliseconds at which a local day starts.
+     *
+     * @param theDay the local day
+     * @return milliseconds since the epoch
+     */
+    private static long startOf(final LocalDate theDay) {
+        return theDay.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
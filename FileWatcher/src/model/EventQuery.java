@@ -0,0 +1,286 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+import java.time.LocalDateTime;
+
+/**
+ * Criteria for an event search. Each criterion that is set narrows the
+ * result; criteria left unset match everything. The DatabaseManager turns
+ * the whole query into one parameterized SQL statement, so filtering happens
+ * in the database and uses its indexes.
+ *
+ * Criteria are combined with chained calls, for example
+ * new EventQuery().withExtension(".log").withEventType(EventType.ENTRY_DELETE).
+ * Results are returned in time order.
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+public class EventQuery {
+
+    /** File extension to match (e.g. ".txt"), or null for any. */
+    private String myExtension;
+
+    /** Event type to match, or null for any. */
+    private EventType myEventType;
+
+    /** File name substring or glob pattern, or null for any. */
+    private String myFileNamePattern;
+
+    /** Substring of the path to match, or null for any. */
+    private String myPathPattern;
+
+    /** Root of the directory subtree to match, or null for any. */
+    private String myDirectory;
+
+    /** Earliest timestamp to match (inclusive), or null for no bound. */
+    private LocalDateTime myStart;
+
+    /** Latest timestamp to match (inclusive), or null for no bound. */
+    private LocalDateTime myEnd;
+
+    /** Last event of the previous page, or null to start at the beginning. */
+    private FileEvent myAfter;
+
+    /** Maximum number of results, or 0 for no limit. */
+    private int myLimit;
+
+    /**
+     * Restricts the query to one file extension.
+     *
+     * @param theExtension the extension (e.g. ".txt"); null or empty matches any
+     * @return this query
+     */
+    public EventQuery withExtension(final String theExtension) {
+        myExtension = theExtension == null || theExtension.isEmpty() ? null : theExtension;
+        return this;
+    }
+
+    /**
+     * Restricts the query to one event type.
+     *
+     * @param theType the event type; null matches any
+     * @return this query
+     */
+    public EventQuery withEventType(final EventType theType) {
+        myEventType = theType;
+        return this;
+    }
+
+    /**
+     * Restricts the query to file names matching a pattern, ignoring case.
+     * A pattern containing '*' or '?' is a glob matched against the whole
+     * name (e.g. "*.txt"); any other pattern matches as a substring (e.g. "report").
+     *
+     * @param thePattern the pattern; null or empty matches any
+     * @return this query
+     */
+    public EventQuery withFileName(final String thePattern) {
+        myFileNamePattern = thePattern == null || thePattern.isEmpty() ? null : thePattern;
+        return this;
+    }
+
+    /**
+     * Restricts the query to events whose directory path or file name contains
+     * a substring, ignoring case.
+     *
+     * @param theSubstring the substring; null or empty matches any
+     * @return this query
+     */
+    public EventQuery withPathContaining(final String theSubstring) {
+        myPathPattern = theSubstring == null || theSubstring.isEmpty() ? null : theSubstring;
+        return this;
+    }
+
+    /**
+     * Restricts the query to a directory and everything below it.
+     *
+     * @param theDirectory the root of the subtree; null or empty matches any
+     * @return this query
+     */
+    public EventQuery withDirectory(final String theDirectory) {
+        myDirectory = theDirectory == null || theDirectory.isEmpty() ? null : theDirectory;
+        return this;
+    }
+
+    /**
+     * Restricts the query to a time range. Either bound may be null.
+     *
+     * @param theStart earliest timestamp (inclusive)
+     * @param theEnd latest timestamp (inclusive)
+     * @return this query
+     */
+    public EventQuery withTimeRange(final LocalDateTime theStart, final LocalDateTime theEnd) {
+        myStart = theStart;
+        myEnd = theEnd;
+        return this;
+    }
+
+    /**
+     * Continues after the last event of a previous page.
+     *
+     * @param theAfter the last event received, or null for the first page
+     * @return this query
+     */
+    public EventQuery withAfter(final FileEvent theAfter) {
+        myAfter = theAfter;
+        return this;
+    }
+
+    /**
+     * Limits the number of results.
+     *
+     * @param theLimit maximum number of results, or 0 for no limit
+     * @return this query
+     */
+    public EventQuery withLimit(final int theLimit) {
+        if (theLimit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative: " + theLimit);
+        }
+        myLimit = theLimit;
+        return this;
+    }
+
+    /**
+     * Returns the extension criterion, or null.
+     *
+     * @return the extension criterion, or null
+     */
+    String getExtension() {
+        return myExtension;
+    }
+
+    /**
+     * Returns the event type criterion, or null.
+     *
+     * @return the event type criterion, or null
+     */
+    EventType getEventType() {
+        return myEventType;
+    }
+
+    /**
+     * Returns the file name pattern, or null.
+     *
+     * @return the file name pattern, or null
+     */
+    String getFileNamePattern() {
+        return myFileNamePattern;
+    }
+
+    /**
+     * Returns the path substring, or null.
+     *
+     * @return the path substring, or null
+     */
+    String getPathPattern() {
+        return myPathPattern;
+    }
+
+    /**
+     * Returns the directory criterion, or null.
+     *
+     * @return the directory criterion, or null
+     */
+    String getDirectory() {
+        return myDirectory;
+    }
+
+    /**
+     * Returns the start of the time range, or null.
+     *
+     * @return the start of the time range, or null
+     */
+    LocalDateTime getStart() {
+        return myStart;
+    }
+
+    /**
+     * Returns the end of the time range, or null.
+     *
+     * @return the end of the time range, or null
+     */
+    LocalDateTime getEnd() {
+        return myEnd;
+    }
+
+    /**
+     * Returns the last event of the previous page, or null.
+     *
+     * @return the last event of the previous page, or null
+     */
+    FileEvent getAfter() {
+        return myAfter;
+    }
+
+    /**
+     * Returns the result limit, or 0 for none.
+     *
+     * @return the result limit, or 0 for none
+     */
+    int getLimit() {
+        return myLimit;
+    }
+
+    /**
+     * Returns true if the file name pattern is a glob rather than a substring.
+     *
+     * @return whether the pattern contains glob wildcards
+     */
+    boolean isFileNameGlob() {
+        return myFileNamePattern != null
+                && (myFileNamePattern.indexOf('*') >= 0 || myFileNamePattern.indexOf('?') >= 0);
+    }
+
+    /**
+     * Converts the file name pattern to an SQL LIKE pattern, using '\' as the
+     * escape character. LIKE ignores ASCII case, matching the pattern rules above.
+     *
+     * @return the LIKE pattern, or null if no pattern is set
+     */
+    String toLikePattern() {
+        return myFileNamePattern == null ? null : toLikePattern(myFileNamePattern, isFileNameGlob());
+    }
+
+    /**
+     * Converts the path substring to an SQL LIKE pattern.
+     *
+     * @return the LIKE pattern, or null if no path substring is set
+     */
+    String toPathLikePattern() {
+        return myPathPattern == null ? null : toLikePattern(myPathPattern, false);
+    }
+
+    /**
+     * Converts a glob or substring to an SQL LIKE pattern. Characters that
+     * LIKE treats specially are escaped with '\'.
+     *
+     * @param thePattern the pattern to convert
+     * @param theGlob true to translate '*' and '?', false to match a substring
+     * @return the LIKE pattern
+     */
+    private static String toLikePattern(final String thePattern, final boolean theGlob) {
+        StringBuilder like = new StringBuilder(thePattern.length() + 2);
+        if (!theGlob) {
+            like.append('%');
+        }
+        for (int i = 0; i < thePattern.length(); i++) {
+            char c = thePattern.charAt(i);
+            if (theGlob && c == '*') {
+                like.append('%');
+            } else if (theGlob && c == '?') {
+                like.append('_');
+            } else {
+                if (c == '%' || c == '_' || c == '\\') {
+                    like.append('\\');
+                }
+                like.append(c);
+            }
+        }
+        if (!theGlob) {
+            like.append('%');
+        }
+        return like.toString();
+    }
+}
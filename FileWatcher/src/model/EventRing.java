@@ -0,0 +1,480 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands the FileEvents of the dispatch thread to the subscriptions of a
+ * FileWatcher without locks. The events are put in a preallocated ring of
+ * slots, and sequence numbers say how far the dispatch thread has published
+ * (the cursor) and how far each subscription has read. Every subscription
+ * reads every event on a thread of its own, so a slow one holds up neither
+ * the dispatch thread nor the others, except as its BackpressurePolicy
+ * allows:
+ *   - BLOCK and SPILL readers gate the dispatch thread, which waits before
+ *     it reuses a slot they have not read; a SPILL reader only moves the
+ *     events to an EventSpill, which a second thread hands to the handler;
+ *   - DROP_OLDEST and COALESCE readers do not gate, and count the slots
+ *     that were reused before they read them as dropped.
+ *
+ * There is one producer, the dispatch thread, which calls publish() and
+ * close(). Readers with nothing to read park until the producer wakes them.
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+final class EventRing {
+
+    /** Default number of slots. */
+    static final int DEFAULT_CAPACITY = 4096;
+
+    /** Longest a reader parks before it looks at the cursor again. */
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /** How long the producer parks while a gating reader frees a slot. */
+    private static final long STALL_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /** How long close() waits for each thread to finish. */
+    private static final long CLOSE_MILLIS = 5000;
+
+    /** The slots; event n is in slot n & myMask. */
+    private final AtomicReferenceArray<FileEvent> mySlots;
+
+    /** Number of slots, a power of two. */
+    private final int myCapacity;
+
+    /** Mask giving the slot of a sequence number. */
+    private final int myMask;
+
+    /** Sequence number of the last published event. */
+    private final AtomicLong myCursor;
+
+    /** One reader per subscription. */
+    private final List<Reader> myReaders;
+
+    /** The readers the producer waits for. */
+    private final List<Reader> myGating;
+
+    /** Lowest sequence read by the gating readers when last looked at; producer only. */
+    private long myGate;
+
+    /** True once nothing more is published. */
+    private volatile boolean myClosed;
+
+    /**
+     * Reads the events for one subscription.
+     */
+    private final class Reader implements Runnable {
+
+        /** The subscription. */
+        private final EventSubscription mySubscription;
+
+        /** The policy, fixed while the ring runs. */
+        private final BackpressurePolicy myPolicy;
+
+        /** Sequence number of the last event read. */
+        private final AtomicLong mySequence = new AtomicLong(-1);
+
+        /** The thread reading the ring. */
+        private final Thread myThread;
+
+        /** The events waiting for the handler with SPILL, or null. */
+        private final EventSpill mySpill;
+
+        /** The thread handing spilled events to the handler, or null. */
+        private final Thread myHandlerThread;
+
+        /** True while the reader is parked or about to park. */
+        private volatile boolean myParked;
+
+        /**
+         * Creates a reader.
+         *
+         * @param theSubscription the subscription
+         */
+        Reader(final EventSubscription theSubscription) {
+            mySubscription = theSubscription;
+            myPolicy = theSubscription.getPolicy();
+            myThread = new Thread(this, "event-ring-" + theSubscription.getName());
+            myThread.setDaemon(true);
+            if (myPolicy == BackpressurePolicy.SPILL) {
+                mySpill = new EventSpill(myCapacity, theSubscription);
+                myHandlerThread = new Thread(this::handleSpilled,
+                        "event-ring-" + theSubscription.getName() + "-handler");
+                myHandlerThread.setDaemon(true);
+            } else {
+                mySpill = null;
+                myHandlerThread = null;
+            }
+            theSubscription.setDepth(() -> Math.max(0, myCursor.get() - mySequence.get())
+                    + (mySpill == null ? 0 : mySpill.size()));
+        }
+
+        /**
+         * Reads events until the ring is closed and everything is read.
+         */
+        @Override
+        public void run() {
+            long sequence = -1;
+            while (true) {
+                long available = waitFor(sequence);
+                if (available < 0) {
+                    break;
+                }
+                switch (myPolicy) {
+                    case BLOCK -> {
+                        for (long next = sequence + 1; next <= available; next++) {
+                            FileEvent event = mySlots.getAcquire(slot(next));
+                            mySequence.setRelease(next);
+                            mySubscription.deliver(event);
+                        }
+                        sequence = available;
+                    }
+                    case SPILL -> {
+                        List<FileEvent> events = new ArrayList<>((int) (available - sequence));
+                        for (long next = sequence + 1; next <= available; next++) {
+                            events.add(mySlots.getAcquire(slot(next)));
+                        }
+                        sequence = available;
+                        mySequence.setRelease(sequence);
+                        mySpill.addAll(events);
+                    }
+                    case DROP_OLDEST -> sequence = readOldest(sequence, available);
+                    case COALESCE -> sequence = readCoalesced(sequence, available);
+                }
+            }
+            if (mySpill != null) {
+                mySpill.close();
+            }
+        }
+
+        /**
+         * Reads the oldest event that was not overwritten.
+         *
+         * @param theSequence the last sequence read
+         * @param theAvailable the last sequence published
+         * @return the new last sequence read
+         */
+        private long readOldest(final long theSequence, final long theAvailable) {
+            long next = skipOverwritten(theSequence + 1, theAvailable);
+            FileEvent event = mySlots.getAcquire(slot(next));
+            if (isOverwritten(next)) {
+                // Reused while it was read; counted on the next round
+                return next - 1;
+            }
+            mySequence.setRelease(next);
+            mySubscription.deliver(event);
+            return next;
+        }
+
+        /**
+         * Reads every event that was not overwritten and hands them over
+         * with those on the same file merged.
+         *
+         * @param theSequence the last sequence read
+         * @param theAvailable the last sequence published
+         * @return the new last sequence read
+         */
+        private long readCoalesced(final long theSequence, final long theAvailable) {
+            long first = skipOverwritten(theSequence + 1, theAvailable);
+            List<FileEvent> events = new ArrayList<>((int) (theAvailable - first + 1));
+            for (long next = first; next <= theAvailable; next++) {
+                events.add(mySlots.getAcquire(slot(next)));
+            }
+            // Drop those that were reused while they were read
+            int reused = 0;
+            while (reused < events.size() && isOverwritten(first + reused)) {
+                reused++;
+            }
+            mySubscription.dropped(reused);
+            mySequence.setRelease(theAvailable);
+            List<FileEvent> merged = merge(events.subList(reused, events.size()));
+            mySubscription.coalesced(events.size() - reused - merged.size());
+            for (FileEvent event : merged) {
+                mySubscription.deliver(event);
+            }
+            return theAvailable;
+        }
+
+        /**
+         * Counts the events that were overwritten before they were read as dropped.
+         *
+         * @param theNext the next sequence to read
+         * @param theAvailable the last sequence published
+         * @return the first sequence still in the ring
+         */
+        private long skipOverwritten(final long theNext, final long theAvailable) {
+            // The oldest slot is the one the next event goes in, so it is given up too
+            long oldest = theAvailable - myCapacity + 2;
+            if (theNext >= oldest) {
+                return theNext;
+            }
+            mySubscription.dropped(oldest - theNext);
+            return oldest;
+        }
+
+        /**
+         * Returns true if a slot may have been reused since its event was
+         * published. The producer writes event n + capacity to the slot
+         * while the cursor is still n + capacity - 1, so that is checked.
+         *
+         * @param theSequence the sequence of the event read
+         * @return whether the event read may be a later one
+         */
+        private boolean isOverwritten(final long theSequence) {
+            return myCursor.get() >= theSequence + myCapacity - 1;
+        }
+
+        /**
+         * Waits until there is something to read or the ring is closed.
+         *
+         * @param theSequence the last sequence read
+         * @return the last sequence published, or -1 if the ring is closed and all is read
+         */
+        private long waitFor(final long theSequence) {
+            while (true) {
+                long available = myCursor.get();
+                if (available > theSequence) {
+                    return available;
+                }
+                if (myClosed) {
+                    available = myCursor.get();
+                    return available > theSequence ? available : -1;
+                }
+                myParked = true;
+                if (myCursor.get() == theSequence && !myClosed) {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                myParked = false;
+            }
+        }
+
+        /**
+         * Hands the spilled events to the handler until the spill is closed and empty.
+         */
+        private void handleSpilled() {
+            try {
+                FileEvent event;
+                while ((event = mySpill.take()) != null) {
+                    mySubscription.deliver(event);
+                }
+            } catch (InterruptedException e) {
+                // Stopped before the rest was handled
+            } finally {
+                mySpill.discard();
+            }
+        }
+    }
+
+    /**
+     * Creates a ring for the subscriptions. Their policies are read now.
+     *
+     * @param theCapacity the number of slots, rounded up to a power of two
+     * @param theSubscriptions the subscriptions
+     */
+    EventRing(final int theCapacity, final List<EventSubscription> theSubscriptions) {
+        myCapacity = Integer.highestOneBit(Math.max(2, theCapacity - 1)) << 1;
+        myMask = myCapacity - 1;
+        mySlots = new AtomicReferenceArray<>(myCapacity);
+        myCursor = new AtomicLong(-1);
+        myReaders = new ArrayList<>();
+        myGating = new ArrayList<>();
+        for (EventSubscription subscription : theSubscriptions) {
+            Reader reader = new Reader(subscription);
+            myReaders.add(reader);
+            if (reader.myPolicy == BackpressurePolicy.BLOCK || reader.myPolicy == BackpressurePolicy.SPILL) {
+                myGating.add(reader);
+            }
+        }
+        myGate = -1;
+    }
+
+    /**
+     * Starts the threads of the readers.
+     */
+    void start() {
+        for (Reader reader : myReaders) {
+            reader.myThread.start();
+            if (reader.myHandlerThread != null) {
+                reader.myHandlerThread.start();
+            }
+        }
+    }
+
+    /**
+     * Publishes an event to every reader. Waits only while a gating reader
+     * has not read the slot the event goes in. Producer only.
+     *
+     * @param theEvent the event
+     */
+    void publish(final FileEvent theEvent) {
+        long next = myCursor.get() + 1;
+        long wrap = next - myCapacity;
+        if (wrap > myGate) {
+            myGate = waitForGate(wrap);
+        }
+        mySlots.setRelease(slot(next), theEvent);
+        myCursor.set(next);
+        for (Reader reader : myReaders) {
+            if (reader.myParked) {
+                LockSupport.unpark(reader.myThread);
+            }
+        }
+    }
+
+    /**
+     * Lets the readers read what is left and waits for them to finish.
+     * Producer only.
+     */
+    void close() {
+        myClosed = true;
+        for (Reader reader : myReaders) {
+            LockSupport.unpark(reader.myThread);
+        }
+        // The dispatch thread is closing because it was interrupted; the readers still get their time
+        boolean interrupted = Thread.interrupted();
+        for (Reader reader : myReaders) {
+            join(reader.myThread);
+            if (reader.myHandlerThread != null) {
+                join(reader.myHandlerThread);
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits until the gating readers have read up to a sequence.
+     *
+     * @param theWrap the sequence whose slot is to be reused
+     * @return the lowest sequence the gating readers have read
+     */
+    private long waitForGate(final long theWrap) {
+        // An interrupt stops the dispatch loop later; it must not turn this wait into a spin
+        boolean interrupted = Thread.interrupted();
+        boolean stalled = false;
+        long gate;
+        while ((gate = lowestGatingSequence()) < theWrap) {
+            if (!stalled) {
+                for (Reader reader : myGating) {
+                    if (reader.mySequence.get() < theWrap) {
+                        reader.mySubscription.stalled();
+                    }
+                }
+                stalled = true;
+            }
+            LockSupport.parkNanos(this, STALL_NANOS);
+            interrupted |= Thread.interrupted();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return gate;
+    }
+
+    /**
+     * Returns the lowest sequence read by a live gating reader. A reader
+     * whose thread died no longer holds the producer up.
+     *
+     * @return the lowest sequence, or Long.MAX_VALUE if there are no gating readers
+     */
+    private long lowestGatingSequence() {
+        long lowest = Long.MAX_VALUE;
+        for (Reader reader : myGating) {
+            if (reader.myThread.getState() != Thread.State.TERMINATED) {
+                lowest = Math.min(lowest, reader.mySequence.get());
+            }
+        }
+        return lowest;
+    }
+
+    /**
+     * Returns the slot of a sequence number.
+     *
+     * @param theSequence the sequence number
+     * @return the index of its slot
+     */
+    private int slot(final long theSequence) {
+        return (int) theSequence & myMask;
+    }
+
+    /**
+     * Merges the events on the same file the way the EventCoalescer does
+     * with modifications: a create or modification absorbs the modifications
+     * and completed writes that follow it. Other events are kept, and the
+     * events of each file keep their order. The events themselves are
+     * shared with the other readers, so merged ones are copies.
+     *
+     * @param theEvents the events, in order
+     * @return the merged events
+     */
+    private static List<FileEvent> merge(final List<FileEvent> theEvents) {
+        List<FileEvent> merged = new ArrayList<>(theEvents.size());
+        Map<String, Integer> last = new LinkedHashMap<>();
+        for (FileEvent event : theEvents) {
+            Integer index = last.get(event.getMyPath());
+            if (index != null && absorbs(merged.get(index), event)) {
+                merged.set(index, combine(merged.get(index), event));
+            } else {
+                last.put(event.getMyPath(), merged.size());
+                merged.add(event);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Returns true if an event absorbs the next one on the same file.
+     *
+     * @param theEvent the earlier event
+     * @param theNext the later event
+     * @return whether they merge
+     */
+    private static boolean absorbs(final FileEvent theEvent, final FileEvent theNext) {
+        EventType kind = theEvent.getMyEventType();
+        EventType next = theNext.getMyEventType();
+        return (kind == EventType.ENTRY_CREATE || kind == EventType.ENTRY_MODIFY)
+                && (next == EventType.ENTRY_MODIFY || next == EventType.ENTRY_WRITE_COMPLETE)
+                && theEvent.getMyPreviousPath() == null;
+    }
+
+    /**
+     * Returns a copy of an event that also stands for the next one.
+     *
+     * @param theEvent the earlier event
+     * @param theNext the later event
+     * @return the merged event
+     */
+    private static FileEvent combine(final FileEvent theEvent, final FileEvent theNext) {
+        FileEvent merged = new FileEvent(theEvent.getMyFileName(), theEvent.getMyFileExtension(),
+                theEvent.getMyPath(), theEvent.getMyEventType(), theEvent.getMyTimeStamp());
+        merged.setMyReconciled(theEvent.isMyReconciled() && theNext.isMyReconciled());
+        merged.setMyCount(theEvent.getMyCount() + theNext.getMyCount());
+        merged.setMyLastTimeStamp(theNext.getMyLastTimeStamp());
+        merged.setMyFileSize(theNext.getMyFileSize() >= 0 ? theNext.getMyFileSize() : theEvent.getMyFileSize());
+        return merged;
+    }
+
+    /**
+     * Waits for a thread to finish, and interrupts it if it takes too long.
+     *
+     * @param theThread the thread
+     */
+    private static void join(final Thread theThread) {
+        try {
+            theThread.join(CLOSE_MILLIS);
+        } catch (InterruptedException e) {
+            // Give up waiting
+        }
+        theThread.interrupt();
+    }
+}
@@ -0,0 +1,258 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maintains the per-minute and per-hour event count tables. Each row counts
+ * the events of one event type, extension and top-level directory in one
+ * time bucket, so summary questions are answered by reading a few buckets
+ * instead of every event.
+ *
+ * Counts are collected in memory while a batch is built and added to the
+ * tables by write(), in the same transaction as the events themselves.
+ * Missing extensions and directories are counted under id 0.
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+class EventRollups {
+
+    /** Tables holding the counts, one per resolution. */
+    private static final String[] CREATE_TABLES = {
+        """
+            CREATE TABLE IF NOT EXISTS event_counts_minute (
+                bucket INTEGER NOT NULL,
+                event_type TEXT NOT NULL,
+                extension_id INTEGER NOT NULL,
+                root_id INTEGER NOT NULL,
+                count INTEGER NOT NULL,
+                PRIMARY KEY (bucket, event_type, extension_id, root_id)
+            ) WITHOUT ROWID;
+            """,
+        """
+            CREATE TABLE IF NOT EXISTS event_counts_hour (
+                bucket INTEGER NOT NULL,
+                event_type TEXT NOT NULL,
+                extension_id INTEGER NOT NULL,
+                root_id INTEGER NOT NULL,
+                count INTEGER NOT NULL,
+                PRIMARY KEY (bucket, event_type, extension_id, root_id)
+            ) WITHOUT ROWID;
+            """
+    };
+
+    /** Adds a count to a bucket, creating the row if needed. */
+    private static final String UPSERT_SQL = """
+            INSERT INTO %s (bucket, event_type, extension_id, root_id, count)
+            VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT (bucket, event_type, extension_id, root_id)
+            DO UPDATE SET count = count + excluded.count;
+            """;
+
+    /** Counts not yet written, by minute bucket. */
+    private final Map<Key, Long> myMinuteCounts = new HashMap<>();
+
+    /** Counts not yet written, by hour bucket. */
+    private final Map<Key, Long> myHourCounts = new HashMap<>();
+
+    /** Upsert into the minute table. */
+    private final PreparedStatement myMinuteUpsert;
+
+    /** Upsert into the hour table. */
+    private final PreparedStatement myHourUpsert;
+
+    /**
+     * Identifies one row of a count table.
+     *
+     * @param bucket start of the bucket in epoch milliseconds
+     * @param eventType the event type
+     * @param extensionId id of the extension, or 0
+     * @param rootId id of the top-level directory, or 0
+     */
+    private record Key(long bucket, String eventType, long extensionId, long rootId) {
+    }
+
+    /**
+     * Prepares the statements used to update the count tables.
+     *
+     * @param theConnection the connection to write to
+     * @throws SQLException if a statement cannot be prepared
+     */
+    EventRollups(final Connection theConnection) throws SQLException {
+        myMinuteUpsert = theConnection.prepareStatement(UPSERT_SQL.formatted("event_counts_minute"));
+        myHourUpsert = theConnection.prepareStatement(UPSERT_SQL.formatted("event_counts_hour"));
+    }
+
+    /**
+     * Creates the count tables if they do not exist yet.
+     *
+     * @param theStatement statement to run the DDL on
+     * @throws SQLException if a statement fails
+     */
+    static void createTables(final Statement theStatement) throws SQLException {
+        for (String sql : CREATE_TABLES) {
+            theStatement.execute(sql);
+        }
+    }
+
+    /**
+     * Returns the name of the count table for a resolution.
+     *
+     * @param theResolution the bucket size
+     * @return the table name
+     */
+    static String tableFor(final EventCountQuery.Resolution theResolution) {
+        return theResolution == EventCountQuery.Resolution.MINUTE
+                ? "event_counts_minute" : "event_counts_hour";
+    }
+
+    /**
+     * Deletes the counts of buckets that start before a cutoff. The caller commits.
+     *
+     * @param theConnection the writer connection
+     * @param theCutoff epoch milliseconds
+     * @throws SQLException if a statement fails
+     */
+    static void deleteBefore(final Connection theConnection, final long theCutoff) throws SQLException {
+        for (EventCountQuery.Resolution resolution : EventCountQuery.Resolution.values()) {
+            try (PreparedStatement pstmt = theConnection.prepareStatement(
+                    "DELETE FROM " + tableFor(resolution) + " WHERE bucket < ?;")) {
+                pstmt.setLong(1, theCutoff);
+                pstmt.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Counts one event.
+     *
+     * @param theTimestamp the event time in epoch milliseconds
+     * @param theEventType the event type
+     * @param theExtensionId id of the extension, may be null
+     * @param theRootId id of the top-level directory, may be null
+     */
+    void add(final long theTimestamp, final String theEventType, final Long theExtensionId,
+             final Long theRootId) {
+        long extension = theExtensionId == null ? 0 : theExtensionId;
+        long root = theRootId == null ? 0 : theRootId;
+        myMinuteCounts.merge(new Key(EventCountQuery.Resolution.MINUTE.floor(theTimestamp),
+                theEventType, extension, root), 1L, Long::sum);
+        myHourCounts.merge(new Key(EventCountQuery.Resolution.HOUR.floor(theTimestamp),
+                theEventType, extension, root), 1L, Long::sum);
+    }
+
+    /**
+     * Adds the collected counts to the tables. The caller commits.
+     *
+     * @throws SQLException if a statement fails
+     */
+    void write() throws SQLException {
+        write(myMinuteUpsert, myMinuteCounts);
+        write(myHourUpsert, myHourCounts);
+    }
+
+    /**
+     * Forgets the collected counts. Must be called after a rollback.
+     */
+    void clear() {
+        myMinuteCounts.clear();
+        myHourCounts.clear();
+    }
+
+    /**
+     * Closes the prepared statements.
+     */
+    void close() {
+        try {
+            myMinuteUpsert.close();
+            myHourUpsert.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Upserts the counts of one table as a batch and forgets them.
+     *
+     * @param theUpsert the upsert statement of the table
+     * @param theCounts the counts to add
+     * @throws SQLException if the batch fails
+     */
+    private static void write(final PreparedStatement theUpsert, final Map<Key, Long> theCounts)
+            throws SQLException {
+        if (theCounts.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<Key, Long> entry : theCounts.entrySet()) {
+            Key key = entry.getKey();
+            theUpsert.setLong(1, key.bucket());
+            theUpsert.setString(2, key.eventType());
+            theUpsert.setLong(3, key.extensionId());
+            theUpsert.setLong(4, key.rootId());
+            theUpsert.setLong(5, entry.getValue());
+            theUpsert.addBatch();
+        }
+        theUpsert.executeBatch();
+        theCounts.clear();
+    }
+
+    /**
+     * Returns the top-level directory of a directory path: the root plus its
+     * first component, with a trailing separator. A drive ("C:") counts as
+     * part of the root. A directory that is itself a root is returned as is.
+     *
+     * @param theDirectory a directory ending with its separator, may be null
+     * @return the top-level directory, or null if theDirectory is null
+     */
+    static String topLevelDirectory(final String theDirectory) {
+        if (theDirectory == null) {
+            return null;
+        }
+        int start = 0;
+        while (start < theDirectory.length() && isSeparator(theDirectory.charAt(start))) {
+            start++;
+        }
+        int end = nextSeparator(theDirectory, start);
+        if (end > start && theDirectory.charAt(end - 1) == ':') {
+            // Skip the drive and look at the component after it
+            start = end;
+            while (start < theDirectory.length() && isSeparator(theDirectory.charAt(start))) {
+                start++;
+            }
+            end = nextSeparator(theDirectory, start);
+        }
+        return end < theDirectory.length() ? theDirectory.substring(0, end + 1) : theDirectory;
+    }
+
+    /**
+     * Finds the next separator at or after an index.
+     *
+     * @param thePath the path to search
+     * @param theFrom the index to start at
+     * @return the index of the separator, or the path length if there is none
+     */
+    private static int nextSeparator(final String thePath, final int theFrom) {
+        int index = theFrom;
+        while (index < thePath.length() && !isSeparator(thePath.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Returns true for the path separators '/' and '\'.
+     *
+     * @param theChar the character to test
+     * @return whether the character is a separator
+     */
+    private static boolean isSeparator(final char theChar) {
+        return theChar == '/' || theChar == '\\';
+    }
+}
@@ -0,0 +1,218 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * The waiting events of a SPILL subscription, in order. Events are kept in
+ * memory up to a limit; beyond it, and until the events in memory are all
+ * taken, they are appended to a temporary file instead, so the backlog of
+ * a slow subscriber costs disk rather than memory. The file is read back as
+ * the subscriber catches up and deleted once it is drained.
+ *
+ * One thread adds events and another takes them; the methods synchronize
+ * on the spill.
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+final class EventSpill {
+
+    /** Most events kept in memory. */
+    private final int myMemoryLimit;
+
+    /** Counts the spilled and lost events. */
+    private final EventSubscription mySubscription;
+
+    /** The oldest waiting events. */
+    private final ArrayDeque<FileEvent> myMemory;
+
+    /** The spill file, or null if nothing is spilled. */
+    private Path myFile;
+
+    /** Appends to the spill file. */
+    private DataOutputStream myOut;
+
+    /** Reads the spill file back. */
+    private DataInputStream myIn;
+
+    /** Number of events in the spill file not read yet. */
+    private long myOnDisk;
+
+    /** True once no more events are added. */
+    private boolean myClosed;
+
+    /**
+     * Creates an empty spill.
+     *
+     * @param theMemoryLimit most events kept in memory
+     * @param theSubscription counts the spilled and lost events
+     */
+    EventSpill(final int theMemoryLimit, final EventSubscription theSubscription) {
+        myMemoryLimit = theMemoryLimit;
+        mySubscription = theSubscription;
+        myMemory = new ArrayDeque<>();
+    }
+
+    /**
+     * Adds events after those waiting. They go to the spill file if memory
+     * is full or the file already holds events, which are older.
+     *
+     * @param theEvents the events, in order
+     */
+    synchronized void addAll(final List<FileEvent> theEvents) {
+        int kept = 0;
+        int spilled = 0;
+        try {
+            for (FileEvent event : theEvents) {
+                if (myOnDisk == 0 && spilled == 0 && myMemory.size() < myMemoryLimit) {
+                    myMemory.add(event);
+                    kept++;
+                } else {
+                    write(event);
+                    spilled++;
+                }
+            }
+            if (spilled > 0) {
+                myOut.flush();
+            }
+        } catch (IOException e) {
+            // Whatever was to be read from the file is lost
+            e.printStackTrace();
+            mySubscription.dropped(myOnDisk + theEvents.size() - kept);
+            spilled = 0;
+            myOnDisk = 0;
+            discard();
+        }
+        myOnDisk += spilled;
+        mySubscription.spilled(spilled);
+        notifyAll();
+    }
+
+    /**
+     * Takes the oldest waiting event, waiting for one if there is none.
+     *
+     * @return the event, or null once the spill is closed and empty
+     * @throws InterruptedException if interrupted while waiting
+     */
+    synchronized FileEvent take() throws InterruptedException {
+        while (myMemory.isEmpty() && myOnDisk == 0 && !myClosed) {
+            wait();
+        }
+        if (!myMemory.isEmpty()) {
+            return myMemory.poll();
+        }
+        if (myOnDisk == 0) {
+            return null;
+        }
+        try {
+            FileEvent event = read();
+            if (--myOnDisk == 0) {
+                // Drained: start over with an empty file next time
+                discard();
+            }
+            return event;
+        } catch (IOException e) {
+            e.printStackTrace();
+            mySubscription.dropped(myOnDisk);
+            myOnDisk = 0;
+            discard();
+            return take();
+        }
+    }
+
+    /**
+     * Returns the number of waiting events.
+     *
+     * @return events in memory and in the spill file
+     */
+    synchronized long size() {
+        return myMemory.size() + myOnDisk;
+    }
+
+    /**
+     * Stops adding events. take() returns null once the rest are taken.
+     */
+    synchronized void close() {
+        myClosed = true;
+        notifyAll();
+    }
+
+    /**
+     * Deletes the spill file along with the events in it that were not taken.
+     */
+    synchronized void discard() {
+        try {
+            if (myOut != null) {
+                myOut.close();
+            }
+            if (myIn != null) {
+                myIn.close();
+            }
+            if (myFile != null) {
+                Files.deleteIfExists(myFile);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        myOut = null;
+        myIn = null;
+        myFile = null;
+    }
+
+    /**
+     * Appends one event to the spill file, creating the file if needed.
+     *
+     * @param theEvent the event
+     * @throws IOException if the file cannot be written
+     */
+    private void write(final FileEvent theEvent) throws IOException {
+        if (myFile == null) {
+            myFile = Files.createTempFile("file-watcher-" + mySubscription.getName() + "-", ".spill");
+            myFile.toFile().deleteOnExit();
+            myOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(myFile)));
+            myIn = new DataInputStream(new BufferedInputStream(Files.newInputStream(myFile)));
+        }
+        myOut.writeUTF(theEvent.getMyFileName());
+        myOut.writeUTF(theEvent.getMyFileExtension());
+        myOut.writeUTF(theEvent.getMyPath());
+        myOut.writeByte(theEvent.getMyEventType().ordinal());
+        myOut.writeUTF(theEvent.getMyTimeStamp().toString());
+        myOut.writeUTF(theEvent.getMyLastTimeStamp().toString());
+        myOut.writeBoolean(theEvent.isMyReconciled());
+        myOut.writeUTF(theEvent.getMyPreviousPath() == null ? "" : theEvent.getMyPreviousPath());
+        myOut.writeInt(theEvent.getMyCount());
+        myOut.writeLong(theEvent.getMyFileSize());
+    }
+
+    /**
+     * Reads the next event from the spill file.
+     *
+     * @return the event
+     * @throws IOException if the file cannot be read
+     */
+    private FileEvent read() throws IOException {
+        FileEvent event = new FileEvent(myIn.readUTF(), myIn.readUTF(), myIn.readUTF(),
+                EventType.values()[myIn.readByte()], LocalDateTime.parse(myIn.readUTF()));
+        LocalDateTime last = LocalDateTime.parse(myIn.readUTF());
+        if (!last.equals(event.getMyTimeStamp())) {
+            event.setMyLastTimeStamp(last);
+        }
+        event.setMyReconciled(myIn.readBoolean());
+        String previous = myIn.readUTF();
+        event.setMyPreviousPath(previous.isEmpty() ? null : previous);
+        event.setMyCount(myIn.readInt());
+        event.setMyFileSize(myIn.readLong());
+        return event;
+    }
+}
@@ -0,0 +1,36 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+/**
+ * A step of the FileWatcher's dispatch pipeline that may hold events for a
+ * while, such as the RenameCorrelator or the EventCoalescer. The dispatch
+ * thread wakes up when the next held event is due and flushes every stage,
+ * upstream first, so what one stage lets go can be handled by the next in
+ * the same pass.
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+interface EventStage {
+
+    /**
+     * Passes on the held events that no longer have to wait.
+     *
+     * @param theNow the current time in milliseconds
+     */
+    void flush(long theNow);
+
+    /**
+     * Passes on everything that is held.
+     */
+    void flushAll();
+
+    /**
+     * Returns how long until the next held event may be due.
+     *
+     * @param theNow the current time in milliseconds
+     * @return milliseconds to wait, or -1 if nothing is held
+     */
+    long timeToNextFlush(long theNow);
+}
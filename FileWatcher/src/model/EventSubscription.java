@@ -0,0 +1,232 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * A consumer of the FileEvents of a FileWatcher, with the BackpressurePolicy
+ * that decides what happens when it falls behind. Each subscription takes
+ * the events on a thread of its own, so a slow one, such as one that writes
+ * to a database, does not hold up the FileWatcher or the other subscriptions.
+ *
+ * The subscription keeps counts of what happened to its events, so callers
+ * can see how well it keeps up.
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+public final class EventSubscription {
+
+    /** Name of the subscription, used for its threads and spill file. */
+    private final String myName;
+
+    /** Takes the events. */
+    private final Consumer<FileEvent> myHandler;
+
+    /** The policy used from the next time watching starts. */
+    private volatile BackpressurePolicy myPolicy;
+
+    /** Number of events waiting, while watching. */
+    private volatile LongSupplier myDepth = () -> 0;
+
+    /** Number of events handed to the handler. */
+    private final AtomicLong myDelivered = new AtomicLong();
+
+    /** Number of events lost because the subscription fell behind. */
+    private final AtomicLong myDropped = new AtomicLong();
+
+    /** Number of events merged into others. */
+    private final AtomicLong myCoalesced = new AtomicLong();
+
+    /** Number of events written to the spill file. */
+    private final AtomicLong mySpilled = new AtomicLong();
+
+    /** Number of times the FileWatcher waited for the subscription. */
+    private final AtomicLong myStalls = new AtomicLong();
+
+    /**
+     * Creates a subscription.
+     *
+     * @param theName the name of the subscription
+     * @param thePolicy what happens when it falls behind
+     * @param theHandler takes the events, one at a time and in order
+     */
+    EventSubscription(final String theName, final BackpressurePolicy thePolicy,
+                      final Consumer<FileEvent> theHandler) {
+        if (theName == null || thePolicy == null || theHandler == null) {
+            throw new IllegalArgumentException("Name, policy and handler are required");
+        }
+        myName = theName;
+        myPolicy = thePolicy;
+        myHandler = theHandler;
+    }
+
+    /**
+     * Gets the name of the subscription.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return myName;
+    }
+
+    /**
+     * Gets what happens when the subscription falls behind.
+     *
+     * @return the policy
+     */
+    public BackpressurePolicy getPolicy() {
+        return myPolicy;
+    }
+
+    /**
+     * Sets what happens when the subscription falls behind. Takes effect
+     * the next time watching starts.
+     *
+     * @param thePolicy the policy
+     */
+    public void setPolicy(final BackpressurePolicy thePolicy) {
+        if (thePolicy == null) {
+            throw new IllegalArgumentException("Policy is required");
+        }
+        myPolicy = thePolicy;
+    }
+
+    /**
+     * Gets the number of events reported but not yet handed to the
+     * subscription, including those spilled.
+     *
+     * @return the number of waiting events
+     */
+    public long getDepth() {
+        return myDepth.getAsLong();
+    }
+
+    /**
+     * Gets the number of events handed to the subscription.
+     *
+     * @return the delivered count
+     */
+    public long getDeliveredCount() {
+        return myDelivered.get();
+    }
+
+    /**
+     * Gets the number of events the subscription lost by falling behind.
+     *
+     * @return the dropped count
+     */
+    public long getDroppedCount() {
+        return myDropped.get();
+    }
+
+    /**
+     * Gets the number of events merged into others with COALESCE.
+     *
+     * @return the coalesced count
+     */
+    public long getCoalescedCount() {
+        return myCoalesced.get();
+    }
+
+    /**
+     * Gets the number of events written to the spill file with SPILL.
+     *
+     * @return the spilled count
+     */
+    public long getSpilledCount() {
+        return mySpilled.get();
+    }
+
+    /**
+     * Gets the number of times the FileWatcher waited for the subscription
+     * with BLOCK or SPILL.
+     *
+     * @return the stall count
+     */
+    public long getStallCount() {
+        return myStalls.get();
+    }
+
+    /**
+     * Returns the counts as one line, for logging.
+     *
+     * @return a summary of the subscription's counts
+     */
+    public String getStatistics() {
+        return String.format("EventSubscription[name=%s, policy=%s, depth=%d, delivered=%d, dropped=%d, "
+                        + "coalesced=%d, spilled=%d, stalls=%d]",
+                myName, myPolicy, getDepth(), getDeliveredCount(), getDroppedCount(), getCoalescedCount(),
+                getSpilledCount(), getStallCount());
+    }
+
+    /**
+     * Hands one event to the handler. A handler that fails loses only that event.
+     *
+     * @param theEvent the event
+     */
+    void deliver(final FileEvent theEvent) {
+        try {
+            myHandler.accept(theEvent);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+        myDelivered.incrementAndGet();
+    }
+
+    /**
+     * Sets where the number of waiting events is read from.
+     *
+     * @param theDepth reads the number of waiting events
+     */
+    void setDepth(final LongSupplier theDepth) {
+        myDepth = theDepth;
+    }
+
+    /**
+     * Counts lost events.
+     *
+     * @param theCount the number lost
+     */
+    void dropped(final long theCount) {
+        myDropped.addAndGet(theCount);
+    }
+
+    /**
+     * Counts merged events.
+     *
+     * @param theCount the number merged into others
+     */
+    void coalesced(final long theCount) {
+        myCoalesced.addAndGet(theCount);
+    }
+
+    /**
+     * Counts events written to the spill file.
+     *
+     * @param theCount the number written
+     */
+    void spilled(final long theCount) {
+        mySpilled.addAndGet(theCount);
+    }
+
+    /**
+     * Counts a wait of the FileWatcher.
+     */
+    void stalled() {
+        myStalls.incrementAndGet();
+    }
+
+    /**
+     * Returns a string representation of the subscription.
+     *
+     * @return its name, policy and counts
+     */
+    @Override
+    public String toString() {
+        return getStatistics();
+    }
+}
@@ -22,5 +22,8 @@ public enum EventType {
     ENTRY_DELETE,
 
     /** File was renamed. */
-    ENTRY_RENAME
+    ENTRY_RENAME,
+
+    /** File was closed by a writer, so its contents are complete. */
+    ENTRY_WRITE_COMPLETE
 }
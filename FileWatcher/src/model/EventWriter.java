@@ -0,0 +1,372 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind writer that persists FileEvents on a background thread.
+ * Events are queued by submit() and written in batches through one long-lived
+ * connection and one reused EventInserter. Each batch is a single
+ * transaction, flushed when it reaches the batch size or when the flush
+ * interval runs out, whichever comes first.
+ *
+ * The writer's connection is the only one that writes to the database.
+ * Other changes (such as clearing the database) are run on it with execute().
+ *
+ * The writer keeps simple statistics about its flushes (batch size and
+ * latency) so callers can see how well ingestion keeps up.
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+public class EventWriter {
+
+    /** Default maximum number of events written in one transaction. */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /** Default time a partial batch may wait before it is flushed. */
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 200;
+
+    /** Marker placed on the queue to force the current batch out early. */
+    private static final FileEvent FLUSH_MARKER =
+            new FileEvent("", "", "", EventType.ENTRY_MODIFY, LocalDateTime.MIN);
+
+    /**
+     * A unit of work run on the writer connection.
+     */
+    @FunctionalInterface
+    interface WriteTask {
+
+        /**
+         * Runs the work. The writer commits afterwards.
+         *
+         * @param theConnection the writer connection
+         * @throws SQLException if the work fails; the writer rolls back
+         */
+        void run(Connection theConnection) throws SQLException;
+    }
+
+    /** Events waiting to be written. */
+    private final BlockingQueue<FileEvent> myQueue;
+
+    /** Connection owned by this writer, in manual commit mode. */
+    private final Connection myConnection;
+
+    /** Insert statements reused for every batch. */
+    private final EventInserter myInserter;
+
+    /** Maximum number of events per transaction. */
+    private final int myBatchSize;
+
+    /** Maximum time in nanoseconds a partial batch waits for more events. */
+    private final long myFlushIntervalNanos;
+
+    /** Held while a transaction is open on the connection. */
+    private final Object myWriteLock = new Object();
+
+    /** Background thread draining the queue. */
+    private final Thread myThread;
+
+    /** Flag indicating if the writer accepts new events. */
+    private volatile boolean myRunning;
+
+    /** Number of events accepted by submit(). Guarded by this. */
+    private long mySubmittedCount;
+
+    /** Number of events processed by the writer thread. Guarded by this. */
+    private long myProcessedCount;
+
+    /** Number of events lost because their batch failed. */
+    private volatile long myFailedCount;
+
+    /** Number of batches flushed so far. */
+    private volatile long myFlushCount;
+
+    /** Size of the most recent batch. */
+    private volatile int myLastBatchSize;
+
+    /** Latency of the most recent flush in nanoseconds. */
+    private volatile long myLastFlushNanos;
+
+    /** Slowest flush seen so far in nanoseconds. */
+    private volatile long myMaxFlushNanos;
+
+    /**
+     * Creates a writer with the default batch size and flush interval.
+     *
+     * @param theConnection the connection the writer takes ownership of
+     * @throws SQLException if the insert statements cannot be prepared
+     */
+    EventWriter(final Connection theConnection) throws SQLException {
+        this(theConnection, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Creates a writer and starts its background thread.
+     *
+     * @param theConnection the connection the writer takes ownership of
+     * @param theBatchSize maximum number of events per transaction
+     * @param theFlushIntervalMillis maximum time a partial batch waits
+     * @throws SQLException if the insert statements cannot be prepared
+     */
+    EventWriter(final Connection theConnection, final int theBatchSize,
+                final long theFlushIntervalMillis) throws SQLException {
+        if (theBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + theBatchSize);
+        }
+        myConnection = theConnection;
+        myConnection.setAutoCommit(false);
+        myInserter = new EventInserter(myConnection);
+        myBatchSize = theBatchSize;
+        myFlushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(theFlushIntervalMillis);
+        myQueue = new LinkedBlockingQueue<>();
+
+        myRunning = true;
+        myThread = new Thread(this::run, "event-writer");
+        myThread.setDaemon(true);
+        myThread.start();
+    }
+
+    /**
+     * Queues an event to be written. Returns immediately.
+     *
+     * @param theEvent the event to persist
+     */
+    public void submit(final FileEvent theEvent) {
+        if (theEvent == null) {
+            System.err.println("Error: FileEvent is null");
+            return;
+        }
+        if (!myRunning) {
+            System.err.println("Error: EventWriter is closed, dropping " + theEvent);
+            return;
+        }
+        synchronized (this) {
+            mySubmittedCount++;
+        }
+        myQueue.add(theEvent);
+    }
+
+    /**
+     * Writes out everything submitted so far and waits until it is committed.
+     */
+    public void flush() {
+        long target;
+        synchronized (this) {
+            target = mySubmittedCount;
+            if (myProcessedCount >= target) {
+                return;
+            }
+        }
+        myQueue.add(FLUSH_MARKER);
+        synchronized (this) {
+            while (myProcessedCount < target && myThread.isAlive()) {
+                try {
+                    wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a task on the writer connection in its own transaction, after
+     * everything submitted so far has been written. Batches wait while it runs.
+     *
+     * @param theTask the work to run
+     * @throws SQLException if the task fails; its changes are rolled back
+     */
+    void execute(final WriteTask theTask) throws SQLException {
+        flush();
+        synchronized (myWriteLock) {
+            try {
+                theTask.run(myConnection);
+                myConnection.commit();
+            } catch (SQLException e) {
+                myConnection.rollback();
+                throw e;
+            } finally {
+                // The task may have changed the dictionaries
+                myInserter.reset();
+            }
+        }
+    }
+
+    /**
+     * Flushes pending events, stops the writer thread and closes the connection.
+     */
+    public void close() {
+        if (!myRunning) {
+            return;
+        }
+        myRunning = false;
+        myQueue.add(FLUSH_MARKER);
+        try {
+            myThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        myInserter.close();
+        try {
+            myConnection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Main loop of the writer thread. Collects events until the batch is full,
+     * the flush interval runs out or a flush is requested, then writes them.
+     */
+    private void run() {
+        List<FileEvent> batch = new ArrayList<>(myBatchSize);
+        while (myRunning || !myQueue.isEmpty()) {
+            try {
+                FileEvent first = myQueue.take();
+                if (first != FLUSH_MARKER) {
+                    batch.add(first);
+                    long deadline = System.nanoTime() + myFlushIntervalNanos;
+                    while (batch.size() < myBatchSize) {
+                        FileEvent next = myQueue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                        if (next == null || next == FLUSH_MARKER) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                }
+            } catch (InterruptedException e) {
+                myRunning = false;
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Writes one batch of events in a single transaction and records its statistics.
+     *
+     * @param theBatch the events to write
+     */
+    private void writeBatch(final List<FileEvent> theBatch) {
+        long start = System.nanoTime();
+        synchronized (myWriteLock) {
+            try {
+                for (FileEvent event : theBatch) {
+                    myInserter.add(event);
+                }
+                myInserter.execute();
+                myConnection.commit();
+            } catch (SQLException e) {
+                System.err.println("SQLException in EventWriter: " + e.getMessage());
+                e.printStackTrace();
+                myFailedCount += theBatch.size();
+                myInserter.reset();
+                try {
+                    myConnection.rollback();
+                } catch (SQLException rollbackError) {
+                    rollbackError.printStackTrace();
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        myLastBatchSize = theBatch.size();
+        myLastFlushNanos = elapsed;
+        myMaxFlushNanos = Math.max(myMaxFlushNanos, elapsed);
+        myFlushCount++;
+        synchronized (this) {
+            myProcessedCount += theBatch.size();
+            notifyAll();
+        }
+    }
+
+    /**
+     * Returns the number of events queued but not yet written.
+     *
+     * @return pending event count
+     */
+    public synchronized long getPendingCount() {
+        return mySubmittedCount - myProcessedCount;
+    }
+
+    /**
+     * Returns the number of events written successfully.
+     *
+     * @return written event count
+     */
+    public synchronized long getWrittenCount() {
+        return myProcessedCount - myFailedCount;
+    }
+
+    /**
+     * Returns the number of events lost because their batch failed.
+     *
+     * @return failed event count
+     */
+    public long getFailedCount() {
+        return myFailedCount;
+    }
+
+    /**
+     * Returns the number of batches flushed so far.
+     *
+     * @return flush count
+     */
+    public long getFlushCount() {
+        return myFlushCount;
+    }
+
+    /**
+     * Returns the number of events in the most recent batch.
+     *
+     * @return last batch size
+     */
+    public int getLastBatchSize() {
+        return myLastBatchSize;
+    }
+
+    /**
+     * Returns how long the most recent flush took.
+     *
+     * @return last flush latency in milliseconds
+     */
+    public double getLastFlushMillis() {
+        return myLastFlushNanos / 1_000_000.0;
+    }
+
+    /**
+     * Returns how long the slowest flush took.
+     *
+     * @return maximum flush latency in milliseconds
+     */
+    public double getMaxFlushMillis() {
+        return myMaxFlushNanos / 1_000_000.0;
+    }
+
+    /**
+     * Returns a one-line summary of the writer statistics.
+     *
+     * @return statistics summary
+     */
+    public String getStatistics() {
+        return String.format("EventWriter[written=%d, failed=%d, pending=%d, flushes=%d, "
+                        + "lastBatch=%d, lastFlush=%.2f ms, maxFlush=%.2f ms]",
+                getWrittenCount(), getFailedCount(), getPendingCount(), getFlushCount(),
+                getLastBatchSize(), getLastFlushMillis(), getMaxFlushMillis());
+    }
+}
@@ -2,6 +2,7 @@ package model;
 
 /* TCSS 360 File watcher project */
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
@@ -15,6 +16,9 @@ import java.time.format.DateTimeFormatter;
  */
 public class FileEvent {
 
+    /** Database row id, 0 until the event has been stored. */
+    private long myId;
+
     /** Name of the file involved in the event. */
     private String myFileName;
 
@@ -30,6 +34,21 @@ public class FileEvent {
     /** Timestamp when the event occurred. */
     private LocalDateTime myTimeStamp;
 
+    /** True if the change was made while the directory was not being watched. */
+    private boolean myReconciled;
+
+    /** Absolute path before a rename, or null. */
+    private String myPreviousPath;
+
+    /** Number of changes this event stands for after coalescing. */
+    private int myCount = 1;
+
+    /** Timestamp of the last change merged into this event, or null if it is the only one. */
+    private LocalDateTime myLastTimeStamp;
+
+    /** Size of the file in bytes when the event was reported, or -1 if unknown. */
+    private long myFileSize = -1;
+
     /**
      * Constructs a FileEvent with all required details.
      *
@@ -47,6 +66,25 @@ public class FileEvent {
         this.myTimeStamp = theTimeStamp;
     }
 
+    /**
+     * Gets the database row id. Ids increase in insertion order and are used
+     * as keys for paging through query results.
+     *
+     * @return The row id, or 0 if the event has not been stored.
+     */
+    public long getMyId() {
+        return myId;
+    }
+
+    /**
+     * Sets the database row id.
+     *
+     * @param theId The row id to set.
+     */
+    public void setMyId(final long theId) {
+        this.myId = theId;
+    }
+
     /**
      * Gets the file name.
      *
@@ -137,6 +175,111 @@ public class FileEvent {
         this.myTimeStamp = theTimeStamp;
     }
 
+    /**
+     * Returns true if the change was made while the directory was not being
+     * watched and was found when watching started again. Its timestamp is
+     * when it was found, not when it happened.
+     *
+     * @return Whether the event is reconciled.
+     */
+    public boolean isMyReconciled() {
+        return myReconciled;
+    }
+
+    /**
+     * Marks the event as found on start rather than seen as it happened.
+     *
+     * @param theReconciled Whether the event is reconciled.
+     */
+    public void setMyReconciled(final boolean theReconciled) {
+        this.myReconciled = theReconciled;
+    }
+
+    /**
+     * Gets the path a renamed or moved file had before.
+     *
+     * @return The previous absolute path, or null if this is not a rename.
+     */
+    public String getMyPreviousPath() {
+        return myPreviousPath;
+    }
+
+    /**
+     * Sets the path a renamed or moved file had before.
+     *
+     * @param thePreviousPath The previous absolute path, or null.
+     */
+    public void setMyPreviousPath(final String thePreviousPath) {
+        this.myPreviousPath = thePreviousPath;
+    }
+
+    /**
+     * Gets the number of changes on the file that were merged into this
+     * event, such as the modifications of one save.
+     *
+     * @return The number of changes, at least 1.
+     */
+    public int getMyCount() {
+        return myCount;
+    }
+
+    /**
+     * Sets the number of changes this event stands for.
+     *
+     * @param theCount The number of changes.
+     */
+    public void setMyCount(final int theCount) {
+        this.myCount = theCount;
+    }
+
+    /**
+     * Gets the timestamp of the last change merged into this event. The
+     * timestamp of the event is that of the first.
+     *
+     * @return The last timestamp; the event timestamp if it stands for one change.
+     */
+    public LocalDateTime getMyLastTimeStamp() {
+        return myLastTimeStamp == null ? myTimeStamp : myLastTimeStamp;
+    }
+
+    /**
+     * Sets the timestamp of the last change merged into this event.
+     *
+     * @param theLastTimeStamp The last timestamp, or null if it is the event timestamp.
+     */
+    public void setMyLastTimeStamp(final LocalDateTime theLastTimeStamp) {
+        this.myLastTimeStamp = theLastTimeStamp;
+    }
+
+    /**
+     * Gets how long the changes merged into this event took, from the first
+     * to the last, such as the time a large copy took to settle.
+     *
+     * @return The duration; zero if the event stands for one change.
+     */
+    public Duration getMyDuration() {
+        return Duration.between(myTimeStamp, getMyLastTimeStamp());
+    }
+
+    /**
+     * Gets the size of the file when the event was reported. For a settled
+     * file this is its final size.
+     *
+     * @return The size in bytes, or -1 if unknown.
+     */
+    public long getMyFileSize() {
+        return myFileSize;
+    }
+
+    /**
+     * Sets the size of the file when the event was reported.
+     *
+     * @param theFileSize The size in bytes, or -1 if unknown.
+     */
+    public void setMyFileSize(final long theFileSize) {
+        this.myFileSize = theFileSize;
+    }
+
     /**
      * Returns a string representation of the FileEvent.
      *
@@ -145,8 +288,10 @@ public class FileEvent {
     @Override
     public String toString() {
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        return String.format("FileEvent[file=%s, ext=%s, path=%s, type=%s, time=%s]",
-                myFileName, myFileExtension, myPath, myEventType, myTimeStamp.format(formatter));
+        return String.format("FileEvent[file=%s, ext=%s, path=%s, type=%s, time=%s%s%s]",
+                myFileName, myFileExtension, myPath, myEventType, myTimeStamp.format(formatter),
+                myPreviousPath == null ? "" : ", from=" + myPreviousPath,
+                myCount == 1 ? "" : ", count=" + myCount);
     }
 
 }
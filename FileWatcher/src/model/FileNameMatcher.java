@@ -0,0 +1,288 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Decides which file names are reported, from any number of extensions,
+ * names, globs and regular expressions compiled together once. Used by the
+ * FileWatcher for every event and by the view's own filter.
+ *
+ * The patterns are:
+ *   - "" or "*": every file. This is a fast path that looks at nothing;
+ *   - ".txt" or "*.txt": names ending with the suffix, ignoring case;
+ *   - "Makefile": exactly that name, ignoring case;
+ *   - any other glob, such as "report-??.csv" or "*.[ch]", ignoring case;
+ *   - "regex:" followed by a regular expression over the whole name.
+ *
+ * Suffixes and names, the common case, go into one trie keyed by the
+ * characters of the name read backwards, so a name is matched against all
+ * of them in a single walk from its end, with no substrings made. The
+ * remaining globs and regular expressions are joined into one pattern and
+ * tried only when the trie has no match.
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+public final class FileNameMatcher {
+
+    /** A matcher that accepts every name. */
+    public static final FileNameMatcher ALL = new FileNameMatcher(true, null, null, "*");
+
+    /** Prefix of a pattern that is a regular expression. */
+    public static final String REGEX_PREFIX = "regex:";
+
+    /** True if every name matches. */
+    private final boolean myMatchAll;
+
+    /** Root of the trie of reversed suffixes and names, or null if there are none. */
+    private final Node myTrie;
+
+    /** The globs and regular expressions joined together, or null if there are none. */
+    private final Pattern myPattern;
+
+    /** The patterns as given, for display. */
+    private final String myDescription;
+
+    /**
+     * A node of the trie, reached by reading some characters of a name from
+     * its end.
+     */
+    private static final class Node {
+
+        /** Lowercase characters leading to the children, in the order added. */
+        private char[] myLabels = new char[0];
+
+        /** The children, parallel to myLabels. */
+        private Node[] myChildren = new Node[0];
+
+        /** True if a name that ends with the characters read so far matches. */
+        private boolean mySuffix;
+
+        /** True if a name that is exactly the characters read so far matches. */
+        private boolean myExact;
+
+        /**
+         * Returns the child for a character.
+         *
+         * @param theLabel a lowercase character
+         * @return the child, or null
+         */
+        Node child(final char theLabel) {
+            for (int i = 0; i < myLabels.length; i++) {
+                if (myLabels[i] == theLabel) {
+                    return myChildren[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns the child for a character, adding it if it is missing.
+         *
+         * @param theLabel a lowercase character
+         * @return the child
+         */
+        Node add(final char theLabel) {
+            Node child = child(theLabel);
+            if (child == null) {
+                child = new Node();
+                myLabels = Arrays.copyOf(myLabels, myLabels.length + 1);
+                myChildren = Arrays.copyOf(myChildren, myChildren.length + 1);
+                myLabels[myLabels.length - 1] = theLabel;
+                myChildren[myChildren.length - 1] = child;
+            }
+            return child;
+        }
+    }
+
+    /**
+     * Creates a matcher from its compiled parts.
+     *
+     * @param theMatchAll true if every name matches
+     * @param theTrie the trie of suffixes and names, or null
+     * @param thePattern the joined globs and regular expressions, or null
+     * @param theDescription the patterns as given
+     */
+    private FileNameMatcher(final boolean theMatchAll, final Node theTrie, final Pattern thePattern,
+                            final String theDescription) {
+        myMatchAll = theMatchAll;
+        myTrie = theTrie;
+        myPattern = thePattern;
+        myDescription = theDescription;
+    }
+
+    /**
+     * Compiles patterns into one matcher. No patterns, or an empty one,
+     * matches every file.
+     *
+     * @param thePatterns the patterns
+     * @return the matcher
+     * @throws IllegalArgumentException if a regular expression is invalid
+     */
+    public static FileNameMatcher compile(final Collection<String> thePatterns) {
+        if (thePatterns.isEmpty()) {
+            return ALL;
+        }
+        Node trie = null;
+        List<String> regexes = new ArrayList<>();
+        for (String pattern : thePatterns) {
+            if (pattern == null || pattern.isEmpty() || pattern.equals("*")) {
+                return ALL;
+            }
+            if (pattern.startsWith(REGEX_PREFIX)) {
+                regexes.add(pattern.substring(REGEX_PREFIX.length()));
+                continue;
+            }
+            boolean suffix = pattern.startsWith("*") || pattern.startsWith(".");
+            String literal = pattern.startsWith("*") ? pattern.substring(1) : pattern;
+            if (hasWildcards(literal)) {
+                regexes.add("(?iu:" + globToRegex(pattern) + ")");
+                continue;
+            }
+            if (trie == null) {
+                trie = new Node();
+            }
+            Node node = trie;
+            for (int i = literal.length() - 1; i >= 0; i--) {
+                node = node.add(Character.toLowerCase(literal.charAt(i)));
+            }
+            if (suffix) {
+                node.mySuffix = true;
+            } else {
+                node.myExact = true;
+            }
+        }
+        Pattern joined = regexes.isEmpty() ? null
+                : Pattern.compile("(?:" + String.join(")|(?:", regexes) + ")");
+        return new FileNameMatcher(false, trie, joined, String.join(", ", thePatterns));
+    }
+
+    /**
+     * Returns true if this matcher accepts every name without looking at it.
+     *
+     * @return whether every name matches
+     */
+    public boolean isMatchAll() {
+        return myMatchAll;
+    }
+
+    /**
+     * Returns true if a file name matches any of the patterns.
+     *
+     * @param theName the file name, without its directory
+     * @return whether the name matches
+     */
+    public boolean matches(final CharSequence theName) {
+        if (myMatchAll) {
+            return true;
+        }
+        Node node = myTrie;
+        for (int i = theName.length() - 1; node != null; i--) {
+            if (node.mySuffix || (node.myExact && i < 0)) {
+                return true;
+            }
+            if (i < 0) {
+                break;
+            }
+            node = node.child(Character.toLowerCase(theName.charAt(i)));
+        }
+        return myPattern != null && myPattern.matcher(theName).matches();
+    }
+
+    @Override
+    public String toString() {
+        return myMatchAll ? "ALL" : myDescription;
+    }
+
+    /**
+     * Returns true if a glob has characters that are not matched literally.
+     *
+     * @param theGlob the glob
+     * @return whether it has wildcards
+     */
+    private static boolean hasWildcards(final String theGlob) {
+        for (int i = 0; i < theGlob.length(); i++) {
+            char c = theGlob.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '{' || c == '\\') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Translates a glob over one file name into a regular expression.
+     * Supports *, ?, [abc], [!abc] and {a,b}.
+     *
+     * @param theGlob the glob
+     * @return the regular expression
+     */
+    static String globToRegex(final String theGlob) {
+        StringBuilder regex = new StringBuilder();
+        boolean inGroup = false;
+        for (int i = 0; i < theGlob.length(); i++) {
+            char c = theGlob.charAt(i);
+            switch (c) {
+                case '*' -> regex.append(".*");
+                case '?' -> regex.append('.');
+                case '[' -> {
+                    int close = theGlob.indexOf(']', i + 2);
+                    if (close < 0) {
+                        regex.append("\\[");
+                    } else {
+                        String body = theGlob.substring(i + 1, close);
+                        if (body.startsWith("!")) {
+                            body = "^" + body.substring(1);
+                        }
+                        regex.append('[').append(body.replace("\\", "\\\\").replace("[", "\\[")).append(']');
+                        i = close;
+                    }
+                }
+                case '{' -> {
+                    inGroup = true;
+                    regex.append("(?:");
+                }
+                case '}' -> {
+                    if (inGroup) {
+                        inGroup = false;
+                        regex.append(')');
+                    } else {
+                        regex.append("\\}");
+                    }
+                }
+                case ',' -> regex.append(inGroup ? "|" : ",");
+                case '\\' -> {
+                    if (i + 1 < theGlob.length()) {
+                        i++;
+                        appendLiteral(regex, theGlob.charAt(i));
+                    }
+                }
+                default -> appendLiteral(regex, c);
+            }
+        }
+        if (inGroup) {
+            throw new IllegalArgumentException("Unclosed { in file name pattern: " + theGlob);
+        }
+        return regex.toString();
+    }
+
+    /**
+     * Appends a character that must match itself, escaped if the regex
+     * syntax gives it a meaning.
+     *
+     * @param theRegex the regular expression being built
+     * @param theChar the character
+     */
+    private static void appendLiteral(final StringBuilder theRegex, final char theChar) {
+        if ("\\.[]{}()<>*+-=!?^$|".indexOf(theChar) >= 0) {
+            theRegex.append('\\');
+        }
+        theRegex.append(theChar);
+    }
+}
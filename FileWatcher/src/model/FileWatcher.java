@@ -4,35 +4,94 @@ package model;
 
 import java.io.IOException;
 import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
- * The FileWatcher monitors a directory using Java's WatchService API.
- * It detects file system events and passes them to the FileSystemModel.
+ * The FileWatcher monitors directories and passes their file system events
+ * to the FileSystemModel. Each watched root uses its own WatchBackend (the
+ * JDK WatchService unless another engine is chosen); the backends report raw
+ * changes, which one dispatch thread maps to FileEvents, filters by
+ * file name with a FileNameMatcher and hands to the model in order. A
+ * delete and a create of the same file, as a backend may report a move,
+ * are paired into one rename that keeps the previous path. Entries matched by the ignore
+ * patterns, or by the root's .gitignore, are never watched or reported.
+ * A safe save through temporary files is reported as one modification of
+ * the real file (see setSavePatterns), bursts of changes on one file
+ * can be coalesced into a single event (see setCoalesceWindow), and a file
+ * that is still being written can be held until it settles (see
+ * setSettleInterval).
+ *
+ * The dispatch thread never calls the consumers of the events itself: it
+ * publishes each FileEvent to an EventRing, from which every subscription
+ * (see subscribe) reads on a thread of its own, with a BackpressurePolicy
+ * for when it falls behind. The model is the first subscription and does
+ * not lose events.
  * @author Van Bao Han Quach
  * @version May 20, 2025
  */
 public class FileWatcher {
 
-    /** Java NIO WatchService used for monitoring file system changes. */
-    private WatchService myWatchService;
+    /** Backends of the watched roots. Guarded by this. */
+    private final Map<Path, WatchedRoot> myRoots;
 
-    /** Mapping between WatchKey and directory path. */
-    private final Map<WatchKey, Path> myWatchKeys;
+    /** Raw changes waiting to be dispatched. */
+    private final BlockingQueue<Notification> myQueue;
 
-    /** The model to report file events to. */
-    private final FileSystemModel myModel;
-
-    /** The thread that runs the watch loop. */
+    /** The thread that dispatches events to the model. Guarded by this. */
     private Thread myWatchThread;
 
     /** Flag indicating if monitoring is active. */
-    private boolean myMonitoring;
+    private volatile boolean myMonitoring;
+
+    /** True to report changes made while a root was not watched. */
+    private volatile boolean myCatchUp;
+
+    /** Ignore patterns for roots started from now on. */
+    private volatile List<String> myIgnorePatterns;
+
+    /** Quiet time before a burst of changes on one path is passed on, or 0. */
+    private volatile long myCoalesceWindow;
+
+    /** Names of the temporary files of safe saves. */
+    private volatile SavePatterns mySavePatterns;
+
+    /** How long a file must stay the same to have settled, or 0. */
+    private volatile long mySettleInterval;
+
+    /** The consumers of the events, the model first. */
+    private final List<EventSubscription> mySubscriptions;
+
+    /** Number of slots of the ring the events are handed over in. */
+    private volatile int myRingCapacity;
+
+    /**
+     * A watched root with its backend and the entries reported for it.
+     *
+     * @param path the root directory
+     * @param backend the engine watching the root
+     * @param files the names of the files to report
+     * @param rules the entries never reported
+     */
+    private record WatchedRoot(Path path, WatchBackend backend, FileNameMatcher files, IgnoreRules rules) {
+    }
+
+    /**
+     * A raw change together with the root it was seen under.
+     *
+     * @param root the watched root
+     * @param event the raw change
+     */
+    private record Notification(WatchedRoot root, RawWatchEvent event) {
+    }
 
     /**
      * Constructs a FileWatcher tied to a model.
@@ -40,125 +99,362 @@ public class FileWatcher {
      * @param theModel the FileSystemModel to send events to
      */
     public FileWatcher(final FileSystemModel theModel) {
-        myModel = theModel;
-        myWatchKeys = new HashMap<>();
+        myRoots = new LinkedHashMap<>();
+        myQueue = new LinkedBlockingQueue<>();
+        myIgnorePatterns = List.of();
+        mySavePatterns = SavePatterns.NONE;
+        mySubscriptions = new CopyOnWriteArrayList<>();
+        myRingCapacity = EventRing.DEFAULT_CAPACITY;
+        mySubscriptions.add(new EventSubscription("model", BackpressurePolicy.BLOCK, theModel::addEvent));
     }
 
     /**
-     * Starts watching the given directory and its subdirectories.
+     * Starts watching the given directory and its subdirectories with the
+     * JDK WatchService.
      *
      * @param theDirectory the root directory to monitor
-     * @param theExtensions the set of file extensions to watch (e.g. ".txt")
+     * @param theExtensions the extensions or other FileNameMatcher patterns of
+     *                      the files to report (e.g. ".txt"); empty for all files
      */
     public void startWatching(final Path theDirectory, final Set<String> theExtensions) {
-        try {
-            myWatchService = FileSystems.getDefault().newWatchService();
-            registerDirectoryRecursively(theDirectory);
+        startWatching(theDirectory, theExtensions, WatchBackendType.JDK);
+    }
 
-            myMonitoring = true;
-            myWatchThread = new Thread(() -> processEvents(theExtensions));
-            myWatchThread.start();
-        } catch (IOException e) {
-            e.printStackTrace();
+    /**
+     * Starts watching the given directory and its subdirectories with one of
+     * the built-in engines. Other roots keep their own engines.
+     *
+     * @param theDirectory the root directory to monitor
+     * @param theExtensions the extensions or other FileNameMatcher patterns of
+     *                      the files to report (e.g. ".txt"); empty for all files
+     * @param theType the engine to watch the root with
+     */
+    public void startWatching(final Path theDirectory, final Set<String> theExtensions,
+                              final WatchBackendType theType) {
+        startWatching(theDirectory, theExtensions, theType.create(myCatchUp));
+    }
+
+    /**
+     * Sets whether roots started from now on first report the changes made
+     * since they were last watched, as reconciled events. Only backends
+     * that save the state of the tree can do so.
+     *
+     * @param theCatchUp true to catch up on start
+     */
+    public void setCatchUp(final boolean theCatchUp) {
+        myCatchUp = theCatchUp;
+    }
+
+    /**
+     * Sets the patterns, written like the lines of a .gitignore file, of the
+     * entries to leave out of roots started from now on. The root's own
+     * .gitignore applies after them. Ignored directories are never watched.
+     *
+     * @param thePatterns the ignore patterns
+     * @throws IllegalArgumentException if a pattern cannot be compiled
+     */
+    public void setIgnorePatterns(final List<String> thePatterns) {
+        IgnoreRules.compile(thePatterns);
+        myIgnorePatterns = List.copyOf(thePatterns);
+    }
+
+    /**
+     * Sets how long a file must be quiet before its changes are reported.
+     * Changes on the same file within the window are coalesced into one
+     * FileEvent that records how many there were: a create followed by
+     * modifications stays a create, and a create followed by a delete is
+     * not reported at all. Takes effect the next time watching starts.
+     *
+     * @param theWindowMillis the quiet time in milliseconds; 0 reports every change
+     */
+    public void setCoalesceWindow(final long theWindowMillis) {
+        myCoalesceWindow = Math.max(0, theWindowMillis);
+    }
+
+    /**
+     * Sets the names of the temporary files editors and tools save through,
+     * as SavePatterns. A save that writes or moves such files and puts the
+     * real file back in place is reported as one ENTRY_MODIFY of the real
+     * file instead of three or four events. Takes effect the next time
+     * watching starts.
+     *
+     * @param thePatterns the patterns, such as SavePatterns.DEFAULT_PATTERNS; empty for none
+     * @throws IllegalArgumentException if a pattern cannot be compiled
+     */
+    public void setSavePatterns(final List<String> thePatterns) {
+        mySavePatterns = SavePatterns.compile(thePatterns);
+    }
+
+    /**
+     * Sets how long a file that was created or modified must keep the same
+     * size and modification time before it is reported. A large copy is
+     * then reported once, when it is done, as one FileEvent with the number
+     * of changes, their duration and the final size of the file. Takes
+     * effect the next time watching starts.
+     *
+     * @param theIntervalMillis the interval in milliseconds; 0 reports changes without waiting
+     */
+    public void setSettleInterval(final long theIntervalMillis) {
+        mySettleInterval = Math.max(0, theIntervalMillis);
+    }
+
+    /**
+     * Adds a consumer of the FileEvents. It takes the events in order on a
+     * thread of its own, and the policy says what happens when it falls
+     * behind. Takes effect the next time watching starts.
+     *
+     * @param theName the name of the subscription, used for its threads
+     * @param thePolicy what happens when it falls behind
+     * @param theHandler takes the events
+     * @return the subscription, with counts of what happened to its events
+     */
+    public EventSubscription subscribe(final String theName, final BackpressurePolicy thePolicy,
+                                       final Consumer<FileEvent> theHandler) {
+        EventSubscription subscription = new EventSubscription(theName, thePolicy, theHandler);
+        mySubscriptions.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Gets the consumers of the FileEvents, the model first.
+     *
+     * @return the subscriptions
+     */
+    public List<EventSubscription> getSubscriptions() {
+        return List.copyOf(mySubscriptions);
+    }
+
+    /**
+     * Sets how many events the subscriptions can fall behind before their
+     * policies apply. Takes effect the next time watching starts.
+     *
+     * @param theCapacity the number of slots, rounded up to a power of two
+     */
+    public void setRingCapacity(final int theCapacity) {
+        if (theCapacity < 1) {
+            throw new IllegalArgumentException("Ring capacity must be positive: " + theCapacity);
         }
+        myRingCapacity = theCapacity;
     }
 
     /**
-     * Stops the watching process.
+     * Starts watching the given directory and its subdirectories with a
+     * backend. A root that is already watched is restarted with the new backend.
+     *
+     * @param theDirectory the root directory to monitor
+     * @param theExtensions the extensions or other FileNameMatcher patterns of
+     *                      the files to report (e.g. ".txt"); empty for all files
+     * @param theBackend an unstarted backend, owned by this watcher from now on
      */
-    public void stopWatching() {
-        myMonitoring = false;
+    public void startWatching(final Path theDirectory, final Set<String> theExtensions,
+                              final WatchBackend theBackend) {
+        Path root = theDirectory.toAbsolutePath().normalize();
+        WatchedRoot watched = new WatchedRoot(root, theBackend, FileNameMatcher.compile(theExtensions),
+                IgnoreRules.forRoot(root, myIgnorePatterns));
+        stopWatching(root);
         try {
-            if (myWatchService != null) {
-                myWatchService.close();
+            synchronized (this) {
+                startDispatching();
+                theBackend.start(root, watched.rules(),
+                        event -> myQueue.add(new Notification(watched, event)));
+                myRoots.put(root, watched);
             }
         } catch (IOException e) {
+            theBackend.close();
             e.printStackTrace();
         }
     }
 
     /**
-     * Registers a directory and its subdirectories for watch events.
-     *
-     * @param theRoot the directory to register
-     * @throws IOException if an I/O error occurs
+     * Stops the watching process for every root.
      */
-    private void registerDirectoryRecursively(final Path theRoot) throws IOException {
-        Files.walkFileTree(theRoot, new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
-                    throws IOException {
-                WatchKey key = dir.register(myWatchService,
-                        StandardWatchEventKinds.ENTRY_CREATE,
-                        StandardWatchEventKinds.ENTRY_MODIFY,
-                        StandardWatchEventKinds.ENTRY_DELETE);
-                myWatchKeys.put(key, dir);
-                return FileVisitResult.CONTINUE;
+    public void stopWatching() {
+        Thread thread;
+        synchronized (this) {
+            for (WatchedRoot watched : myRoots.values()) {
+                watched.backend().close();
             }
-        });
+            myRoots.clear();
+            myMonitoring = false;
+            thread = myWatchThread;
+            myWatchThread = null;
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
     }
 
     /**
-     * Handles and processes file system events.
+     * Stops watching one root. Other roots keep being watched.
      *
-     * @param theExtensions file extensions to filter
+     * @param theDirectory the root directory to stop monitoring
      */
-    private void processEvents(final Set<String> theExtensions) {
+    public void stopWatching(final Path theDirectory) {
+        WatchedRoot watched;
+        synchronized (this) {
+            watched = myRoots.remove(theDirectory.toAbsolutePath().normalize());
+        }
+        if (watched != null) {
+            watched.backend().close();
+        }
+    }
+
+    /**
+     * Starts the dispatch thread if it is not running.
+     */
+    private synchronized void startDispatching() {
+        if (myWatchThread != null) {
+            return;
+        }
+        myQueue.clear();
+        myMonitoring = true;
+        EventRing ring = new EventRing(myRingCapacity, List.copyOf(mySubscriptions));
+        SettleDetector<WatchedRoot> settles = new SettleDetector<>(mySettleInterval,
+                (root, event, count, first, last) -> dispatch(ring, root, event, count, first, last), now());
+        EventCoalescer<WatchedRoot> coalescer = new EventCoalescer<>(myCoalesceWindow,
+                (root, event, count, first, last) -> settles.accept(root, event, count, first, last, now()));
+        AtomicSaveDetector<WatchedRoot> saves = new AtomicSaveDetector<>(
+                AtomicSaveDetector.DEFAULT_WINDOW_MILLIS, mySavePatterns, (root, event) -> {
+                    if (isReported(root, event)) {
+                        coalescer.accept(root, event, now());
+                    }
+                });
+        RenameCorrelator<WatchedRoot> renames = new RenameCorrelator<>(
+                RenameCorrelator.DEFAULT_WINDOW_MILLIS, (root, event) -> saves.accept(root, event, now()));
+        List<EventStage> stages = List.of(renames, saves, coalescer, settles);
+        myWatchThread = new Thread(() -> processEvents(renames, stages, ring), "file-watcher");
+        myWatchThread.start();
+    }
+
+    /**
+     * Handles and processes file system events reported by the backends.
+     * They pass through the RenameCorrelator, the AtomicSaveDetector, the
+     * filters, the EventCoalescer and the SettleDetector in that order. The
+     * stages hold events for a while, so the wait for the next event is cut
+     * short when one of them is due. The FileEvents are published to the
+     * ring, which is closed when watching stops.
+     *
+     * @param theRenames the first stage, which takes the raw changes
+     * @param theStages every stage, upstream first; used by this thread only
+     * @param theRing hands the FileEvents to the subscriptions
+     */
+    private void processEvents(final RenameCorrelator<WatchedRoot> theRenames,
+                               final List<EventStage> theStages, final EventRing theRing) {
+        theRing.start();
         while (myMonitoring) {
-            WatchKey key;
+            Notification notification;
             try {
-                key = myWatchService.take(); // waits for events
-            } catch (InterruptedException | ClosedWatchServiceException e) {
+                long wait = timeToNextFlush(theStages, now());
+                notification = wait < 0 ? myQueue.take() // waits for events
+                        : myQueue.poll(wait, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
                 break;
             }
+            if (notification != null) {
+                theRenames.accept(notification.root(), notification.event(), now());
+            }
+            long now = now();
+            for (EventStage stage : theStages) {
+                stage.flush(now);
+            }
+        }
+        for (EventStage stage : theStages) {
+            stage.flushAll();
+        }
+        theRing.close();
+    }
 
-            Path dir = myWatchKeys.get(key);
-            if (dir == null) continue;
-
-            for (WatchEvent<?> event : key.pollEvents()) {
-                WatchEvent.Kind<?> kind = event.kind();
-
-                Path relativePath = (Path) event.context();
-                Path fullPath = dir.resolve(relativePath);
-                String fileName = fullPath.getFileName().toString();
-                String extension = getExtension(fileName);
+    /**
+     * Returns true if a raw change passes the root's file name and ignore
+     * filters. Overflows always pass.
+     *
+     * @param theRoot the root the change was seen under
+     * @param theEvent the raw change
+     * @return whether the change is reported
+     */
+    private boolean isReported(final WatchedRoot theRoot, final RawWatchEvent theEvent) {
+        if (theEvent.isOverflow()) {
+            return true;
+        }
+        Path fullPath = theEvent.getMyPath();
+        // The name is the cheapest check, so it comes first
+        return theRoot.files().matches(fullPath.getFileName().toString())
+                && !theRoot.rules().isChangeIgnored(theRoot.path(), fullPath);
+    }
 
-                // Check extension match
-                if (theExtensions.contains(extension)) {
-                    EventType eventType = mapWatchKindToEventType(kind);
-                    LocalDateTime now = LocalDateTime.now().withNano(0);
+    /**
+     * Turns a raw change, possibly standing for several coalesced ones, into
+     * a FileEvent and publishes it to the subscriptions.
+     *
+     * @param theRing the ring to publish to
+     * @param theRoot the root the change was seen under
+     * @param theEvent the raw change
+     * @param theCount how many changes it stands for
+     * @param theFirst wall clock time of the first of them in milliseconds
+     * @param theLast wall clock time of the last of them in milliseconds
+     */
+    private void dispatch(final EventRing theRing, final WatchedRoot theRoot, final RawWatchEvent theEvent,
+                          final int theCount, final long theFirst, final long theLast) {
+        if (theEvent.isOverflow()) {
+            System.err.println("Events were lost in " + theEvent.getMyPath());
+            return;
+        }
 
+        Path fullPath = theEvent.getMyPath();
+        String fileName = fullPath.getFileName().toString();
+        String extension = getExtension(fileName);
+        EventType eventType = mapWatchKindToEventType(theEvent.getMyKind());
+        LocalDateTime first = DatabaseManager.toLocalDateTime(theFirst).withNano(0);
 
-                    FileEvent fileEvent = new FileEvent(
-                            fileName,
-                            extension,
-                            fullPath.toAbsolutePath().toString(),
-                            eventType,
-                            now
 
-                    );
+        FileEvent fileEvent = new FileEvent(
+                fileName,
+                extension,
+                fullPath.toAbsolutePath().toString(),
+                eventType,
+                first
 
-                    myModel.addEvent(fileEvent);
-                }
+        );
+        if (theCount > 1) {
+            fileEvent.setMyCount(theCount);
+            fileEvent.setMyLastTimeStamp(DatabaseManager.toLocalDateTime(theLast).withNano(0));
+        }
+        if (theEvent.hasIdentity() && theEvent.getMySize() != DirectoryListing.DIRECTORY) {
+            fileEvent.setMyFileSize(theEvent.getMySize());
+        }
+        fileEvent.setMyReconciled(theEvent.isReconciled());
+        if (theEvent.getMyPreviousPath() != null) {
+            fileEvent.setMyPreviousPath(theEvent.getMyPreviousPath().toAbsolutePath().toString());
+        }
 
-                // Handle new directories being created
-                if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
-                    try {
-                        if (Files.isDirectory(fullPath)) {
-                            registerDirectoryRecursively(fullPath);
-                        }
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                }
-            }
+        theRing.publish(fileEvent);
+    }
 
-            boolean valid = key.reset();
-            if (!valid) {
-                myWatchKeys.remove(key);
-                if (myWatchKeys.isEmpty()) break;
+    /**
+     * Returns how long until the first of the stages has an event due.
+     *
+     * @param theStages the stages
+     * @param theNow the current time in milliseconds
+     * @return milliseconds to wait, or -1 if no stage holds anything
+     */
+    private static long timeToNextFlush(final List<EventStage> theStages, final long theNow) {
+        long wait = -1;
+        for (EventStage stage : theStages) {
+            long due = stage.timeToNextFlush(theNow);
+            if (due >= 0 && (wait < 0 || due < wait)) {
+                wait = due;
             }
         }
+        return wait;
+    }
+
+    /**
+     * Returns a monotonic clock in milliseconds.
+     *
+     * @return the current time
+     */
+    private static long now() {
+        return System.nanoTime() / 1_000_000;
     }
 
 
@@ -172,6 +468,8 @@ public class FileWatcher {
         if (theKind == StandardWatchEventKinds.ENTRY_CREATE) return EventType.ENTRY_CREATE;
         if (theKind == StandardWatchEventKinds.ENTRY_DELETE) return EventType.ENTRY_DELETE;
         if (theKind == StandardWatchEventKinds.ENTRY_MODIFY) return EventType.ENTRY_MODIFY;
+        if (theKind == RawWatchEvent.ENTRY_RENAME) return EventType.ENTRY_RENAME;
+        if (theKind == RawWatchEvent.ENTRY_CLOSE_WRITE) return EventType.ENTRY_WRITE_COMPLETE;
         return EventType.ENTRY_RENAME; // fallback
     }
 
@@ -185,4 +483,4 @@ public class FileWatcher {
         int index = fileName.lastIndexOf('.');
         return (index != -1) ? fileName.substring(index) : "";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,353 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Include and exclude rules for the entries of a watched tree, written like
+ * a .gitignore file and compiled once when watching starts. The backends
+ * never register an ignored directory, so nothing below it costs a watch or
+ * an event, and the FileWatcher drops ignored files before they become
+ * FileEvents.
+ *
+ * One pattern per line; blank lines and lines starting with # are skipped.
+ * As in git:
+ *   - a pattern without a slash matches the name of an entry at any depth;
+ *   - a pattern with a slash at the start or in the middle matches the path
+ *     relative to the root;
+ *   - a trailing slash matches directories only;
+ *   - * and ? match within one name, [abc] is a character class, and ** in
+ *     a path matches any number of directories;
+ *   - ! re-includes what an earlier pattern excluded. The last matching
+ *     pattern wins, and nothing below an ignored directory can be
+ *     re-included.
+ * Only the patterns given and the root's own .gitignore are read; nested
+ * .gitignore files are not.
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+public final class IgnoreRules {
+
+    /** Rules that ignore nothing. */
+    public static final IgnoreRules NONE = new IgnoreRules(List.of());
+
+    /** Directories ignored by default: version control, dependencies, build output and caches. */
+    public static final List<String> DEFAULT_PATTERNS = List.of(
+            ".git/", ".hg/", ".svn/", "node_modules/", "target/", ".gradle/", ".idea/",
+            "__pycache__/", ".cache/");
+
+    /** The compiled patterns, in the order they were given. */
+    private final Rule[] myRules;
+
+    /** True if some pattern needs the whole relative path, not just the name. */
+    private final boolean myAnchored;
+
+    /**
+     * One compiled pattern.
+     *
+     * @param literal the name to compare with, or null to use the regex
+     * @param regex the pattern as a regular expression, or null for a literal
+     * @param anchored true to match the path relative to the root, false for the name
+     * @param negated true if a match re-includes the entry
+     * @param directoryOnly true if only directories match
+     */
+    private record Rule(String literal, Pattern regex, boolean anchored, boolean negated,
+                        boolean directoryOnly) {
+
+        /**
+         * Returns true if this pattern matches an entry.
+         *
+         * @param theName the name of the entry
+         * @param thePath its path relative to the root with / separators, or
+         *                null if no pattern is anchored
+         * @param theIsDirectory true if the entry is a directory
+         * @return whether it matches
+         */
+        boolean matches(final String theName, final String thePath, final boolean theIsDirectory) {
+            if (directoryOnly && !theIsDirectory) {
+                return false;
+            }
+            String subject = anchored ? thePath : theName;
+            return literal != null ? literal.equals(subject) : regex.matcher(subject).matches();
+        }
+    }
+
+    /**
+     * Creates rules from compiled patterns.
+     *
+     * @param theRules the patterns
+     */
+    private IgnoreRules(final List<Rule> theRules) {
+        myRules = theRules.toArray(new Rule[0]);
+        boolean anchored = false;
+        for (Rule rule : myRules) {
+            anchored |= rule.anchored();
+        }
+        myAnchored = anchored;
+    }
+
+    /**
+     * Compiles patterns written like the lines of a .gitignore file.
+     *
+     * @param theLines the patterns
+     * @return the compiled rules
+     * @throws IllegalArgumentException if a pattern cannot be compiled
+     */
+    public static IgnoreRules compile(final List<String> theLines) {
+        List<Rule> rules = new ArrayList<>();
+        for (String line : theLines) {
+            Rule rule = parse(line);
+            if (rule != null) {
+                rules.add(rule);
+            }
+        }
+        return rules.isEmpty() ? NONE : new IgnoreRules(rules);
+    }
+
+    /**
+     * Compiles the given patterns followed by those in the .gitignore file
+     * at the top of a root, if it has one.
+     *
+     * @param theRoot the watched root
+     * @param theLines patterns that apply before the root's own
+     * @return the compiled rules
+     */
+    public static IgnoreRules forRoot(final Path theRoot, final List<String> theLines) {
+        List<String> lines = new ArrayList<>(theLines);
+        try {
+            lines.addAll(Files.readAllLines(theRoot.resolve(".gitignore"), StandardCharsets.UTF_8));
+        } catch (NoSuchFileException e) {
+            // No rules of its own
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable " + theRoot.resolve(".gitignore") + ": "
+                    + e.getMessage());
+        }
+        return compile(lines);
+    }
+
+    /**
+     * Returns true if these rules ignore nothing.
+     *
+     * @return whether there are no patterns
+     */
+    public boolean isEmpty() {
+        return myRules.length == 0;
+    }
+
+    /**
+     * Returns true if an entry is ignored by the patterns themselves. Its
+     * parent directories are not looked at.
+     *
+     * @param theRelative the entry's path relative to the root
+     * @param theIsDirectory true if the entry is a directory
+     * @return whether the entry is ignored
+     */
+    public boolean isIgnored(final Path theRelative, final boolean theIsDirectory) {
+        if (myRules.length == 0 || theRelative.getNameCount() == 0
+                || theRelative.toString().isEmpty()) {
+            return false;
+        }
+        String name = theRelative.getFileName().toString();
+        String path = myAnchored ? toSlashes(theRelative) : null;
+        for (int i = myRules.length - 1; i >= 0; i--) {
+            if (myRules[i].matches(name, path, theIsDirectory)) {
+                return !myRules[i].negated();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if a directory below a root is ignored, as checked before
+     * it is registered. Its parents have been checked already.
+     *
+     * @param theRoot the watched root
+     * @param theDirectory the directory
+     * @return whether the directory is ignored
+     */
+    public boolean isDirectoryIgnored(final Path theRoot, final Path theDirectory) {
+        return myRules.length > 0 && isIgnored(theRoot.relativize(theDirectory), true);
+    }
+
+    /**
+     * Returns true if a changed entry below a root is ignored, either itself
+     * or through one of its parent directories. Whether the entry is a
+     * directory is only looked up when a directory-only pattern decides.
+     *
+     * @param theRoot the watched root
+     * @param thePath the changed entry
+     * @return whether the change is ignored
+     */
+    public boolean isChangeIgnored(final Path theRoot, final Path thePath) {
+        if (myRules.length == 0 || !thePath.startsWith(theRoot)) {
+            return false;
+        }
+        Path relative = theRoot.relativize(thePath);
+        int count = relative.getNameCount();
+        for (int i = 1; i < count; i++) {
+            if (isIgnored(relative.subpath(0, i), true)) {
+                return true;
+            }
+        }
+        if (isIgnored(relative, false)) {
+            return true;
+        }
+        return isIgnored(relative, true) && Files.isDirectory(thePath);
+    }
+
+    /**
+     * Joins the names of a relative path with forward slashes.
+     *
+     * @param theRelative the path
+     * @return the path as the patterns see it
+     */
+    private static String toSlashes(final Path theRelative) {
+        String separator = theRelative.getFileSystem().getSeparator();
+        String path = theRelative.toString();
+        return separator.equals("/") ? path : path.replace(separator, "/");
+    }
+
+    /**
+     * Compiles one line of patterns.
+     *
+     * @param theLine the line
+     * @return the rule, or null for a blank line or a comment
+     */
+    private static Rule parse(final String theLine) {
+        String line = stripTrailingSpaces(theLine);
+        if (line.isEmpty() || line.startsWith("#")) {
+            return null;
+        }
+        boolean negated = false;
+        if (line.startsWith("!")) {
+            negated = true;
+            line = line.substring(1);
+        } else if (line.startsWith("\\!") || line.startsWith("\\#")) {
+            line = line.substring(1);
+        }
+        boolean directoryOnly = false;
+        if (line.endsWith("/") && !line.endsWith("\\/")) {
+            directoryOnly = true;
+            line = line.substring(0, line.length() - 1);
+        }
+        boolean anchored = line.indexOf('/') >= 0;
+        if (line.startsWith("/")) {
+            line = line.substring(1);
+        }
+        if (line.isEmpty()) {
+            return null;
+        }
+        if (isLiteral(line)) {
+            return new Rule(line, null, anchored, negated, directoryOnly);
+        }
+        return new Rule(null, Pattern.compile(toRegex(line)), anchored, negated, directoryOnly);
+    }
+
+    /**
+     * Removes trailing spaces that are not escaped with a backslash.
+     *
+     * @param theLine the line
+     * @return the line without them
+     */
+    private static String stripTrailingSpaces(final String theLine) {
+        int end = theLine.length();
+        while (end > 0 && theLine.charAt(end - 1) == ' '
+                && !(end > 1 && theLine.charAt(end - 2) == '\\')) {
+            end--;
+        }
+        return theLine.substring(0, end);
+    }
+
+    /**
+     * Returns true if a pattern has no wildcards, so it can be compared as a
+     * plain string.
+     *
+     * @param thePattern the pattern
+     * @return whether it is a literal
+     */
+    private static boolean isLiteral(final String thePattern) {
+        for (int i = 0; i < thePattern.length(); i++) {
+            char c = thePattern.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '\\') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Translates a glob into a regular expression over paths with forward
+     * slashes.
+     *
+     * @param theGlob the glob
+     * @return the regular expression
+     */
+    private static String toRegex(final String theGlob) {
+        StringBuilder regex = new StringBuilder();
+        int length = theGlob.length();
+        int i = 0;
+        while (i < length) {
+            char c = theGlob.charAt(i);
+            if (c == '*' && i + 1 < length && theGlob.charAt(i + 1) == '*') {
+                boolean atStart = i == 0 || theGlob.charAt(i - 1) == '/';
+                boolean atEnd = i + 2 == length;
+                if (atStart && i + 2 < length && theGlob.charAt(i + 2) == '/') {
+                    // "**/" matches zero or more directories
+                    regex.append("(?:.*/)?");
+                    i += 3;
+                } else if (atStart && atEnd) {
+                    // "/**" matches everything inside
+                    regex.append(".*");
+                    i += 2;
+                } else {
+                    regex.append("[^/]*");
+                    i += 2;
+                }
+            } else if (c == '*') {
+                regex.append("[^/]*");
+                i++;
+            } else if (c == '?') {
+                regex.append("[^/]");
+                i++;
+            } else if (c == '[' && theGlob.indexOf(']', i + 2) > 0) {
+                int close = theGlob.indexOf(']', i + 2);
+                String body = theGlob.substring(i + 1, close);
+                if (body.startsWith("!")) {
+                    body = "^" + body.substring(1);
+                }
+                regex.append('[').append(body.replace("\\", "\\\\").replace("[", "\\[")).append(']');
+                i = close + 1;
+            } else if (c == '\\' && i + 1 < length) {
+                appendLiteral(regex, theGlob.charAt(i + 1));
+                i += 2;
+            } else {
+                appendLiteral(regex, c);
+                i++;
+            }
+        }
+        return regex.toString();
+    }
+
+    /**
+     * Appends a character that must match itself, escaped if the regex
+     * syntax gives it a meaning.
+     *
+     * @param theRegex the regular expression being built
+     * @param theChar the character
+     */
+    private static void appendLiteral(final StringBuilder theRegex, final char theChar) {
+        if ("\\.[]{}()<>*+-=!?^$|".indexOf(theChar) >= 0) {
+            theRegex.append('\\');
+        }
+        theRegex.append(theChar);
+    }
+}
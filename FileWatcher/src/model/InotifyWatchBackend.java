@@ -0,0 +1,594 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.foreign.SymbolLookup;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.function.Consumer;
+
+/**
+ * Watches a directory tree with Linux inotify, called directly through the
+ * Foreign Function and Memory API. Unlike the JDK WatchService this keeps
+ * inotify's move cookies, so a IN_MOVED_FROM / IN_MOVED_TO pair is reported
+ * as one ENTRY_RENAME with both paths, and it reports IN_CLOSE_WRITE as
+ * ENTRY_CLOSE_WRITE when a writer is done with a file.
+ *
+ * Events are decoded straight from one native buffer that is reused for
+ * every read. A move whose other half never arrives was a move into or out
+ * of the watched tree and is reported as a create or a delete.
+ *
+ * Directories ignored by the IgnoreRules are never watched.
+ *
+ * The watched directories are kept as a DirectoryTree, so a moved directory
+ * keeps its watches and only its node moves, and a directory that is
+ * deleted or moved out of the tree drops its whole subtree in one step.
+ *
+ * Only available on Linux; see isSupported().
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+public class InotifyWatchBackend implements WatchBackend {
+
+    /** File was modified. */
+    private static final int IN_MODIFY = 0x00000002;
+
+    /** File opened for writing was closed. */
+    private static final int IN_CLOSE_WRITE = 0x00000008;
+
+    /** Entry was moved out of a watched directory. */
+    private static final int IN_MOVED_FROM = 0x00000040;
+
+    /** Entry was moved into a watched directory. */
+    private static final int IN_MOVED_TO = 0x00000080;
+
+    /** Entry was created. */
+    private static final int IN_CREATE = 0x00000100;
+
+    /** Entry was deleted. */
+    private static final int IN_DELETE = 0x00000200;
+
+    /** The kernel event queue overflowed. */
+    private static final int IN_Q_OVERFLOW = 0x00004000;
+
+    /** Watch was removed. */
+    private static final int IN_IGNORED = 0x00008000;
+
+    /** Only watch the path if it is a directory. */
+    private static final int IN_ONLYDIR = 0x01000000;
+
+    /** Stop reporting entries once they are unlinked. */
+    private static final int IN_EXCL_UNLINK = 0x04000000;
+
+    /** The entry is a directory. */
+    private static final int IN_ISDIR = 0x40000000;
+
+    /** Close the inotify descriptor on exec. */
+    private static final int IN_CLOEXEC = 0x00080000;
+
+    /** Events every directory is watched for. */
+    private static final int WATCH_MASK = IN_MODIFY | IN_CLOSE_WRITE | IN_MOVED_FROM | IN_MOVED_TO
+            | IN_CREATE | IN_DELETE | IN_ONLYDIR | IN_EXCL_UNLINK;
+
+    /** poll() event: data to read. */
+    private static final short POLLIN = 0x0001;
+
+    /** errno: interrupted system call. */
+    private static final int EINTR = 4;
+
+    /** errno: no such file or directory. */
+    private static final int ENOENT = 2;
+
+    /** errno: out of inotify watches. */
+    private static final int ENOSPC = 28;
+
+    /** Size of struct inotify_event without its name. */
+    private static final int HEADER_SIZE = 16;
+
+    /** Size of the native read buffer. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** How long one poll() waits, bounding how long close() waits for the thread. */
+    private static final int POLL_TIMEOUT_MILLIS = 250;
+
+    /** How long to wait for the IN_MOVED_TO half of a move. */
+    private static final int MOVE_TIMEOUT_MILLIS = 10;
+
+    /** int inotify_init1(int flags), capturing errno. */
+    private static final MethodHandle INOTIFY_INIT1;
+
+    /** int inotify_add_watch(int fd, const char *path, uint32_t mask), capturing errno. */
+    private static final MethodHandle INOTIFY_ADD_WATCH;
+
+    /** int inotify_rm_watch(int fd, int wd). */
+    private static final MethodHandle INOTIFY_RM_WATCH;
+
+    /** ssize_t read(int fd, void *buf, size_t count), capturing errno. */
+    private static final MethodHandle READ;
+
+    /** int poll(struct pollfd *fds, nfds_t nfds, int timeout), capturing errno. */
+    private static final MethodHandle POLL;
+
+    /** int close(int fd). */
+    private static final MethodHandle CLOSE;
+
+    /** Layout of the captured call state. */
+    private static final StructLayout CAPTURE_LAYOUT;
+
+    /** Offset of errno in the captured call state. */
+    private static final long ERRNO_OFFSET;
+
+    /** True if inotify could be bound on this platform. */
+    private static final boolean SUPPORTED;
+
+    static {
+        MethodHandle init = null;
+        MethodHandle addWatch = null;
+        MethodHandle rmWatch = null;
+        MethodHandle read = null;
+        MethodHandle poll = null;
+        MethodHandle close = null;
+        StructLayout capture = null;
+        long errnoOffset = 0;
+        boolean supported = false;
+        if (System.getProperty("os.name", "").toLowerCase().contains("linux")) {
+            try {
+                Linker linker = Linker.nativeLinker();
+                SymbolLookup libc = linker.defaultLookup();
+                Linker.Option errno = Linker.Option.captureCallState("errno");
+                capture = Linker.Option.captureStateLayout();
+                errnoOffset = capture.byteOffset(MemoryLayout.PathElement.groupElement("errno"));
+                init = linker.downcallHandle(libc.find("inotify_init1").orElseThrow(),
+                        FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT), errno);
+                addWatch = linker.downcallHandle(libc.find("inotify_add_watch").orElseThrow(),
+                        FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT,
+                                ValueLayout.ADDRESS, ValueLayout.JAVA_INT), errno);
+                rmWatch = linker.downcallHandle(libc.find("inotify_rm_watch").orElseThrow(),
+                        FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT, ValueLayout.JAVA_INT));
+                read = linker.downcallHandle(libc.find("read").orElseThrow(),
+                        FunctionDescriptor.of(ValueLayout.JAVA_LONG, ValueLayout.JAVA_INT,
+                                ValueLayout.ADDRESS, ValueLayout.JAVA_LONG), errno);
+                poll = linker.downcallHandle(libc.find("poll").orElseThrow(),
+                        FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS,
+                                ValueLayout.JAVA_LONG, ValueLayout.JAVA_INT), errno);
+                close = linker.downcallHandle(libc.find("close").orElseThrow(),
+                        FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT));
+                supported = true;
+            } catch (RuntimeException | LinkageError e) {
+                System.err.println("inotify is not available: " + e);
+            }
+        }
+        INOTIFY_INIT1 = init;
+        INOTIFY_ADD_WATCH = addWatch;
+        INOTIFY_RM_WATCH = rmWatch;
+        READ = read;
+        POLL = poll;
+        CLOSE = close;
+        CAPTURE_LAYOUT = capture;
+        ERRNO_OFFSET = errnoOffset;
+        SUPPORTED = supported;
+    }
+
+    /** Watched directories with their watch descriptors. */
+    private volatile DirectoryTree<Integer> myWatches;
+
+    /** Reused buffer for decoding entry names. */
+    private final byte[] myNameBytes;
+
+    /** Native memory owned by this backend. */
+    private Arena myArena;
+
+    /** Buffer the events are read into. */
+    private MemorySegment myBuffer;
+
+    /** The struct pollfd passed to poll(). */
+    private MemorySegment myPollFd;
+
+    /** errno captured by the last call. */
+    private MemorySegment myCapture;
+
+    /** The inotify file descriptor, or -1. */
+    private int myFd = -1;
+
+    /** Root of the watched tree. */
+    private Path myRoot;
+
+    /** Directories that are not watched. */
+    private IgnoreRules myRules;
+
+    /** Receives the changes. */
+    private Consumer<RawWatchEvent> mySink;
+
+    /** The thread that reads the events. */
+    private Thread myWatchThread;
+
+    /** Flag indicating if monitoring is active. */
+    private volatile boolean myMonitoring;
+
+    /** Source of a move waiting for its IN_MOVED_TO, or null. */
+    private Path myPendingMove;
+
+    /** Cookie of the pending move. */
+    private int myPendingCookie;
+
+    /** True if the pending move is a directory. */
+    private boolean myPendingDirectory;
+
+    /**
+     * Creates an unstarted backend.
+     *
+     * @throws UnsupportedOperationException if inotify is not available
+     */
+    public InotifyWatchBackend() {
+        if (!SUPPORTED) {
+            throw new UnsupportedOperationException("inotify is only available on Linux");
+        }
+        myNameBytes = new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * Returns true if inotify can be used on this platform.
+     *
+     * @return whether the backend is supported
+     */
+    public static boolean isSupported() {
+        return SUPPORTED;
+    }
+
+    @Override
+    public void start(final Path theRoot, final IgnoreRules theRules, final Consumer<RawWatchEvent> theSink)
+            throws IOException {
+        myRoot = theRoot;
+        myRules = theRules;
+        mySink = theSink;
+        myArena = Arena.ofShared();
+        myBuffer = myArena.allocate(BUFFER_SIZE, 8);
+        myPollFd = myArena.allocate(8, 4);
+        myCapture = myArena.allocate(CAPTURE_LAYOUT);
+        try {
+            myFd = (int) INOTIFY_INIT1.invokeExact(myCapture, IN_CLOEXEC);
+        } catch (Throwable e) {
+            throw new IOException("inotify_init1 failed", e);
+        }
+        if (myFd < 0) {
+            int errno = errno();
+            release();
+            throw new IOException("inotify_init1 failed: errno " + errno);
+        }
+        myWatches = new DirectoryTree<>(theRoot);
+        myPollFd.set(ValueLayout.JAVA_INT, 0, myFd);
+        myPollFd.set(ValueLayout.JAVA_SHORT, 4, POLLIN);
+        try {
+            watchTree(theRoot, false);
+        } catch (IOException e) {
+            release();
+            throw e;
+        }
+
+        myMonitoring = true;
+        myWatchThread = new Thread(this::processEvents, "inotify-watch " + theRoot);
+        myWatchThread.setDaemon(true);
+        myWatchThread.start();
+    }
+
+    @Override
+    public void close() {
+        myMonitoring = false;
+        if (myWatchThread != null) {
+            try {
+                myWatchThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        release();
+    }
+
+    /**
+     * Returns the number of directories being watched.
+     *
+     * @return the directory count
+     */
+    public int getDirectoryCount() {
+        DirectoryTree<Integer> watches = myWatches;
+        return watches == null ? 0 : watches.size();
+    }
+
+    /**
+     * Closes the inotify descriptor and frees the native memory.
+     */
+    private void release() {
+        if (myFd >= 0) {
+            try {
+                int result = (int) CLOSE.invokeExact(myFd);
+            } catch (Throwable e) {
+                e.printStackTrace();
+            }
+            myFd = -1;
+        }
+        if (myArena != null) {
+            myArena.close();
+            myArena = null;
+        }
+    }
+
+    /**
+     * Main loop of the watch thread: waits for events, reads them into the
+     * buffer and decodes them.
+     */
+    private void processEvents() {
+        try {
+            while (myMonitoring) {
+                int timeout = myPendingMove != null ? MOVE_TIMEOUT_MILLIS : POLL_TIMEOUT_MILLIS;
+                int ready = (int) POLL.invokeExact(myCapture, myPollFd, 1L, timeout);
+                if (ready < 0) {
+                    if (errno() == EINTR) continue;
+                    System.err.println("inotify poll failed: errno " + errno());
+                    break;
+                }
+                if (ready == 0) {
+                    // The other half of a move did not come, so it left or entered the tree
+                    flushPendingMove();
+                    continue;
+                }
+                long count = (long) READ.invokeExact(myCapture, myFd, myBuffer, (long) BUFFER_SIZE);
+                if (count < 0) {
+                    if (errno() == EINTR) continue;
+                    System.err.println("inotify read failed: errno " + errno());
+                    break;
+                }
+                decode(count);
+            }
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Decodes the events in the first bytes of the buffer.
+     *
+     * @param theCount number of bytes read
+     */
+    private void decode(final long theCount) {
+        long offset = 0;
+        while (offset + HEADER_SIZE <= theCount) {
+            int wd = myBuffer.get(ValueLayout.JAVA_INT, offset);
+            int mask = myBuffer.get(ValueLayout.JAVA_INT, offset + 4);
+            int cookie = myBuffer.get(ValueLayout.JAVA_INT, offset + 8);
+            int length = myBuffer.get(ValueLayout.JAVA_INT, offset + 12);
+            String name = length > 0 ? readName(offset + HEADER_SIZE, length) : null;
+            offset += HEADER_SIZE + length;
+            handle(wd, mask, cookie, name);
+        }
+    }
+
+    /**
+     * Reads a NUL padded entry name from the buffer.
+     *
+     * @param theOffset offset of the name
+     * @param theLength length of the name field, including padding
+     * @return the name
+     */
+    private String readName(final long theOffset, final int theLength) {
+        MemorySegment.copy(myBuffer, ValueLayout.JAVA_BYTE, theOffset, myNameBytes, 0, theLength);
+        int end = 0;
+        while (end < theLength && myNameBytes[end] != 0) {
+            end++;
+        }
+        return new String(myNameBytes, 0, end, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Turns one inotify event into raw watch events.
+     *
+     * @param theWd the watch descriptor of the directory
+     * @param theMask the event bits
+     * @param theCookie the cookie pairing the two halves of a move
+     * @param theName the entry name, or null for events on the directory itself
+     */
+    private void handle(final int theWd, final int theMask, final int theCookie, final String theName) {
+        if ((theMask & IN_Q_OVERFLOW) != 0) {
+            flushPendingMove();
+            mySink.accept(new RawWatchEvent(StandardWatchEventKinds.OVERFLOW, myRoot));
+            return;
+        }
+        if ((theMask & IN_IGNORED) != 0) {
+            // The directory is gone, and so is everything below it
+            myWatches.remove(theWd);
+            return;
+        }
+        Path dir = myWatches.pathOf(theWd);
+        if (dir == null || theName == null) {
+            return;
+        }
+        Path path = dir.resolve(theName);
+        boolean directory = (theMask & IN_ISDIR) != 0;
+        boolean movedTo = (theMask & IN_MOVED_TO) != 0;
+
+        if (myPendingMove != null && !(movedTo && theCookie == myPendingCookie)) {
+            flushPendingMove();
+        }
+        if ((theMask & IN_MOVED_FROM) != 0) {
+            myPendingMove = path;
+            myPendingCookie = theCookie;
+            myPendingDirectory = directory;
+        } else if (movedTo) {
+            if (myPendingMove != null) {
+                Path from = myPendingMove;
+                myPendingMove = null;
+                if (directory && myRules.isDirectoryIgnored(myRoot, path)) {
+                    unwatchTree(from);
+                } else if (directory && !myWatches.move(from, path)) {
+                    // It was ignored under its old name
+                    watchNewDirectory(path);
+                }
+                mySink.accept(new RawWatchEvent(RawWatchEvent.ENTRY_RENAME, path, from));
+            } else {
+                mySink.accept(new RawWatchEvent(StandardWatchEventKinds.ENTRY_CREATE, path));
+                if (directory) {
+                    watchNewDirectory(path);
+                }
+            }
+        } else if ((theMask & IN_CREATE) != 0) {
+            mySink.accept(new RawWatchEvent(StandardWatchEventKinds.ENTRY_CREATE, path));
+            if (directory) {
+                watchNewDirectory(path);
+            }
+        } else if ((theMask & IN_DELETE) != 0) {
+            if (directory) {
+                // Its watches are already gone in the kernel
+                myWatches.removeSubtree(path);
+            }
+            mySink.accept(new RawWatchEvent(StandardWatchEventKinds.ENTRY_DELETE, path));
+        } else if ((theMask & IN_CLOSE_WRITE) != 0) {
+            mySink.accept(new RawWatchEvent(RawWatchEvent.ENTRY_CLOSE_WRITE, path));
+        } else if ((theMask & IN_MODIFY) != 0) {
+            mySink.accept(new RawWatchEvent(StandardWatchEventKinds.ENTRY_MODIFY, path));
+        }
+    }
+
+    /**
+     * Reports a move whose IN_MOVED_TO never came as a delete, and stops
+     * watching a directory that left the tree.
+     */
+    private void flushPendingMove() {
+        if (myPendingMove == null) {
+            return;
+        }
+        Path from = myPendingMove;
+        myPendingMove = null;
+        if (myPendingDirectory) {
+            unwatchTree(from);
+        }
+        mySink.accept(new RawWatchEvent(StandardWatchEventKinds.ENTRY_DELETE, from));
+    }
+
+    /**
+     * Watches a directory that appeared while watching, and reports the
+     * entries already inside it, which were created before its watch existed.
+     *
+     * @param theDirectory the new directory
+     */
+    private void watchNewDirectory(final Path theDirectory) {
+        try {
+            watchTree(theDirectory, true);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Adds a watch for a directory and every directory below it.
+     *
+     * @param theTop the top of the tree
+     * @param theReport true to report the entries found below theTop as created
+     * @throws IOException if a watch cannot be added
+     */
+    private void watchTree(final Path theTop, final boolean theReport) throws IOException {
+        Files.walkFileTree(theTop, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+                    throws IOException {
+                if (myRules.isDirectoryIgnored(myRoot, dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                addWatch(dir);
+                if (theReport && !dir.equals(theTop)) {
+                    mySink.accept(new RawWatchEvent(StandardWatchEventKinds.ENTRY_CREATE, dir));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (theReport) {
+                    mySink.accept(new RawWatchEvent(StandardWatchEventKinds.ENTRY_CREATE, file));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Adds an inotify watch for one directory. A directory that vanished in
+     * the meantime is skipped.
+     *
+     * @param theDirectory the directory to watch
+     * @throws IOException if the watch cannot be added
+     */
+    private void addWatch(final Path theDirectory) throws IOException {
+        byte[] path = theDirectory.toString().getBytes(StandardCharsets.UTF_8);
+        int wd;
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment cPath = arena.allocate(path.length + 1L);
+            MemorySegment.copy(path, 0, cPath, ValueLayout.JAVA_BYTE, 0, path.length);
+            cPath.set(ValueLayout.JAVA_BYTE, path.length, (byte) 0);
+            wd = (int) INOTIFY_ADD_WATCH.invokeExact(myCapture, myFd, cPath, WATCH_MASK);
+        } catch (Throwable e) {
+            throw new IOException("inotify_add_watch failed for " + theDirectory, e);
+        }
+        if (wd >= 0) {
+            if (!myWatches.add(theDirectory, wd)) {
+                removeWatch(wd);
+            }
+            return;
+        }
+        int errno = errno();
+        if (errno == ENOSPC) {
+            throw new IOException("Out of inotify watches at " + theDirectory
+                    + "; raise fs.inotify.max_user_watches");
+        }
+        if (errno != ENOENT) {
+            throw new IOException("inotify_add_watch failed for " + theDirectory + ": errno " + errno);
+        }
+    }
+
+    /**
+     * Removes the watches of a directory and everything below it.
+     *
+     * @param theTop the top of the tree
+     */
+    private void unwatchTree(final Path theTop) {
+        for (int wd : myWatches.removeSubtree(theTop).values()) {
+            removeWatch(wd);
+        }
+    }
+
+    /**
+     * Removes one inotify watch.
+     *
+     * @param theWd the watch descriptor
+     */
+    private void removeWatch(final int theWd) {
+        try {
+            int result = (int) INOTIFY_RM_WATCH.invokeExact(myFd, theWd);
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns errno as captured by the last call.
+     *
+     * @return the error number
+     */
+    private int errno() {
+        return myCapture.get(ValueLayout.JAVA_INT, ERRNO_OFFSET);
+    }
+}
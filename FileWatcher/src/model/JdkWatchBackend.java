@@ -0,0 +1,747 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Watches a directory tree with the JDK WatchService. Every directory is
+ * registered on its own, and directories created while watching are
+ * registered as they appear.
+ *
+ * Only the root is registered before start returns. The rest of the tree is
+ * registered by a fork-join pool, one task per directory, while the watch
+ * thread already reports events from the directories registered so far.
+ * getTimeToFirstEvent and getTimeToFullCoverage tell how long that took.
+ *
+ * With a manifest directory, the registered directories are saved when
+ * watching stops. The next start registers every directory whose
+ * modification time and file key are unchanged straight from the manifest
+ * and lists only the ones that changed; the skipped listings are taken in
+ * the background once the tree is covered.
+ *
+ * With catch-up enabled, the manifest also saves the listing of every
+ * directory. On the next start each directory's first listing is compared
+ * with the saved one, in the same parallel tasks that register the tree,
+ * and the differences are reported as reconciled events: the changes made
+ * while nothing was watching.
+ *
+ * Directories ignored by the IgnoreRules are never registered, and neither
+ * is anything below them.
+ *
+ * The registered directories are kept as a DirectoryTree. When a watched
+ * directory is deleted or moved away, the keys of its whole subtree are
+ * cancelled at once; a directory moved in is registered like a new one. The
+ * watch count thus follows the live tree.
+ *
+ * A listing of every registered directory is kept up to date as events
+ * arrive. When a key overflows, the events of that directory are dropped
+ * and it is listed again; the differences from the kept listing are
+ * reported instead, so no change is lost during bursts.
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+public class JdkWatchBackend implements WatchBackend {
+
+    /** Where WatchBackendType.JDK keeps its manifests, next to the database. */
+    public static final Path DEFAULT_MANIFEST_DIRECTORY = Path.of("manifests");
+
+    /** Manifest index of a directory that is not compared with a manifest. */
+    private static final int UNKNOWN = -1;
+
+    /** Manifest index of a directory that did not exist when the manifest was written. */
+    private static final int NEW = -2;
+
+    /** Java NIO WatchService used for monitoring file system changes. */
+    private WatchService myWatchService;
+
+    /** The registered directories with their keys. */
+    private volatile DirectoryTree<WatchKey> myDirectories;
+
+    /** Last known listing of each registered directory. */
+    private final Map<Path, DirectoryListing> myListings;
+
+    /**
+     * Changes reported by the last rescan of each directory, by name id.
+     * Their own events may still arrive and are then not reported again.
+     */
+    private final Map<Path, Map<Integer, WatchEvent.Kind<?>>> myRecovered;
+
+    /**
+     * Modification time and file key of each registered directory, taken
+     * before it was listed. Dropped when an event arrives for the directory.
+     */
+    private final Map<Path, long[]> myStamps;
+
+    /** Entry names of the tree. */
+    private final DirectoryListing.Names myNames;
+
+    /** Where manifests are kept, or null to keep none. */
+    private final Path myManifestDirectory;
+
+    /** True to save listings and report what changed while not watching. */
+    private final boolean myCatchUp;
+
+    /** The manifest of the last run, or null. */
+    private DirectoryManifest myManifest;
+
+    /** Directories registered from the manifest and not listed yet, with their index. */
+    private final Map<Path, Integer> myUnlisted;
+
+    /** Root of the watched tree. */
+    private Path myRoot;
+
+    /** Directories that are not registered. */
+    private IgnoreRules myRules;
+
+    /** Number of directories listed while registering. */
+    private final AtomicInteger myDirectoriesListed;
+
+    /** Registers directories in parallel. */
+    private ForkJoinPool myPool;
+
+    /** Receives the changes. */
+    private Consumer<RawWatchEvent> mySink;
+
+    /** The thread that runs the watch loop. */
+    private Thread myWatchThread;
+
+    /** Flag indicating if monitoring is active. */
+    private volatile boolean myMonitoring;
+
+    /** System.nanoTime() when start was called. */
+    private volatile long myStartTime;
+
+    /** Milliseconds from start to the first reported event, or -1. */
+    private volatile long myTimeToFirstEvent;
+
+    /** Milliseconds from start until the whole tree was registered, or -1. */
+    private volatile long myTimeToFullCoverage;
+
+    /**
+     * Registers one directory, then its subdirectories as subtasks.
+     */
+    @SuppressWarnings("serial") // A fork/join task that is never serialized
+    private final class Registration extends RecursiveAction {
+
+        /** The directory to register. */
+        private final Path myDirectory;
+
+        /** True to report the entries found as created. */
+        private final boolean myReport;
+
+        /** Subdirectories with their manifest indexes if the directory is already registered, or null. */
+        private final Map<Path, Integer> mySubdirectories;
+
+        /** Index of the directory in the manifest, UNKNOWN or NEW. */
+        private final int myIndex;
+
+        /**
+         * Creates a registration task.
+         *
+         * @param theDirectory the directory to register
+         * @param theReport true to report the entries found as created
+         * @param theSubdirectories subdirectories of an already registered directory, or null
+         * @param theIndex index of the directory in the manifest, UNKNOWN or NEW
+         */
+        Registration(final Path theDirectory, final boolean theReport,
+                     final Map<Path, Integer> theSubdirectories, final int theIndex) {
+            myDirectory = theDirectory;
+            myReport = theReport;
+            mySubdirectories = theSubdirectories;
+            myIndex = theIndex;
+        }
+
+        @Override
+        protected void compute() {
+            if (myRules.isDirectoryIgnored(myRoot, myDirectory)) {
+                return;
+            }
+            Map<Path, Integer> subdirectories = mySubdirectories;
+            try {
+                if (subdirectories == null && myIndex >= 0 && registerUnchanged(myDirectory, myIndex)) {
+                    subdirectories = new HashMap<>();
+                    for (Map.Entry<String, Integer> child : myManifest.children(myIndex).entrySet()) {
+                        subdirectories.put(myDirectory.resolve(child.getKey()), child.getValue());
+                    }
+                } else if (subdirectories == null) {
+                    subdirectories = register(myDirectory, myReport, myIndex);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+            if (subdirectories == null) {
+                return;
+            }
+            List<Registration> children = new ArrayList<>();
+            for (Map.Entry<Path, Integer> subdirectory : subdirectories.entrySet()) {
+                children.add(new Registration(subdirectory.getKey(), myReport, null, subdirectory.getValue()));
+            }
+            invokeAll(children);
+        }
+    }
+
+    /**
+     * Creates an unstarted backend that keeps no manifest.
+     */
+    public JdkWatchBackend() {
+        this(null, false);
+    }
+
+    /**
+     * Creates an unstarted backend that saves a manifest of the tree when it
+     * is closed and starts from it the next time the same root is watched.
+     *
+     * @param theManifestDirectory where manifests are kept, or null to keep none
+     */
+    public JdkWatchBackend(final Path theManifestDirectory) {
+        this(theManifestDirectory, false);
+    }
+
+    /**
+     * Creates an unstarted backend that saves a manifest of the tree when it
+     * is closed, optionally with the state of every file so that the next
+     * start reports what changed in between.
+     *
+     * @param theManifestDirectory where manifests are kept, or null to keep none
+     * @param theCatchUp true to report changes made while not watching
+     */
+    public JdkWatchBackend(final Path theManifestDirectory, final boolean theCatchUp) {
+        myManifestDirectory = theManifestDirectory;
+        myCatchUp = theCatchUp && theManifestDirectory != null;
+        myUnlisted = new ConcurrentHashMap<>();
+        myListings = new ConcurrentHashMap<>();
+        myRecovered = new ConcurrentHashMap<>();
+        myStamps = new ConcurrentHashMap<>();
+        myNames = new DirectoryListing.Names();
+        myDirectoriesListed = new AtomicInteger();
+        myTimeToFirstEvent = -1;
+        myTimeToFullCoverage = -1;
+    }
+
+    @Override
+    public void start(final Path theRoot, final IgnoreRules theRules, final Consumer<RawWatchEvent> theSink)
+            throws IOException {
+        myStartTime = System.nanoTime();
+        myRoot = theRoot;
+        myRules = theRules;
+        mySink = theSink;
+        if (myManifestDirectory != null) {
+            myManifest = DirectoryManifest.read(DirectoryManifest.fileFor(myManifestDirectory, theRoot),
+                    theRoot, myNames);
+        }
+        myWatchService = theRoot.getFileSystem().newWatchService();
+        myDirectories = new DirectoryTree<>(theRoot);
+        Map<Path, Integer> subdirectories = register(theRoot, false, myManifest == null ? UNKNOWN : 0);
+        if (subdirectories == null) {
+            throw new NoSuchFileException(theRoot.toString());
+        }
+
+        myMonitoring = true;
+        myWatchThread = new Thread(this::processEvents, "jdk-watch " + theRoot);
+        myWatchThread.setDaemon(true);
+        myWatchThread.start();
+
+        myPool = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        myPool.execute(() -> {
+            new Registration(theRoot, false, subdirectories, UNKNOWN).invoke();
+            if (!myMonitoring) {
+                return;
+            }
+            myTimeToFullCoverage = (System.nanoTime() - myStartTime) / 1_000_000;
+
+            // Directories registered from the manifest have not been listed yet
+            List<ForkJoinTask<?>> listings = new ArrayList<>();
+            for (Path dir : myUnlisted.keySet()) {
+                listings.add(ForkJoinTask.adapt(() -> list(dir)));
+            }
+            ForkJoinTask.invokeAll(listings);
+        });
+    }
+
+    @Override
+    public void close() {
+        myMonitoring = false;
+        try {
+            if (myWatchService != null) {
+                myWatchService.close();
+            }
+            // The watch thread hands new directories to the pool, so it stops first
+            if (myWatchThread != null) {
+                myWatchThread.join();
+            }
+            if (myPool != null) {
+                myPool.shutdownNow();
+                myPool.awaitTermination(10, TimeUnit.SECONDS);
+            }
+            if (myManifestDirectory != null && myTimeToFullCoverage >= 0) {
+                saveManifest();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the number of directories registered so far.
+     *
+     * @return the directory count
+     */
+    public int getDirectoryCount() {
+        DirectoryTree<WatchKey> directories = myDirectories;
+        return directories == null ? 0 : directories.size();
+    }
+
+    /**
+     * Returns the number of directories listed while registering the tree.
+     * On a start from a manifest, only the directories that changed are listed.
+     *
+     * @return the number of directories listed
+     */
+    public int getDirectoriesListed() {
+        return myDirectoriesListed.get();
+    }
+
+    /**
+     * Returns how long after start the first event was reported.
+     *
+     * @return milliseconds, or -1 if nothing has been reported yet
+     */
+    public long getTimeToFirstEvent() {
+        return myTimeToFirstEvent;
+    }
+
+    /**
+     * Returns how long after start every directory of the tree was registered.
+     *
+     * @return milliseconds, or -1 while registration is still running
+     */
+    public long getTimeToFullCoverage() {
+        return myTimeToFullCoverage;
+    }
+
+    /**
+     * Registers one directory for watch events and lists it. The key is
+     * registered before the listing is taken, so nothing changed in between
+     * goes unreported.
+     *
+     * @param theDirectory the directory to register
+     * @param theReport true to report the entries found as created
+     * @param theIndex index of the directory in the manifest, UNKNOWN or NEW
+     * @return the subdirectories with their manifest indexes, or null if the directory is gone
+     * @throws IOException if an I/O error occurs
+     */
+    private Map<Path, Integer> register(final Path theDirectory, final boolean theReport, final int theIndex)
+            throws IOException {
+        // Stamped before registering, so a change in between makes the stamp stale, not wrong
+        long[] entry = new long[3];
+        if (!DirectoryListing.read(theDirectory, entry) || !registerKey(theDirectory)) {
+            return null;
+        }
+        DirectoryListing listing = DirectoryListing.scan(theDirectory, myNames);
+        if (listing == null) {
+            return null;
+        }
+        myDirectoriesListed.incrementAndGet();
+        myStamps.put(theDirectory, new long[] {entry[1], entry[2]});
+        Map<String, Integer> known = theIndex >= 0 ? myManifest.children(theIndex) : Map.of();
+        int missing = myCatchUp && theIndex != UNKNOWN ? NEW : UNKNOWN;
+        Map<Path, Integer> subdirectories = new HashMap<>();
+        for (int i = 0; i < listing.size(); i++) {
+            String name = myNames.nameOf(listing.nameAt(i));
+            Path path = theDirectory.resolve(name);
+            if (listing.isDirectory(i)) {
+                subdirectories.put(path, known.getOrDefault(name, missing));
+            }
+            if (theReport) {
+                emit(new RawWatchEvent(StandardWatchEventKinds.ENTRY_CREATE, path));
+            }
+        }
+        reconcile(theDirectory, theIndex, listing, subdirectories);
+        // Only the watch thread touches the listing from here on. A rescan
+        // there may already have stored a newer one.
+        myListings.putIfAbsent(theDirectory, listing);
+        return subdirectories;
+    }
+
+    /**
+     * Registers a directory from the manifest without listing it, if it has
+     * not changed since the manifest was written.
+     *
+     * @param theDirectory the directory to register
+     * @param theIndex its index in the manifest
+     * @return true if it was unchanged and is now registered
+     * @throws IOException if an I/O error occurs
+     */
+    private boolean registerUnchanged(final Path theDirectory, final int theIndex) throws IOException {
+        long[] entry = new long[3];
+        if (!DirectoryListing.read(theDirectory, entry) || entry[0] != DirectoryListing.DIRECTORY
+                || !myManifest.isUnchanged(theIndex, entry[1], entry[2])) {
+            return false;
+        }
+        if (!registerKey(theDirectory)) {
+            return false;
+        }
+        myStamps.put(theDirectory, new long[] {entry[1], entry[2]});
+        myUnlisted.put(theDirectory, theIndex);
+        return true;
+    }
+
+    /**
+     * Registers a directory with the WatchService.
+     *
+     * @param theDirectory the directory to register
+     * @return false if the directory is gone or no longer in the tree
+     * @throws IOException if an I/O error occurs
+     */
+    private boolean registerKey(final Path theDirectory) throws IOException {
+        try {
+            WatchKey key = theDirectory.register(myWatchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+            if (!myDirectories.add(theDirectory, key)) {
+                // Its parent was deleted or moved away while registering
+                key.cancel();
+                return false;
+            }
+            return true;
+        } catch (NoSuchFileException | NotDirectoryException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Takes a listing of a registered directory that has none yet.
+     *
+     * @param theDirectory the directory to list
+     */
+    private void list(final Path theDirectory) {
+        Integer index = myUnlisted.remove(theDirectory);
+        try {
+            DirectoryListing listing = DirectoryListing.scan(theDirectory, myNames);
+            if (listing != null && index != null) {
+                reconcile(theDirectory, index, listing, null);
+                myListings.putIfAbsent(theDirectory, listing);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Reports how a directory's first listing differs from the listing saved
+     * in the manifest, as reconciled events. Does nothing unless catching up.
+     *
+     * @param theDirectory the directory
+     * @param theIndex its index in the manifest, UNKNOWN or NEW
+     * @param theListing its current listing
+     * @param theSubdirectories its subdirectories, whose indexes follow renames; may be null
+     */
+    private void reconcile(final Path theDirectory, final int theIndex, final DirectoryListing theListing,
+                           final Map<Path, Integer> theSubdirectories) {
+        if (!myCatchUp || theIndex == UNKNOWN) {
+            return;
+        }
+        DirectoryListing saved = theIndex == NEW ? new DirectoryListing() : myManifest.listing(theIndex);
+        if (saved == null) {
+            return;
+        }
+        Map<String, Integer> known = theIndex >= 0 ? myManifest.children(theIndex) : Map.of();
+        long[] entry = new long[3];
+        saved.compareTo(theListing, new DirectoryListing.Changes() {
+            @Override
+            public void created(final int theName, final boolean theIsDirectory) {
+                RawWatchEvent event = new RawWatchEvent(StandardWatchEventKinds.ENTRY_CREATE,
+                        theDirectory.resolve(myNames.nameOf(theName)), null, true);
+                emit(theListing.get(theName, entry)
+                        ? event.withIdentity(entry[2], entry[0], entry[1]) : event);
+            }
+
+            @Override
+            public void deleted(final int theName, final boolean theIsDirectory) {
+                String name = myNames.nameOf(theName);
+                if (theIsDirectory) {
+                    deleteSaved(theDirectory.resolve(name), known.getOrDefault(name, UNKNOWN));
+                }
+                RawWatchEvent event = new RawWatchEvent(StandardWatchEventKinds.ENTRY_DELETE,
+                        theDirectory.resolve(name), null, true);
+                emit(saved.get(theName, entry)
+                        ? event.withIdentity(entry[2], entry[0], entry[1]) : event);
+            }
+
+            @Override
+            public void modified(final int theName) {
+                emit(new RawWatchEvent(StandardWatchEventKinds.ENTRY_MODIFY,
+                        theDirectory.resolve(myNames.nameOf(theName)), null, true));
+            }
+
+            @Override
+            public void renamed(final int theFrom, final int theTo, final boolean theIsDirectory) {
+                Path previous = theDirectory.resolve(myNames.nameOf(theFrom));
+                Path path = theDirectory.resolve(myNames.nameOf(theTo));
+                if (theIsDirectory && theSubdirectories != null) {
+                    // Compare the renamed directory with what it held under its old name
+                    theSubdirectories.put(path, known.getOrDefault(myNames.nameOf(theFrom), NEW));
+                }
+                emit(new RawWatchEvent(RawWatchEvent.ENTRY_RENAME, path, previous, true));
+            }
+        });
+    }
+
+    /**
+     * Reports everything a directory held according to the manifest as
+     * deleted, deepest entries first.
+     *
+     * @param theDirectory the deleted directory
+     * @param theIndex its index in the manifest, or UNKNOWN
+     */
+    private void deleteSaved(final Path theDirectory, final int theIndex) {
+        DirectoryListing saved = theIndex >= 0 ? myManifest.listing(theIndex) : null;
+        if (saved == null) {
+            return;
+        }
+        Map<String, Integer> known = myManifest.children(theIndex);
+        for (int i = 0; i < saved.size(); i++) {
+            String name = myNames.nameOf(saved.nameAt(i));
+            Path path = theDirectory.resolve(name);
+            if (saved.isDirectory(i)) {
+                deleteSaved(path, known.getOrDefault(name, UNKNOWN));
+            }
+            emit(new RawWatchEvent(StandardWatchEventKinds.ENTRY_DELETE, path, null, true));
+        }
+    }
+
+    /**
+     * Saves the registered directories to the manifest. Directories that
+     * had events since they were stamped are stamped again now.
+     *
+     * @throws IOException if the manifest cannot be written
+     */
+    private void saveManifest() throws IOException {
+        Map<Path, long[]> stamps = new HashMap<>(myStamps);
+        long[] entry = new long[3];
+        List<Path> directories = myDirectories.paths();
+        for (Path dir : directories) {
+            if (!stamps.containsKey(dir) && DirectoryListing.read(dir, entry)) {
+                stamps.put(dir, new long[] {entry[1], entry[2]});
+            }
+        }
+        stamps.keySet().retainAll(directories);
+        DirectoryManifest.write(DirectoryManifest.fileFor(myManifestDirectory, myRoot), myRoot, stamps,
+                myCatchUp ? myListings : Map.of(), myNames);
+    }
+
+    /**
+     * Takes signalled keys from the WatchService and reports their events.
+     */
+    private void processEvents() {
+        while (myMonitoring) {
+            WatchKey key;
+            try {
+                key = myWatchService.take(); // waits for events
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                break;
+            }
+
+            // The tree follows moves; the pool may not have added the key yet
+            Path dir = myDirectories.pathOf(key);
+            if (dir == null) {
+                dir = (Path) key.watchable();
+            }
+
+            List<WatchEvent<?>> events = key.pollEvents();
+            myStamps.remove(dir);
+            boolean overflow = false;
+            for (WatchEvent<?> event : events) {
+                overflow |= event.kind() == StandardWatchEventKinds.OVERFLOW;
+            }
+            if (overflow) {
+                recover(dir);
+            } else {
+                for (WatchEvent<?> event : events) {
+                    report(dir, event.kind(), (Path) event.context());
+                }
+            }
+
+            boolean valid = key.reset();
+            // Closing cancels every key, which is not a deletion
+            if (!valid && myMonitoring) {
+                forget(myDirectories.remove(key));
+            }
+        }
+    }
+
+    /**
+     * Reports one event and applies it to the directory's listing.
+     *
+     * @param theDirectory the directory of the key
+     * @param theKind the kind of event
+     * @param theName the name of the entry
+     */
+    private void report(final Path theDirectory, final WatchEvent.Kind<?> theKind, final Path theName) {
+        Path fullPath = theDirectory.resolve(theName);
+        DirectoryListing listing = myListings.get(theDirectory);
+        Map<Integer, WatchEvent.Kind<?>> recovered = myRecovered.get(theDirectory);
+        int name = myNames.idOf(theName.toString());
+        if (recovered != null && recovered.remove(name) == theKind) {
+            // Already reported by the rescan after an overflow
+            return;
+        }
+        RawWatchEvent event = new RawWatchEvent(theKind, fullPath);
+        long[] entry = new long[3];
+        try {
+            if (theKind == StandardWatchEventKinds.ENTRY_DELETE) {
+                if (listing != null) {
+                    // What the entry was, so a move elsewhere can be paired with it
+                    if (listing.get(name, entry)) {
+                        event = event.withIdentity(entry[2], entry[0], entry[1]);
+                    }
+                    listing.remove(name);
+                }
+                // A deleted or moved-away directory takes its subtree along
+                forgetDirectories(fullPath);
+            } else if (listing != null) {
+                listing.refresh(theDirectory, name, myNames);
+                if (theKind == StandardWatchEventKinds.ENTRY_CREATE && listing.get(name, entry)) {
+                    event = event.withIdentity(entry[2], entry[0], entry[1]);
+                }
+            } else if (theKind == StandardWatchEventKinds.ENTRY_CREATE
+                    && DirectoryListing.read(fullPath, entry)) {
+                event = event.withIdentity(entry[2], entry[0], entry[1]);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        emit(event);
+
+        // Handle new directories being created or moved in
+        if (theKind == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(fullPath)) {
+            myPool.execute(new Registration(fullPath, false, null, UNKNOWN));
+        }
+    }
+
+    /**
+     * Lists a directory whose events were lost and reports how it differs
+     * from the kept listing. If there is no listing to compare with yet, or
+     * the directory cannot be listed, the overflow is passed on.
+     *
+     * @param theDirectory the directory of the overflowed key
+     */
+    private void recover(final Path theDirectory) {
+        DirectoryListing before = myListings.get(theDirectory);
+        DirectoryListing current;
+        try {
+            current = DirectoryListing.scan(theDirectory, myNames);
+        } catch (IOException e) {
+            current = null;
+        }
+        if (before == null || current == null) {
+            if (current != null) {
+                myListings.put(theDirectory, current);
+            }
+            emit(new RawWatchEvent(StandardWatchEventKinds.OVERFLOW, theDirectory));
+            return;
+        }
+        myListings.put(theDirectory, current);
+        Map<Integer, WatchEvent.Kind<?>> recovered =
+                myRecovered.computeIfAbsent(theDirectory, d -> new ConcurrentHashMap<>());
+        before.compareTo(current, new DirectoryListing.Changes() {
+            @Override
+            public void created(final int theName, final boolean theIsDirectory) {
+                Path path = theDirectory.resolve(myNames.nameOf(theName));
+                recovered.put(theName, StandardWatchEventKinds.ENTRY_CREATE);
+                emit(new RawWatchEvent(StandardWatchEventKinds.ENTRY_CREATE, path));
+                if (theIsDirectory) {
+                    // Its contents were created while events were lost, too
+                    myPool.execute(new Registration(path, true, null, UNKNOWN));
+                }
+            }
+
+            @Override
+            public void deleted(final int theName, final boolean theIsDirectory) {
+                Path path = theDirectory.resolve(myNames.nameOf(theName));
+                recovered.put(theName, StandardWatchEventKinds.ENTRY_DELETE);
+                if (theIsDirectory) {
+                    forgetDirectories(path);
+                }
+                emit(new RawWatchEvent(StandardWatchEventKinds.ENTRY_DELETE, path));
+            }
+
+            @Override
+            public void modified(final int theName) {
+                emit(new RawWatchEvent(StandardWatchEventKinds.ENTRY_MODIFY,
+                        theDirectory.resolve(myNames.nameOf(theName))));
+            }
+
+            @Override
+            public void renamed(final int theFrom, final int theTo, final boolean theIsDirectory) {
+                Path previous = theDirectory.resolve(myNames.nameOf(theFrom));
+                Path path = theDirectory.resolve(myNames.nameOf(theTo));
+                // The WatchService reports a rename as a delete and a create
+                recovered.put(theFrom, StandardWatchEventKinds.ENTRY_DELETE);
+                recovered.put(theTo, StandardWatchEventKinds.ENTRY_CREATE);
+                if (theIsDirectory) {
+                    forgetDirectories(previous);
+                    myPool.execute(new Registration(path, false, null, UNKNOWN));
+                }
+                emit(new RawWatchEvent(RawWatchEvent.ENTRY_RENAME, path, previous));
+            }
+        });
+    }
+
+    /**
+     * Passes an event to the sink, noting when the first one went out.
+     *
+     * @param theEvent the event to report
+     */
+    private void emit(final RawWatchEvent theEvent) {
+        if (myTimeToFirstEvent < 0) {
+            myTimeToFirstEvent = (System.nanoTime() - myStartTime) / 1_000_000;
+        }
+        mySink.accept(theEvent);
+    }
+
+    /**
+     * Cancels the keys and drops the listings of a directory and everything
+     * below it.
+     *
+     * @param theDirectory the directory that is gone
+     */
+    private void forgetDirectories(final Path theDirectory) {
+        forget(myDirectories.removeSubtree(theDirectory));
+    }
+
+    /**
+     * Cancels the keys and drops the listings of directories removed from
+     * the tree.
+     *
+     * @param theRemoved the keys of the removed directories by path
+     */
+    private void forget(final Map<Path, WatchKey> theRemoved) {
+        for (Map.Entry<Path, WatchKey> entry : theRemoved.entrySet()) {
+            entry.getValue().cancel();
+            myListings.remove(entry.getKey());
+            myRecovered.remove(entry.getKey());
+            myStamps.remove(entry.getKey());
+            myUnlisted.remove(entry.getKey());
+        }
+    }
+}
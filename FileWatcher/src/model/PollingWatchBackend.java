@@ -0,0 +1,354 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Watches a directory tree by rescanning its directories and comparing each
+ * listing with the previous one. Needs no support from the file system, so
+ * it works on network and FUSE mounts where the WatchService stays silent.
+ *
+ * Every directory is scanned on its own schedule. A scan that finds changes
+ * resets the directory's interval to the minimum; a quiet scan stretches it
+ * by half, up to the maximum. Busy directories are therefore rescanned
+ * often and cold ones rarely, which bounds the I/O on large trees.
+ *
+ * Directories ignored by the IgnoreRules are never scanned.
+ *
+ * The last listing of each directory is kept as a DirectoryListing, so a
+ * scan is compared with a single merge and the memory per file is a few
+ * dozen bytes. An entry that disappears while another with the same file
+ * key appears in the same directory is reported as a rename.
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+public class PollingWatchBackend implements WatchBackend {
+
+    /** Default minimum time between scans of a directory. */
+    public static final long DEFAULT_INTERVAL_MILLIS = 1000;
+
+    /** Cold directories are scanned at most this many times less often than busy ones. */
+    public static final int MAX_BACKOFF = 32;
+
+    /** Interval of a directory right after it changed. */
+    private final long myMinInterval;
+
+    /** Longest interval of a quiet directory. */
+    private final long myMaxInterval;
+
+    /** Entry names of the tree. */
+    private final DirectoryListing.Names myNames;
+
+    /** Watched directories by path. */
+    private final Map<Path, Directory> myDirectories;
+
+    /** Directories ordered by their next scan. */
+    private final PriorityQueue<Directory> mySchedule;
+
+    /** Root of the watched tree. */
+    private Path myRoot;
+
+    /** Directories that are not scanned. */
+    private IgnoreRules myRules;
+
+    /** Receives the changes. */
+    private Consumer<RawWatchEvent> mySink;
+
+    /** The thread that runs the scans. */
+    private Thread myPollThread;
+
+    /** Flag indicating if monitoring is active. */
+    private volatile boolean myMonitoring;
+
+    /**
+     * A watched directory with its last listing and schedule.
+     */
+    private static final class Directory {
+
+        /** Path of the directory. */
+        private Path myPath;
+
+        /** Listing from the last scan. */
+        private DirectoryListing myListing;
+
+        /** Current time between scans. */
+        private long myInterval;
+
+        /** When the next scan is due, in System.nanoTime() milliseconds. */
+        private long myNextScan;
+
+        /** True once the directory is gone; it is then skipped by the schedule. */
+        private boolean myRemoved;
+
+        /**
+         * Creates a directory entry.
+         *
+         * @param thePath the directory
+         * @param theListing its current listing
+         */
+        Directory(final Path thePath, final DirectoryListing theListing) {
+            myPath = thePath;
+            myListing = theListing;
+        }
+    }
+
+    /**
+     * Creates an unstarted backend that scans busy directories once per second.
+     */
+    public PollingWatchBackend() {
+        this(DEFAULT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Creates an unstarted backend.
+     *
+     * @param theIntervalMillis time between scans of a busy directory; quiet
+     *                          directories back off to MAX_BACKOFF times this
+     */
+    public PollingWatchBackend(final long theIntervalMillis) {
+        if (theIntervalMillis < 1) {
+            throw new IllegalArgumentException("Interval must be positive: " + theIntervalMillis);
+        }
+        myMinInterval = theIntervalMillis;
+        myMaxInterval = theIntervalMillis * MAX_BACKOFF;
+        myNames = new DirectoryListing.Names();
+        myDirectories = new HashMap<>();
+        mySchedule = new PriorityQueue<>(Comparator.comparingLong((Directory d) -> d.myNextScan));
+    }
+
+    @Override
+    public void start(final Path theRoot, final IgnoreRules theRules, final Consumer<RawWatchEvent> theSink)
+            throws IOException {
+        myRoot = theRoot;
+        myRules = theRules;
+        mySink = theSink;
+        if (!Files.isDirectory(theRoot)) {
+            throw new NotDirectoryException(theRoot.toString());
+        }
+        // The first listing of every directory is the baseline, nothing is reported
+        List<Path> pending = new ArrayList<>();
+        pending.add(theRoot);
+        while (!pending.isEmpty()) {
+            Path path = pending.remove(pending.size() - 1);
+            DirectoryListing listing = DirectoryListing.scan(path, myNames);
+            if (listing == null) {
+                continue;
+            }
+            schedule(new Directory(path, listing), myMinInterval);
+            for (int i = 0; i < listing.size(); i++) {
+                Path child = path.resolve(myNames.nameOf(listing.nameAt(i)));
+                if (listing.isDirectory(i) && !myRules.isDirectoryIgnored(theRoot, child)) {
+                    pending.add(child);
+                }
+            }
+        }
+
+        myMonitoring = true;
+        myPollThread = new Thread(this::poll, "polling-watch " + theRoot);
+        myPollThread.setDaemon(true);
+        myPollThread.start();
+    }
+
+    @Override
+    public void close() {
+        myMonitoring = false;
+        if (myPollThread != null) {
+            myPollThread.interrupt();
+            try {
+                myPollThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of directories being scanned.
+     *
+     * @return the directory count
+     */
+    public synchronized int getDirectoryCount() {
+        return myDirectories.size();
+    }
+
+    /**
+     * Main loop of the poll thread: waits until the next directory is due,
+     * scans it and reports the differences.
+     */
+    private void poll() {
+        while (myMonitoring) {
+            Directory next;
+            synchronized (this) {
+                next = mySchedule.peek();
+            }
+            long wait = next == null ? myMaxInterval : next.myNextScan - now();
+            if (wait > 0) {
+                try {
+                    Thread.sleep(wait);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                continue;
+            }
+            synchronized (this) {
+                mySchedule.poll();
+                if (!next.myRemoved) {
+                    rescan(next);
+                }
+            }
+        }
+    }
+
+    /**
+     * Scans a directory again, reports its changes and schedules its next scan.
+     *
+     * @param theDirectory the directory to scan
+     */
+    private void rescan(final Directory theDirectory) {
+        DirectoryListing current;
+        try {
+            current = DirectoryListing.scan(theDirectory.myPath, myNames);
+        } catch (IOException e) {
+            current = null;
+        }
+        if (current == null) {
+            if (theDirectory.myPath.equals(myRoot)) {
+                // Keep trying; the root may come back, e.g. when a mount reconnects
+                schedule(theDirectory, myMaxInterval);
+            }
+            // Otherwise the parent will notice the directory is gone
+            return;
+        }
+        Path dir = theDirectory.myPath;
+        DirectoryListing before = theDirectory.myListing;
+        DirectoryListing after = current;
+        long[] entry = new long[3];
+        boolean changed = theDirectory.myListing.compareTo(current, new DirectoryListing.Changes() {
+            @Override
+            public void created(final int theName, final boolean theIsDirectory) {
+                Path path = dir.resolve(myNames.nameOf(theName));
+                RawWatchEvent event = new RawWatchEvent(StandardWatchEventKinds.ENTRY_CREATE, path);
+                mySink.accept(after.get(theName, entry)
+                        ? event.withIdentity(entry[2], entry[0], entry[1]) : event);
+                if (theIsDirectory && !myRules.isDirectoryIgnored(myRoot, path)) {
+                    // Scan right away so entries created inside it are reported too
+                    schedule(new Directory(path, new DirectoryListing()), 0);
+                }
+            }
+
+            @Override
+            public void deleted(final int theName, final boolean theIsDirectory) {
+                Path path = dir.resolve(myNames.nameOf(theName));
+                if (theIsDirectory) {
+                    removeDirectory(path);
+                }
+                // Kept so a move to another directory can be paired with it
+                RawWatchEvent event = new RawWatchEvent(StandardWatchEventKinds.ENTRY_DELETE, path);
+                mySink.accept(before.get(theName, entry)
+                        ? event.withIdentity(entry[2], entry[0], entry[1]) : event);
+            }
+
+            @Override
+            public void modified(final int theName) {
+                mySink.accept(new RawWatchEvent(StandardWatchEventKinds.ENTRY_MODIFY,
+                        dir.resolve(myNames.nameOf(theName))));
+            }
+
+            @Override
+            public void renamed(final int theFrom, final int theTo, final boolean theIsDirectory) {
+                Path previous = dir.resolve(myNames.nameOf(theFrom));
+                Path path = dir.resolve(myNames.nameOf(theTo));
+                if (theIsDirectory && myRules.isDirectoryIgnored(myRoot, path)) {
+                    removeDirectory(previous);
+                } else if (theIsDirectory && !myDirectories.containsKey(previous)) {
+                    // It was ignored under its old name
+                    schedule(new Directory(path, new DirectoryListing()), 0);
+                } else if (theIsDirectory) {
+                    moveDirectories(previous, path);
+                }
+                mySink.accept(new RawWatchEvent(RawWatchEvent.ENTRY_RENAME, path, previous));
+            }
+        });
+        theDirectory.myListing = current;
+        long interval = changed ? myMinInterval
+                : Math.min(myMaxInterval, theDirectory.myInterval + theDirectory.myInterval / 2);
+        schedule(theDirectory, interval);
+    }
+
+    /**
+     * Registers a directory and plans its next scan.
+     *
+     * @param theDirectory the directory
+     * @param theInterval time until the scan
+     */
+    private void schedule(final Directory theDirectory, final long theInterval) {
+        theDirectory.myInterval = theInterval;
+        theDirectory.myNextScan = now() + theInterval;
+        myDirectories.put(theDirectory.myPath, theDirectory);
+        mySchedule.add(theDirectory);
+    }
+
+    /**
+     * Forgets a deleted directory and everything below it, reporting the
+     * entries it last contained as deleted.
+     *
+     * @param thePath the deleted directory
+     */
+    private void removeDirectory(final Path thePath) {
+        Directory directory = myDirectories.remove(thePath);
+        if (directory == null) {
+            return;
+        }
+        directory.myRemoved = true;
+        DirectoryListing listing = directory.myListing;
+        for (int i = 0; i < listing.size(); i++) {
+            Path child = thePath.resolve(myNames.nameOf(listing.nameAt(i)));
+            if (listing.isDirectory(i)) {
+                removeDirectory(child);
+            }
+            mySink.accept(new RawWatchEvent(StandardWatchEventKinds.ENTRY_DELETE, child));
+        }
+    }
+
+    /**
+     * Moves a renamed directory and everything below it to its new path.
+     *
+     * @param theFrom the old path
+     * @param theTo the new path
+     */
+    private void moveDirectories(final Path theFrom, final Path theTo) {
+        List<Directory> moved = new ArrayList<>();
+        for (Directory directory : myDirectories.values()) {
+            if (directory.myPath.startsWith(theFrom)) {
+                moved.add(directory);
+            }
+        }
+        for (Directory directory : moved) {
+            myDirectories.remove(directory.myPath);
+            directory.myPath = theTo.resolve(theFrom.relativize(directory.myPath));
+            myDirectories.put(directory.myPath, directory);
+        }
+    }
+
+    /**
+     * Returns a monotonic clock in milliseconds.
+     *
+     * @return the current time
+     */
+    private static long now() {
+        return System.nanoTime() / 1_000_000;
+    }
+}
@@ -3,7 +3,10 @@ package model;
 /* TCSS 360 File watcher project */
 
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * The QueryManager provides methods to query the file event database
@@ -61,7 +64,8 @@ public class QueryManager {
     }
 
     /**
-     * Queries the database for events that occurred in a specific directory path.
+     * Queries the database for events that occurred in a specific directory path
+     * or anywhere below it. Directories that merely share a name prefix are not included.
      *
      * @param theDirectoryPath the path to search under
      * @return list of matching FileEvents
@@ -70,6 +74,161 @@ public class QueryManager {
         return myDBManager.queryByDirectory(theDirectoryPath);
     }
 
+    /**
+     * Queries the database for events matching every criterion of a query,
+     * e.g. extension, event type, file name pattern, directory and time range.
+     * All criteria are evaluated by the database in one statement.
+     *
+     * @param theQuery the search criteria
+     * @return list of matching FileEvents, in time order
+     */
+    public List<FileEvent> query(final EventQuery theQuery) {
+        return myDBManager.query(theQuery);
+    }
+
+    /**
+     * Streams the events matching every criterion of a query. The stream must be closed.
+     *
+     * @param theQuery the search criteria
+     * @return stream of matching FileEvents, in time order
+     */
+    public Stream<FileEvent> stream(final EventQuery theQuery) {
+        return myDBManager.stream(theQuery);
+    }
+
+    /**
+     * Searches for events whose file name matches a pattern, ignoring case.
+     * A pattern with '*' or '?' is a glob over the whole name (e.g. "*.txt"),
+     * anything else matches as a substring (e.g. "report"). The search is
+     * answered from a trigram index instead of scanning every event.
+     *
+     * @param thePattern the file name substring or glob
+     * @return list of matching FileEvents, in time order
+     */
+    public List<FileEvent> searchFileName(final String thePattern) {
+        return myDBManager.query(new EventQuery().withFileName(thePattern));
+    }
+
+    /**
+     * Searches for events whose directory path or file name contains a substring,
+     * ignoring case. The search is answered from trigram indexes.
+     *
+     * @param theSubstring the substring to look for
+     * @return list of matching FileEvents, in time order
+     */
+    public List<FileEvent> searchPath(final String theSubstring) {
+        return myDBManager.query(new EventQuery().withPathContaining(theSubstring));
+    }
+
+    /**
+     * Streams the events of a specific file extension without loading them all
+     * into memory. The stream must be closed, e.g. with try-with-resources.
+     *
+     * @param theExtension the file extension to filter by (e.g. ".txt"), or empty for all
+     * @return stream of matching FileEvents
+     */
+    public Stream<FileEvent> streamByExtension(final String theExtension) {
+        return myDBManager.streamByExtension(theExtension);
+    }
+
+    /**
+     * Streams the events with a specific event type. The stream must be closed.
+     *
+     * @param theType the event type (e.g. CREATED, MODIFIED)
+     * @return stream of matching FileEvents
+     */
+    public Stream<FileEvent> streamByEventType(final EventType theType) {
+        return myDBManager.streamByEventType(theType);
+    }
+
+    /**
+     * Streams the events within a date range. The stream must be closed.
+     *
+     * @param theStart the start datetime (inclusive)
+     * @param theEnd the end datetime (inclusive)
+     * @return stream of matching FileEvents
+     */
+    public Stream<FileEvent> streamByDateRange(final LocalDateTime theStart, final LocalDateTime theEnd) {
+        return myDBManager.streamByDateRange(theStart, theEnd);
+    }
+
+    /**
+     * Streams the events in a directory subtree. The stream must be closed.
+     *
+     * @param theDirectoryPath the path to search under
+     * @return stream of matching FileEvents
+     */
+    public Stream<FileEvent> streamByDirectoryPath(final String theDirectoryPath) {
+        return myDBManager.streamByDirectory(theDirectoryPath);
+    }
+
+    /**
+     * Returns the next page of events of a file extension, in time order.
+     * Pass null as theAfter for the first page, then the last event received.
+     *
+     * @param theExtension the file extension to filter by, or empty for all
+     * @param theAfter the last event of the previous page, or null
+     * @param theLimit maximum number of events in the page
+     * @return the page of FileEvents, empty when there are no more
+     */
+    public List<FileEvent> queryPageByExtension(final String theExtension, final FileEvent theAfter,
+                                                final int theLimit) {
+        return myDBManager.queryPageByExtension(theExtension, theAfter, theLimit);
+    }
+
+    /**
+     * Counts events by time bucket, event type, extension or top-level
+     * directory. Counts come from rollup tables kept up to date on every
+     * write, so this stays fast no matter how many events are stored.
+     *
+     * @param theQuery the criteria and grouping
+     * @return one count per group
+     */
+    public List<EventCount> countEvents(final EventCountQuery theQuery) {
+        return myDBManager.countEvents(theQuery);
+    }
+
+    /**
+     * Counts the events of each type within a time range.
+     *
+     * @param theStart the start datetime (inclusive), or null
+     * @param theEnd the end datetime (inclusive), or null
+     * @return number of events per event type
+     */
+    public Map<EventType, Long> countByEventType(final LocalDateTime theStart, final LocalDateTime theEnd) {
+        Map<EventType, Long> counts = new LinkedHashMap<>();
+        for (EventCount count : countEvents(new EventCountQuery()
+                .withTimeRange(theStart, theEnd).groupByEventType())) {
+            counts.put(count.getMyEventType(), count.getMyCount());
+        }
+        return counts;
+    }
+
+    /**
+     * Counts the events of each file extension within a time range.
+     *
+     * @param theStart the start datetime (inclusive), or null
+     * @param theEnd the end datetime (inclusive), or null
+     * @return number of events per extension
+     */
+    public Map<String, Long> countByExtension(final LocalDateTime theStart, final LocalDateTime theEnd) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (EventCount count : countEvents(new EventCountQuery()
+                .withTimeRange(theStart, theEnd).groupByExtension())) {
+            counts.put(count.getMyExtension(), count.getMyCount());
+        }
+        return counts;
+    }
+
+    /**
+     * Sets how many rows streaming queries fetch from the database at a time.
+     *
+     * @param theFetchSize the JDBC fetch size
+     */
+    public void setFetchSize(final int theFetchSize) {
+        myDBManager.setFetchSize(theFetchSize);
+    }
+
     /**
      * This method callse the clearDatabase method from DatabaseManager
      */
@@ -0,0 +1,247 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+
+/**
+ * A change reported by a WatchBackend, before any filtering. The kind is one
+ * of the StandardWatchEventKinds, or one of the extra kinds below for
+ * backends that can tell more. For OVERFLOW, events were lost and the path
+ * is the directory whose changes are no longer known.
+ *
+ * Backends that know what an entry was can attach its identity: file key,
+ * size and modification time. For a delete this is what the entry was just
+ * before it went away, which can no longer be read from the file system.
+ * The FileWatcher pairs a delete and a create with the same identity into
+ * one rename.
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+public final class RawWatchEvent {
+
+    /** An entry was moved or renamed; the previous path is known. */
+    public static final WatchEvent.Kind<Path> ENTRY_RENAME = new ExtendedKind("ENTRY_RENAME");
+
+    /** A file opened for writing was closed, so its writer is done. */
+    public static final WatchEvent.Kind<Path> ENTRY_CLOSE_WRITE = new ExtendedKind("ENTRY_CLOSE_WRITE");
+
+    /** What happened. */
+    private final WatchEvent.Kind<?> myKind;
+
+    /** Absolute path of the entry that changed. */
+    private final Path myPath;
+
+    /** Path before a rename, or null. */
+    private final Path myPreviousPath;
+
+    /** True if the change happened while the root was not being watched. */
+    private final boolean myReconciled;
+
+    /** File key of the entry, or 0 if unknown. */
+    private final long myFileKey;
+
+    /** Size of the entry, or DirectoryListing.DIRECTORY. */
+    private final long mySize;
+
+    /** Modification time of the entry in milliseconds. */
+    private final long myModified;
+
+    /**
+     * Creates a raw event.
+     *
+     * @param theKind one of the StandardWatchEventKinds or ENTRY_CLOSE_WRITE
+     * @param thePath absolute path of the entry that changed
+     */
+    public RawWatchEvent(final WatchEvent.Kind<?> theKind, final Path thePath) {
+        this(theKind, thePath, null);
+    }
+
+    /**
+     * Creates a raw event that may carry the path before a rename.
+     *
+     * @param theKind the kind of change
+     * @param thePath absolute path of the entry that changed
+     * @param thePreviousPath absolute path before a rename, or null
+     */
+    public RawWatchEvent(final WatchEvent.Kind<?> theKind, final Path thePath, final Path thePreviousPath) {
+        this(theKind, thePath, thePreviousPath, false);
+    }
+
+    /**
+     * Creates a raw event that may describe a change found on start, made
+     * while the root was not being watched.
+     *
+     * @param theKind the kind of change
+     * @param thePath absolute path of the entry that changed
+     * @param thePreviousPath absolute path before a rename, or null
+     * @param theReconciled true if the change was found by comparing with saved state
+     */
+    public RawWatchEvent(final WatchEvent.Kind<?> theKind, final Path thePath, final Path thePreviousPath,
+                         final boolean theReconciled) {
+        this(theKind, thePath, thePreviousPath, theReconciled, 0, 0, 0);
+    }
+
+    /**
+     * Creates a raw event with all its fields.
+     *
+     * @param theKind the kind of change
+     * @param thePath absolute path of the entry that changed
+     * @param thePreviousPath absolute path before a rename, or null
+     * @param theReconciled true if the change was found by comparing with saved state
+     * @param theFileKey file key of the entry, or 0 if unknown
+     * @param theSize size of the entry
+     * @param theModified modification time of the entry
+     */
+    private RawWatchEvent(final WatchEvent.Kind<?> theKind, final Path thePath, final Path thePreviousPath,
+                          final boolean theReconciled, final long theFileKey, final long theSize,
+                          final long theModified) {
+        myKind = theKind;
+        myPath = thePath;
+        myPreviousPath = thePreviousPath;
+        myReconciled = theReconciled;
+        myFileKey = theFileKey;
+        mySize = theSize;
+        myModified = theModified;
+    }
+
+    /**
+     * Returns a copy of this event that carries the identity of its entry.
+     *
+     * @param theFileKey file key of the entry; 0 leaves the identity unknown
+     * @param theSize size of the entry
+     * @param theModified modification time of the entry in milliseconds
+     * @return the event with the identity
+     */
+    public RawWatchEvent withIdentity(final long theFileKey, final long theSize, final long theModified) {
+        return new RawWatchEvent(myKind, myPath, myPreviousPath, myReconciled, theFileKey, theSize,
+                theModified);
+    }
+
+    /**
+     * Returns true if the identity of the entry is known.
+     *
+     * @return whether a file key is attached
+     */
+    public boolean hasIdentity() {
+        return myFileKey != 0;
+    }
+
+    /**
+     * Returns true if another event is about the same file: same file key,
+     * size and modification time, as a rename keeps them.
+     *
+     * @param theOther the other event
+     * @return whether both identities are known and equal
+     */
+    public boolean isSameFile(final RawWatchEvent theOther) {
+        return hasIdentity() && myFileKey == theOther.myFileKey && mySize == theOther.mySize
+                && myModified == theOther.myModified;
+    }
+
+    /**
+     * Gets the size of the entry, when its identity is known.
+     *
+     * @return The size in bytes, or DirectoryListing.DIRECTORY for a directory.
+     */
+    public long getMySize() {
+        return mySize;
+    }
+
+    /**
+     * Gets the modification time of the entry, when its identity is known.
+     *
+     * @return The modification time in milliseconds.
+     */
+    public long getMyModified() {
+        return myModified;
+    }
+
+    /**
+     * Gets the file key of the entry.
+     *
+     * @return The file key, or 0 if unknown.
+     */
+    public long getMyFileKey() {
+        return myFileKey;
+    }
+
+    /**
+     * Gets the kind of change.
+     *
+     * @return A StandardWatchEventKinds constant or one of the extra kinds.
+     */
+    public WatchEvent.Kind<?> getMyKind() {
+        return myKind;
+    }
+
+    /**
+     * Gets the path of the entry that changed.
+     *
+     * @return The absolute path.
+     */
+    public Path getMyPath() {
+        return myPath;
+    }
+
+    /**
+     * Gets the path of a renamed entry before the rename.
+     *
+     * @return The previous absolute path, or null if this is not a rename.
+     */
+    public Path getMyPreviousPath() {
+        return myPreviousPath;
+    }
+
+    /**
+     * Returns true if the change was made while the root was not watched
+     * and was found by comparing the tree with its saved state.
+     *
+     * @return whether this is a reconciled change
+     */
+    public boolean isReconciled() {
+        return myReconciled;
+    }
+
+    /**
+     * Returns true if the backend lost events for the path's directory.
+     *
+     * @return whether this is an overflow notification
+     */
+    public boolean isOverflow() {
+        return myKind == StandardWatchEventKinds.OVERFLOW;
+    }
+
+    /**
+     * Returns a string representation of the raw event.
+     *
+     * @return The kind and path.
+     */
+    @Override
+    public String toString() {
+        return "RawWatchEvent[" + myKind.name() + ", "
+                + (myPreviousPath == null ? "" : myPreviousPath + " -> ") + myPath
+                + (myReconciled ? ", reconciled" : "") + "]";
+    }
+
+    /**
+     * A watch event kind that StandardWatchEventKinds does not define.
+     *
+     * @param name the name of the kind
+     */
+    private record ExtendedKind(String name) implements WatchEvent.Kind<Path> {
+
+        @Override
+        public Class<Path> type() {
+            return Path.class;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
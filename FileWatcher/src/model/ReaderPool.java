@@ -0,0 +1,97 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A small fixed pool of read-only connections used for queries. With the
+ * database in WAL mode, readers work on a snapshot and never block, or get
+ * blocked by, the writer connection.
+ *
+ * A connection is taken with borrow() and must be handed back with release()
+ * when the query is done.
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+class ReaderPool {
+
+    /** Default number of reader connections. */
+    static final int DEFAULT_SIZE = 4;
+
+    /** How long borrow() waits for a free connection. */
+    private static final long BORROW_TIMEOUT_SECONDS = 30;
+
+    /** Connections that are currently free. */
+    private final BlockingQueue<Connection> myIdle;
+
+    /** Every connection in the pool, for closing. */
+    private final List<Connection> myConnections;
+
+    /**
+     * Creates a pool over already opened, read-only connections.
+     *
+     * @param theConnections the connections to pool
+     */
+    ReaderPool(final List<Connection> theConnections) {
+        myConnections = new ArrayList<>(theConnections);
+        myIdle = new ArrayBlockingQueue<>(Math.max(1, theConnections.size()), false, theConnections);
+    }
+
+    /**
+     * Takes a free connection, waiting if all of them are in use.
+     *
+     * @return a read-only connection
+     * @throws SQLException if no connection becomes free in time
+     */
+    Connection borrow() throws SQLException {
+        try {
+            Connection connection = myIdle.poll(BORROW_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (connection == null) {
+                throw new SQLException("No reader connection became free within "
+                        + BORROW_TIMEOUT_SECONDS + " seconds; are query streams being closed?");
+            }
+            return connection;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a reader connection", e);
+        }
+    }
+
+    /**
+     * Returns a borrowed connection to the pool, ending its read transaction
+     * so the next borrower sees the latest data.
+     *
+     * @param theConnection the connection to return
+     */
+    void release(final Connection theConnection) {
+        try {
+            if (!theConnection.getAutoCommit()) {
+                theConnection.rollback();
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        myIdle.offer(theConnection);
+    }
+
+    /**
+     * Closes every connection in the pool.
+     */
+    void close() {
+        for (Connection connection : myConnections) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
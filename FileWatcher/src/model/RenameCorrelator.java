@@ -0,0 +1,165 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+import java.nio.file.StandardWatchEventKinds;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Pairs a delete with a create of the same file into one rename. Backends
+ * that only see a move as a delete in one directory and a create in another
+ * attach the identity of the entry (file key, size and modification time);
+ * a delete with an identity is held for a short window, and a create with
+ * the same identity within that window turns it into an ENTRY_RENAME from
+ * the old path to the new one.
+ *
+ * Events leave in the order they arrived: while a delete is held, the events
+ * after it wait behind it, and a rename takes the place of its delete. A
+ * delete whose window runs out is passed on as it was. The stage is not
+ * thread safe; the FileWatcher's dispatch thread drives it.
+ *
+ * @param <T> context passed along with each event, such as its watched root
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+final class RenameCorrelator<T> implements EventStage {
+
+    /** Default time a delete waits for its create, in milliseconds. */
+    static final long DEFAULT_WINDOW_MILLIS = 100;
+
+    /** How long a delete waits for its create. */
+    private final long myWindow;
+
+    /** Receives the events in order. */
+    private final BiConsumer<T, RawWatchEvent> myDownstream;
+
+    /** Events waiting to be passed on, oldest first. */
+    private final Deque<Pending<T>> myPending;
+
+    /** Held deletes by file key. */
+    private final Map<Long, Pending<T>> myDeletes;
+
+    /**
+     * An event waiting to be passed on.
+     *
+     * @param <T> the type of the context
+     */
+    private static final class Pending<T> {
+
+        /** Context of the event. */
+        private T myContext;
+
+        /** The event, or its rename once paired. */
+        private RawWatchEvent myEvent;
+
+        /** When a held delete is passed on unpaired; 0 for events that are not held. */
+        private long myDeadline;
+
+        /**
+         * Creates a waiting event.
+         *
+         * @param theContext its context
+         * @param theEvent the event
+         * @param theDeadline when it is passed on at the latest, or 0
+         */
+        Pending(final T theContext, final RawWatchEvent theEvent, final long theDeadline) {
+            myContext = theContext;
+            myEvent = theEvent;
+            myDeadline = theDeadline;
+        }
+    }
+
+    /**
+     * Creates a correlator.
+     *
+     * @param theWindowMillis how long a delete waits for its create; 0 pairs nothing
+     * @param theDownstream receives the events
+     */
+    RenameCorrelator(final long theWindowMillis, final BiConsumer<T, RawWatchEvent> theDownstream) {
+        myWindow = theWindowMillis;
+        myDownstream = theDownstream;
+        myPending = new ArrayDeque<>();
+        myDeletes = new HashMap<>();
+    }
+
+    /**
+     * Takes one event. It is passed on right away unless a held delete is
+     * in front of it or it is a delete that may still be paired.
+     *
+     * @param theContext context of the event
+     * @param theEvent the event
+     * @param theNow the current time in milliseconds
+     */
+    void accept(final T theContext, final RawWatchEvent theEvent, final long theNow) {
+        if (myWindow > 0 && theEvent.hasIdentity()) {
+            if (theEvent.getMyKind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                Pending<T> delete = new Pending<>(theContext, theEvent, theNow + myWindow);
+                myDeletes.putIfAbsent(theEvent.getMyFileKey(), delete);
+                myPending.add(delete);
+                return;
+            }
+            Pending<T> delete = myDeletes.get(theEvent.getMyFileKey());
+            if (theEvent.getMyKind() == StandardWatchEventKinds.ENTRY_CREATE && delete != null
+                    && theEvent.isSameFile(delete.myEvent)) {
+                myDeletes.remove(theEvent.getMyFileKey());
+                boolean reconciled = theEvent.isReconciled() && delete.myEvent.isReconciled();
+                delete.myContext = theContext;
+                delete.myEvent = new RawWatchEvent(RawWatchEvent.ENTRY_RENAME, theEvent.getMyPath(),
+                        delete.myEvent.getMyPath(), reconciled);
+                delete.myDeadline = 0;
+                flush(theNow);
+                return;
+            }
+        }
+        if (myPending.isEmpty()) {
+            myDownstream.accept(theContext, theEvent);
+        } else {
+            myPending.add(new Pending<>(theContext, theEvent, 0));
+        }
+    }
+
+    /**
+     * Passes on the waiting events that no longer have to wait.
+     *
+     * @param theNow the current time in milliseconds
+     */
+    @Override
+    public void flush(final long theNow) {
+        while (!myPending.isEmpty()) {
+            Pending<T> head = myPending.peek();
+            if (head.myDeadline > theNow) {
+                return;
+            }
+            myPending.poll();
+            if (head.myDeadline != 0) {
+                myDeletes.remove(head.myEvent.getMyFileKey(), head);
+            }
+            myDownstream.accept(head.myContext, head.myEvent);
+        }
+    }
+
+    /**
+     * Passes on everything that is waiting, unpaired deletes included.
+     */
+    @Override
+    public void flushAll() {
+        flush(Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns how long until the oldest waiting delete must be passed on.
+     *
+     * @param theNow the current time in milliseconds
+     * @return milliseconds to wait, or -1 if nothing is waiting
+     */
+    @Override
+    public long timeToNextFlush(final long theNow) {
+        Pending<T> head = myPending.peek();
+        return head == null ? -1 : Math.max(0, head.myDeadline - theNow);
+    }
+}
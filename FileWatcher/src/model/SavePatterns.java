@@ -0,0 +1,138 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Names of the temporary files editors and tools use to save a file safely:
+ * they write a temporary file and rename it over the real one, or move the
+ * real one aside as a backup first. The FileWatcher uses these patterns to
+ * recognize such a save and report it as one modification of the real file.
+ *
+ * Each pattern is a glob over a file name in which {name} stands for the
+ * name of the real file, which is in the same directory. "{name}~" makes
+ * "notes.txt~" a temporary file of "notes.txt". A pattern without {name},
+ * such as ".goutputstream-*", names temporary files whose real file is only
+ * known once they are renamed onto it. The patterns are tried in order and
+ * compiled together into one regular expression.
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+public final class SavePatterns {
+
+    /** Patterns that recognize nothing. */
+    public static final SavePatterns NONE = new SavePatterns(null, new int[0]);
+
+    /**
+     * Temporary and backup files of common editors and tools: vim, emacs and
+     * gedit backups, generic .tmp and .bak files, JetBrains IDEs' safe write
+     * and GIO's output streams.
+     */
+    public static final List<String> DEFAULT_PATTERNS = List.of(
+            "{name}~", ".{name}.tmp", "{name}.tmp", "{name}.bak", "{name}___jb_tmp___",
+            "{name}___jb_old___", ".goutputstream-*");
+
+    /** Stands for the name of the real file in a pattern. */
+    public static final String NAME = "{name}";
+
+    /** All patterns joined together, or null if there are none. */
+    private final Pattern myPattern;
+
+    /** Index of the group capturing the real name, for each pattern that has one. */
+    private final int[] myNameGroups;
+
+    /**
+     * Creates patterns from their compiled form.
+     *
+     * @param thePattern the joined patterns, or null
+     * @param theNameGroups the groups capturing the real name
+     */
+    private SavePatterns(final Pattern thePattern, final int[] theNameGroups) {
+        myPattern = thePattern;
+        myNameGroups = theNameGroups;
+    }
+
+    /**
+     * Compiles patterns of temporary file names.
+     *
+     * @param thePatterns the patterns
+     * @return the compiled patterns
+     * @throws IllegalArgumentException if a pattern cannot be compiled
+     */
+    public static SavePatterns compile(final List<String> thePatterns) {
+        List<String> regexes = new ArrayList<>();
+        List<Integer> nameGroups = new ArrayList<>();
+        int groups = 0;
+        for (String pattern : thePatterns) {
+            if (pattern == null || pattern.isBlank()) {
+                continue;
+            }
+            int name = pattern.indexOf(NAME);
+            if (name < 0) {
+                regexes.add(FileNameMatcher.globToRegex(pattern));
+                continue;
+            }
+            if (pattern.indexOf(NAME, name + 1) >= 0) {
+                throw new IllegalArgumentException("More than one " + NAME + " in " + pattern);
+            }
+            regexes.add(FileNameMatcher.globToRegex(pattern.substring(0, name)) + "(.+)"
+                    + FileNameMatcher.globToRegex(pattern.substring(name + NAME.length())));
+            nameGroups.add(++groups);
+        }
+        if (regexes.isEmpty()) {
+            return NONE;
+        }
+        int[] indexes = new int[nameGroups.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = nameGroups.get(i);
+        }
+        return new SavePatterns(Pattern.compile("(?:" + String.join(")|(?:", regexes) + ")"), indexes);
+    }
+
+    /**
+     * Returns true if no names are recognized.
+     *
+     * @return whether there are no patterns
+     */
+    public boolean isEmpty() {
+        return myPattern == null;
+    }
+
+    /**
+     * Returns true if a file name is that of a temporary file.
+     *
+     * @param theName the file name, without its directory
+     * @return whether a pattern matches
+     */
+    public boolean isTemporary(final String theName) {
+        return myPattern != null && myPattern.matcher(theName).matches();
+    }
+
+    /**
+     * Returns the name of the real file a temporary file stands in for.
+     *
+     * @param theName the name of the temporary file
+     * @return the real file's name, or null if the name is not temporary or
+     *         does not tell the real file
+     */
+    public String realNameOf(final String theName) {
+        if (myPattern == null) {
+            return null;
+        }
+        Matcher matcher = myPattern.matcher(theName);
+        if (!matcher.matches()) {
+            return null;
+        }
+        for (int group : myNameGroups) {
+            if (matcher.group(group) != null) {
+                return matcher.group(group);
+            }
+        }
+        return null;
+    }
+}
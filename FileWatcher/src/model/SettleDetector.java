@@ -0,0 +1,280 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Holds the creates and modifications of a file until the file has settled,
+ * so a large copy or download is reported once, when it is done, instead of
+ * as a long stream of modifications. A file has settled when its size and
+ * modification time stay the same for one interval. The event passed on
+ * stands for everything held, with the first and last times and the final
+ * size, modification time and file key of the file attached.
+ *
+ * The files are checked on a TimerWheel driven by the dispatch thread, so
+ * any number of files can be waited on without a thread or a sorted queue
+ * each. A completed write (ENTRY_CLOSE_WRITE) means the writer is done, and
+ * ends the wait at once. A delete or a rename passes on what is held for its
+ * paths first and then goes through; so do directories and files that are
+ * gone. A file that keeps changing is still passed on after MAX_INTERVALS
+ * intervals, so a log file that is always being appended to is not held
+ * forever. The stage is not thread safe; the FileWatcher's dispatch thread
+ * drives it.
+ *
+ * @param <T> context passed along with each event, such as its watched root
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+final class SettleDetector<T> implements EventStage {
+
+    /** Most intervals a file is held for, however long it keeps changing. */
+    static final int MAX_INTERVALS = 600;
+
+    /** Number of slots of the timer wheel. */
+    private static final int WHEEL_SLOTS = 256;
+
+    /** Ticks of the timer wheel per interval. */
+    private static final int TICKS_PER_INTERVAL = 8;
+
+    /** How long a file must stay the same to be settled. */
+    private final long myInterval;
+
+    /** Receives the events. */
+    private final EventCoalescer.Sink<T> mySink;
+
+    /** Held files by path. */
+    private final Map<Path, Held<T>> myHeld;
+
+    /** When each held file is checked next; files passed on early are skipped. */
+    private final TimerWheel<Held<T>> myChecks;
+
+    /** Receives size, modification time and file key when a file is read. */
+    private final long[] myEntry;
+
+    /**
+     * The events held for one file, merged so far.
+     *
+     * @param <T> the type of the context
+     */
+    private static final class Held<T> {
+
+        /** The file. */
+        private final Path myPath;
+
+        /** Context of the last event. */
+        private T myContext;
+
+        /** The kind of the first event, create or modify. */
+        private final WatchEvent.Kind<?> myKind;
+
+        /** True if all events were reconciled. */
+        private boolean myReconciled;
+
+        /** Number of events merged. */
+        private int myCount;
+
+        /** Wall clock time of the first event. */
+        private final long myFirst;
+
+        /** Wall clock time of the last event. */
+        private long myLast;
+
+        /** Size, modification time and file key at the last check. */
+        private final long[] mySeen = new long[3];
+
+        /** Checks left before the file is passed on anyway. */
+        private int myChecksLeft = MAX_INTERVALS;
+
+        /**
+         * Starts holding an event.
+         *
+         * @param thePath the file
+         * @param theContext context of the event
+         * @param theEvent the event
+         * @param theCount how many events it stands for
+         * @param theFirst wall clock time of the first of them
+         * @param theLast wall clock time of the last of them
+         */
+        Held(final Path thePath, final T theContext, final RawWatchEvent theEvent, final int theCount,
+             final long theFirst, final long theLast) {
+            myPath = thePath;
+            myContext = theContext;
+            myKind = theEvent.getMyKind();
+            myReconciled = theEvent.isReconciled();
+            myCount = theCount;
+            myFirst = theFirst;
+            myLast = theLast;
+        }
+    }
+
+    /**
+     * Creates a detector.
+     *
+     * @param theIntervalMillis how long a file must stay the same; 0 holds nothing
+     * @param theSink receives the events
+     * @param theNow the current time in milliseconds
+     */
+    SettleDetector(final long theIntervalMillis, final EventCoalescer.Sink<T> theSink, final long theNow) {
+        myInterval = theIntervalMillis;
+        mySink = theSink;
+        myHeld = new HashMap<>();
+        myChecks = new TimerWheel<>(theIntervalMillis / TICKS_PER_INTERVAL, WHEEL_SLOTS, theNow);
+        myEntry = new long[3];
+    }
+
+    /**
+     * Takes one event, possibly standing for several.
+     *
+     * @param theContext context of the event
+     * @param theEvent the event
+     * @param theCount how many events it stands for
+     * @param theFirst wall clock time of the first of them in milliseconds
+     * @param theLast wall clock time of the last of them in milliseconds
+     * @param theNow the current time in milliseconds, for the checks
+     */
+    void accept(final T theContext, final RawWatchEvent theEvent, final int theCount, final long theFirst,
+                final long theLast, final long theNow) {
+        if (myInterval <= 0) {
+            mySink.accept(theContext, theEvent, theCount, theFirst, theLast);
+            return;
+        }
+        if (theEvent.isOverflow()) {
+            flushAll();
+            mySink.accept(theContext, theEvent, theCount, theFirst, theLast);
+            return;
+        }
+        WatchEvent.Kind<?> kind = theEvent.getMyKind();
+        Path path = theEvent.getMyPath();
+        Held<T> held = myHeld.get(path);
+        boolean writes = kind == StandardWatchEventKinds.ENTRY_CREATE
+                || kind == StandardWatchEventKinds.ENTRY_MODIFY || kind == RawWatchEvent.ENTRY_CLOSE_WRITE;
+        if (held != null && writes) {
+            held.myContext = theContext;
+            held.myReconciled &= theEvent.isReconciled();
+            held.myCount += theCount;
+            held.myLast = Math.max(held.myLast, theLast);
+            if (kind == RawWatchEvent.ENTRY_CLOSE_WRITE) {
+                // The writer is done
+                release(path);
+            }
+            return;
+        }
+        release(path);
+        if (theEvent.getMyPreviousPath() != null) {
+            release(theEvent.getMyPreviousPath());
+        }
+        if (kind == RawWatchEvent.ENTRY_CLOSE_WRITE || !writes || !read(path)) {
+            mySink.accept(theContext, theEvent, theCount, theFirst, theLast);
+            return;
+        }
+        held = new Held<>(path, theContext, theEvent, theCount, theFirst, theLast);
+        System.arraycopy(myEntry, 0, held.mySeen, 0, 3);
+        myHeld.put(path, held);
+        myChecks.schedule(held, theNow + myInterval);
+    }
+
+    /**
+     * Checks the held files that are due and passes on those that settled.
+     *
+     * @param theNow the current time in milliseconds
+     */
+    @Override
+    public void flush(final long theNow) {
+        myChecks.advance(theNow, held -> check(held, theNow));
+    }
+
+    /**
+     * Passes on every held file as it is now.
+     */
+    @Override
+    public void flushAll() {
+        for (Path path : myHeld.keySet().toArray(new Path[0])) {
+            release(path);
+        }
+    }
+
+    /**
+     * Returns how long until the next held file is checked.
+     *
+     * @param theNow the current time in milliseconds
+     * @return milliseconds to wait, or -1 if nothing is held
+     */
+    @Override
+    public long timeToNextFlush(final long theNow) {
+        return myHeld.isEmpty() ? -1 : myChecks.timeToNext(theNow);
+    }
+
+    /**
+     * Compares a held file with what it was at the last check, and passes
+     * it on if it stayed the same, is gone or was held long enough.
+     *
+     * @param theHeld the file
+     * @param theNow the current time in milliseconds
+     */
+    private void check(final Held<T> theHeld, final long theNow) {
+        if (myHeld.get(theHeld.myPath) != theHeld) {
+            return;
+        }
+        if (!read(theHeld.myPath)) {
+            myHeld.remove(theHeld.myPath);
+            pass(theHeld, false);
+            return;
+        }
+        boolean settled = myEntry[0] == theHeld.mySeen[0] && myEntry[1] == theHeld.mySeen[1]
+                && myEntry[2] == theHeld.mySeen[2];
+        if (settled || --theHeld.myChecksLeft <= 0) {
+            myHeld.remove(theHeld.myPath);
+            pass(theHeld, true);
+            return;
+        }
+        System.arraycopy(myEntry, 0, theHeld.mySeen, 0, 3);
+        myChecks.schedule(theHeld, theNow + myInterval);
+    }
+
+    /**
+     * Passes on the events held for a path, if any, as the file is now.
+     *
+     * @param thePath the path
+     */
+    private void release(final Path thePath) {
+        Held<T> held = myHeld.remove(thePath);
+        if (held != null) {
+            pass(held, read(thePath));
+        }
+    }
+
+    /**
+     * Passes on the events of a file that is no longer held.
+     *
+     * @param theHeld the file
+     * @param theRead true if myEntry holds what the file is now
+     */
+    private void pass(final Held<T> theHeld, final boolean theRead) {
+        RawWatchEvent event = new RawWatchEvent(theHeld.myKind, theHeld.myPath, null, theHeld.myReconciled);
+        if (theRead) {
+            event = event.withIdentity(myEntry[2], myEntry[0], myEntry[1]);
+        }
+        mySink.accept(theHeld.myContext, event, theHeld.myCount, theHeld.myFirst, theHeld.myLast);
+    }
+
+    /**
+     * Reads the size, modification time and file key of a regular file into myEntry.
+     *
+     * @param thePath the file
+     * @return false if it is gone, is a directory or cannot be read
+     */
+    private boolean read(final Path thePath) {
+        try {
+            return DirectoryListing.read(thePath, myEntry) && myEntry[0] != DirectoryListing.DIRECTORY;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
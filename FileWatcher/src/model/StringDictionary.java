@@ -0,0 +1,118 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Interns strings into a dictionary table and hands out their integer ids.
+ * Used on the write side so that events store small ids instead of repeating
+ * directory paths and extensions in every row.
+ *
+ * Ids are cached in memory (least recently used entries are evicted once the
+ * cache is full), so the database is only touched the first time a string is
+ * seen. The cache must be cleared when a transaction that interned new
+ * strings is rolled back.
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+class StringDictionary {
+
+    /** Default number of ids kept in memory. */
+    static final int DEFAULT_CAPACITY = 100_000;
+
+    /** Looks up the id of a string. */
+    private final PreparedStatement mySelect;
+
+    /** Adds a new string to the dictionary table. */
+    private final PreparedStatement myInsert;
+
+    /** Cached ids, in access order. */
+    private final Map<String, Long> myCache;
+
+    /**
+     * Creates a dictionary over the given table.
+     *
+     * @param theConnection the connection to intern strings on
+     * @param theTable the dictionary table, with columns id and theColumn
+     * @param theColumn the unique text column holding the strings
+     * @param theCapacity maximum number of cached ids
+     * @throws SQLException if the statements cannot be prepared
+     */
+    StringDictionary(final Connection theConnection, final String theTable,
+                     final String theColumn, final int theCapacity) throws SQLException {
+        mySelect = theConnection.prepareStatement(
+                "SELECT id FROM " + theTable + " WHERE " + theColumn + " = ?;");
+        myInsert = theConnection.prepareStatement(
+                "INSERT INTO " + theTable + " (" + theColumn + ") VALUES (?);");
+        myCache = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Long> theEldest) {
+                return size() > theCapacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the id of a string, adding it to the dictionary if needed.
+     *
+     * @param theValue the string to intern, may be null
+     * @return the id, or null if theValue is null
+     * @throws SQLException if the dictionary table cannot be read or written
+     */
+    Long idOf(final String theValue) throws SQLException {
+        if (theValue == null) {
+            return null;
+        }
+        Long id = myCache.get(theValue);
+        if (id == null) {
+            id = lookup(theValue);
+            if (id == null) {
+                myInsert.setString(1, theValue);
+                myInsert.executeUpdate();
+                id = lookup(theValue);
+            }
+            myCache.put(theValue, id);
+        }
+        return id;
+    }
+
+    /**
+     * Reads the id of a string from the dictionary table.
+     *
+     * @param theValue the string to look up
+     * @return the id, or null if the string is not in the table
+     * @throws SQLException if the table cannot be read
+     */
+    private Long lookup(final String theValue) throws SQLException {
+        mySelect.setString(1, theValue);
+        try (ResultSet rs = mySelect.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : null;
+        }
+    }
+
+    /**
+     * Forgets all cached ids. Must be called after a rollback.
+     */
+    void clear() {
+        myCache.clear();
+    }
+
+    /**
+     * Closes the prepared statements.
+     */
+    void close() {
+        try {
+            mySelect.close();
+            myInsert.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
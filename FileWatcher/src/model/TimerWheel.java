@@ -0,0 +1,146 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A hashed timer wheel: timers are kept in a ring of slots, one per tick, so
+ * scheduling is constant time and advancing only looks at the slots of the
+ * ticks that passed. A timer further away than one turn of the wheel stays
+ * in its slot until the turn in which it is due. Many timers can be driven
+ * by one thread this way, without a thread or a sorted queue per timer.
+ *
+ * The wheel has no thread of its own; its owner calls advance() when
+ * timeToNext() says a timer may be due. It is not thread safe.
+ *
+ * @param <E> the type of the elements the timers fire for
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+final class TimerWheel<E> {
+
+    /** Length of one tick in milliseconds. */
+    private final long myTick;
+
+    /** The timers of each slot. */
+    private final List<List<Timer<E>>> mySlots;
+
+    /** The tick advanced to last. */
+    private long myCurrent;
+
+    /** Number of timers on the wheel. */
+    private int mySize;
+
+    /**
+     * A scheduled timer.
+     *
+     * @param element what the timer fires for
+     * @param due when it fires, in milliseconds
+     * @param <E> the type of the element
+     */
+    private record Timer<E>(E element, long due) {
+    }
+
+    /**
+     * Creates an empty wheel.
+     *
+     * @param theTickMillis length of one tick; timers fire up to one tick late
+     * @param theSlots number of slots, so one turn is theSlots ticks
+     * @param theNow the current time in milliseconds
+     */
+    TimerWheel(final long theTickMillis, final int theSlots, final long theNow) {
+        myTick = Math.max(1, theTickMillis);
+        mySlots = new ArrayList<>(theSlots);
+        for (int i = 0; i < theSlots; i++) {
+            mySlots.add(new ArrayList<>());
+        }
+        myCurrent = theNow / myTick;
+    }
+
+    /**
+     * Schedules a timer. A time that has passed fires on the next advance.
+     *
+     * @param theElement what the timer fires for
+     * @param theDue when it fires, in milliseconds
+     */
+    void schedule(final E theElement, final long theDue) {
+        long tick = Math.max(theDue / myTick, myCurrent);
+        slot(tick).add(new Timer<>(theElement, theDue));
+        mySize++;
+    }
+
+    /**
+     * Returns the number of timers on the wheel.
+     *
+     * @return the timer count
+     */
+    int size() {
+        return mySize;
+    }
+
+    /**
+     * Fires the timers that are due, in the order of their slots.
+     *
+     * @param theNow the current time in milliseconds
+     * @param theExpired receives the element of each timer that fires; it
+     *                   may schedule new timers
+     */
+    void advance(final long theNow, final Consumer<E> theExpired) {
+        long target = theNow / myTick;
+        // A long pause goes around the wheel once, not once per tick
+        long first = Math.max(myCurrent, target - mySlots.size() + 1);
+        myCurrent = target;
+        List<E> expired = new ArrayList<>();
+        for (long tick = first; tick <= target; tick++) {
+            List<Timer<E>> slot = slot(tick);
+            for (int i = slot.size() - 1; i >= 0; i--) {
+                if (slot.get(i).due() <= theNow) {
+                    expired.add(slot.get(i).element());
+                    slot.set(i, slot.get(slot.size() - 1));
+                    slot.remove(slot.size() - 1);
+                    mySize--;
+                }
+            }
+        }
+        expired.forEach(theExpired);
+    }
+
+    /**
+     * Returns how long until the next timer may fire.
+     *
+     * @param theNow the current time in milliseconds
+     * @return milliseconds to wait, or -1 if the wheel is empty
+     */
+    long timeToNext(final long theNow) {
+        if (mySize == 0) {
+            return -1;
+        }
+        for (long tick = myCurrent; tick < myCurrent + mySlots.size(); tick++) {
+            long next = Long.MAX_VALUE;
+            for (Timer<E> timer : slot(tick)) {
+                if (timer.due() < (tick + 1) * myTick) {
+                    next = Math.min(next, timer.due());
+                }
+            }
+            if (next != Long.MAX_VALUE) {
+                return Math.max(0, next - theNow);
+            }
+        }
+        // Everything is due in a later turn
+        return Math.max(0, (myCurrent + mySlots.size()) * myTick - theNow);
+    }
+
+    /**
+     * Returns the slot of a tick.
+     *
+     * @param theTick the tick
+     * @return its timers
+     */
+    private List<Timer<E>> slot(final long theTick) {
+        return mySlots.get((int) Math.floorMod(theTick, (long) mySlots.size()));
+    }
+}
@@ -0,0 +1,54 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * An engine that reports raw changes below one watched root directory.
+ * The FileWatcher turns these notifications into FileEvents, filters them
+ * and passes them to the model, so engines can be swapped per root without
+ * changing anything else.
+ *
+ * A backend watches exactly one root, including every directory below it
+ * and directories created later. Notifications may be delivered on any
+ * thread the backend chooses.
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+public interface WatchBackend extends AutoCloseable {
+
+    /**
+     * Starts watching a root directory and everything below it.
+     * Returns once the root is being watched.
+     *
+     * @param theRoot the directory to watch
+     * @param theSink receives every change, in the order the backend saw them
+     * @throws IOException if the root cannot be watched
+     */
+    default void start(Path theRoot, Consumer<RawWatchEvent> theSink) throws IOException {
+        start(theRoot, IgnoreRules.NONE, theSink);
+    }
+
+    /**
+     * Starts watching a root directory and everything below it except the
+     * directories the rules ignore, which are never registered or scanned.
+     * Returns once the root is being watched.
+     *
+     * @param theRoot the directory to watch
+     * @param theRules the entries to leave out
+     * @param theSink receives every change, in the order the backend saw them
+     * @throws IOException if the root cannot be watched
+     */
+    void start(Path theRoot, IgnoreRules theRules, Consumer<RawWatchEvent> theSink) throws IOException;
+
+    /**
+     * Stops watching and releases the backend's resources. No notifications
+     * are delivered after this returns.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,55 @@
+package model;
+
+/* TCSS 360 File watcher project */
+
+/**
+ * The built-in watch engines a root can be watched with.
+ *
+ * @author Van Bao Han Quach
+ * @version October 17, 2026
+ */
+public enum WatchBackendType {
+
+    /** The JDK WatchService of the default file system, starting from a saved manifest. */
+    JDK,
+
+    /**
+     * Periodic scans compared with the previous scan. Works on any file
+     * system, including network shares that send no notifications.
+     */
+    POLLING,
+
+    /**
+     * The operating system's notification API used directly: inotify on
+     * Linux, which also reports renames and completed writes. Platforms
+     * without a direct binding use the JDK WatchService instead.
+     */
+    NATIVE;
+
+    /**
+     * Creates a new, unstarted backend of this type.
+     *
+     * @return the backend
+     */
+    public WatchBackend create() {
+        return create(false);
+    }
+
+    /**
+     * Creates a new, unstarted backend of this type that may also report the
+     * changes made since the root was last watched. Only the JDK engine
+     * saves the state needed for that; the others ignore the flag.
+     *
+     * @param theCatchUp true to report changes made while not watching
+     * @return the backend
+     */
+    public WatchBackend create(final boolean theCatchUp) {
+        return switch (this) {
+            case JDK -> new JdkWatchBackend(JdkWatchBackend.DEFAULT_MANIFEST_DIRECTORY, theCatchUp);
+            case POLLING -> new PollingWatchBackend();
+            case NATIVE -> InotifyWatchBackend.isSupported()
+                    ? new InotifyWatchBackend()
+                    : new JdkWatchBackend(JdkWatchBackend.DEFAULT_MANIFEST_DIRECTORY, theCatchUp);
+        };
+    }
+}
@@ -14,16 +14,30 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.StandardWatchEventKinds;
 import java.nio.file.WatchEvent;
+import java.nio.file.attribute.FileTime;
 import java.sql.Connection;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 /**
  * JUnit tests for the FileEvent class and EventType enum.
@@ -99,11 +113,12 @@ public class TestModel {
     @Test
     public void testEventTypeEnumValues() {
         EventType[] values = EventType.values();
-        assertEquals(4, values.length);
+        assertEquals(5, values.length);
         assertEquals(EventType.ENTRY_CREATE, values[0]);
         assertEquals(EventType.ENTRY_MODIFY, values[1]);
         assertEquals(EventType.ENTRY_DELETE, values[2]);
         assertEquals(EventType.ENTRY_RENAME, values[3]);
+        assertEquals(EventType.ENTRY_WRITE_COMPLETE, values[4]);
     }
 
 
@@ -149,6 +164,18 @@ public class TestModel {
         assertTrue(results.get(0).getMyPath().startsWith("/home/user"));
     }
 
+    @Test
+    public void testQueryByDirectory_ExcludesSiblingPrefix() {
+        db.saveToDatabase(new FileEvent("a.txt", ".txt", "/data/a/a.txt", eventType, timeStamp));
+        db.saveToDatabase(new FileEvent("b.txt", ".txt", "/data/a/deep/b.txt", eventType, timeStamp));
+        db.saveToDatabase(new FileEvent("c.txt", ".txt", "/data/ab/c.txt", eventType, timeStamp));
+        db.saveToDatabase(new FileEvent("a", "", "/data/a", EventType.ENTRY_DELETE, timeStamp));
+
+        List<FileEvent> results = db.queryByDirectory("/data/a/");
+        assertEquals(3, results.size());
+        assertTrue(results.stream().noneMatch(e -> e.getMyPath().startsWith("/data/ab")));
+    }
+
     @Test
     public void testQueryByDateRange() {
         db.saveToDatabase(fileEvent);
@@ -159,6 +186,166 @@ public class TestModel {
         assertEquals(fileEvent.getMyTimeStamp(), results.get(0).getMyTimeStamp());
     }
 
+    @Test
+    public void testQueryByDateRange_InclusiveBounds() {
+        db.saveToDatabase(fileEvent);
+        List<FileEvent> results = db.queryByDateRange(timeStamp, timeStamp);
+        assertEquals(1, results.size());
+        assertTrue(db.queryByDateRange(timeStamp.plusSeconds(1), timeStamp.plusDays(1)).isEmpty());
+    }
+
+    @Test
+    public void testDictionaryEncodedPathsRoundTrip() {
+        FileEvent inDirectory = new FileEvent("Main.java", ".java", "/home/user/src/Main.java",
+                EventType.ENTRY_MODIFY, timeStamp);
+        db.saveToDatabase(fileEvent);
+        db.saveToDatabase(inDirectory);
+
+        List<FileEvent> results = db.queryByExtension(".java");
+        assertEquals(1, results.size());
+        assertEquals("/home/user/src/Main.java", results.get(0).getMyPath());
+        assertEquals(filePath, db.queryByExtension(".txt").get(0).getMyPath());
+    }
+
+    @Test
+    public void testStreamByExtension() {
+        db.saveToDatabase(fileEvent);
+        db.saveToDatabase(new FileEvent("Main", ".java", "/src/Main.java", eventType, timeStamp));
+        try (Stream<FileEvent> events = db.streamByExtension(".txt")) {
+            assertEquals(List.of(fileName), events.map(FileEvent::getMyFileName).toList());
+        }
+    }
+
+    @Test
+    public void testKeysetPagination() {
+        for (int i = 0; i < 5; i++) {
+            db.saveToDatabase(new FileEvent("file" + i, ".log", "/logs/file" + i, eventType,
+                    timeStamp.plusSeconds(i % 2)));
+        }
+        List<FileEvent> first = db.queryPageByExtension(".log", null, 2);
+        List<FileEvent> second = db.queryPageByExtension(".log", first.get(1), 2);
+        List<FileEvent> last = db.queryPageByExtension(".log", second.get(1), 2);
+
+        assertEquals(List.of("file0", "file2"), first.stream().map(FileEvent::getMyFileName).toList());
+        assertEquals(List.of("file4", "file1"), second.stream().map(FileEvent::getMyFileName).toList());
+        assertEquals(1, last.size());
+        assertTrue(db.queryPageByExtension(".log", last.get(0), 2).isEmpty());
+    }
+
+    @Test
+    public void testCombinedEventQuery() {
+        db.saveToDatabase(new FileEvent("report.txt", ".txt", "/data/a/report.txt", EventType.ENTRY_CREATE, timeStamp));
+        db.saveToDatabase(new FileEvent("Report_2.txt", ".txt", "/data/a/Report_2.txt", EventType.ENTRY_DELETE, timeStamp));
+        db.saveToDatabase(new FileEvent("report.log", ".log", "/data/a/report.log", EventType.ENTRY_DELETE, timeStamp));
+        db.saveToDatabase(new FileEvent("report.txt", ".txt", "/data/ab/report.txt", EventType.ENTRY_DELETE, timeStamp));
+
+        List<FileEvent> results = db.query(new EventQuery()
+                .withExtension(".txt")
+                .withEventType(EventType.ENTRY_DELETE)
+                .withFileName("REPORT")
+                .withDirectory("/data/a")
+                .withTimeRange(timeStamp.minusHours(1), timeStamp));
+        assertEquals(1, results.size());
+        assertEquals("/data/a/Report_2.txt", results.get(0).getMyPath());
+
+        assertEquals(3, db.query(new EventQuery().withFileName("report*.txt")).size());
+        assertEquals(0, db.query(new EventQuery().withFileName("report%")).size());
+    }
+
+    @Test
+    public void testFileNameAndPathSearch() {
+        db.saveToDatabase(new FileEvent("QuarterlyReport.pdf", ".pdf", "/docs/finance/QuarterlyReport.pdf", eventType, timeStamp));
+        db.saveToDatabase(new FileEvent("Main.java", ".java", "/src/app/Main.java", eventType, timeStamp));
+        QueryManager queryManager = new QueryManager();
+
+        assertEquals(1, queryManager.searchFileName("report").size());
+        assertEquals(1, queryManager.searchFileName("*.JAVA").size());
+        assertEquals(0, queryManager.searchFileName("*.jav").size());
+        assertEquals("Main.java", queryManager.searchPath("rc/ap").get(0).getMyFileName());
+        assertEquals(1, queryManager.searchPath("finance").size());
+    }
+
+    @Test
+    public void testSchemaIsCurrentVersion() {
+        assertEquals(9, db.getSchemaVersion());
+    }
+
+    @Test
+    public void testRollupCounts() {
+        LocalDateTime hour = LocalDateTime.of(2026, 3, 2, 9, 0);
+        db.saveToDatabase(new FileEvent("a.txt", ".txt", "/docs/a/a.txt", EventType.ENTRY_DELETE, hour.plusMinutes(5)));
+        db.saveToDatabase(new FileEvent("b.txt", ".txt", "/docs/b.txt", EventType.ENTRY_DELETE, hour.plusMinutes(50)));
+        db.saveToDatabase(new FileEvent("c.log", ".log", "/var/c.log", EventType.ENTRY_CREATE, hour.plusHours(1)));
+        QueryManager queryManager = new QueryManager();
+
+        List<EventCount> deletes = queryManager.countEvents(new EventCountQuery()
+                .withEventType(EventType.ENTRY_DELETE)
+                .groupByTime(EventCountQuery.Resolution.HOUR).groupByExtension().groupByDirectory());
+        assertEquals(1, deletes.size());
+        assertEquals(hour, deletes.get(0).getMyBucket());
+        assertEquals("/docs/", deletes.get(0).getMyDirectory());
+        assertEquals(2, deletes.get(0).getMyCount());
+
+        assertEquals(2, queryManager.countEvents(new EventCountQuery()
+                .groupByTime(EventCountQuery.Resolution.MINUTE).withExtension(".txt")).size());
+        assertEquals(Long.valueOf(1), queryManager.countByExtension(hour.plusHours(1), null).get(".log"));
+        assertNull(queryManager.countByEventType(hour.plusHours(1), null).get(EventType.ENTRY_DELETE));
+
+        db.clearDatabase();
+        assertTrue(queryManager.countEvents(new EventCountQuery()).isEmpty());
+    }
+
+    @Test
+    public void testRetentionDropsOldDays() {
+        LocalDateTime now = LocalDateTime.now();
+        db.saveToDatabase(new FileEvent("old", ".txt", filePath, eventType, now.minusDays(10)));
+        db.saveToDatabase(new FileEvent("new", ".txt", filePath, eventType, now));
+        assertEquals(1, db.queryByDateRange(now.minusDays(11), now.minusDays(9)).size());
+        try {
+            db.setRetentionDays(3);
+            assertEquals(3, db.getRetentionDays());
+            List<FileEvent> results = db.queryAllEvents();
+            assertEquals(1, results.size());
+            assertEquals("new", results.get(0).getMyFileName());
+        } finally {
+            db.setRetentionDays(0);
+        }
+    }
+
+    @Test
+    public void testEventWriterBatchesSubmittedEvents() {
+        EventWriter writer = db.getEventWriter();
+        long flushesBefore = writer.getFlushCount();
+        for (int i = 0; i < 3; i++) {
+            writer.submit(new FileEvent("file" + i, ".txt", filePath, eventType, timeStamp));
+        }
+        writer.flush();
+
+        assertEquals(3, db.queryAllEvents().size());
+        assertEquals(0, writer.getPendingCount());
+        assertTrue(writer.getFlushCount() > flushesBefore);
+        assertTrue(writer.getLastBatchSize() >= 1);
+    }
+
+    @Test
+    public void testSubmitQueuesEventsWithoutWaiting() {
+        assertDoesNotThrow(() -> db.submit(null));
+        db.submit(fileEvent);
+        db.getEventWriter().flush();
+
+        assertEquals(1, db.queryAllEvents().size());
+    }
+
+    @Test
+    public void testOpenQueryDoesNotBlockWriter() {
+        db.saveToDatabase(fileEvent);
+        try (Stream<FileEvent> open = db.streamAllEvents()) {
+            assertEquals(1, open.limit(1).count());
+            db.saveToDatabase(new FileEvent("second", ".txt", filePath, eventType, timeStamp));
+            assertEquals(2, db.queryAllEvents().size());
+        }
+    }
+
 
     // Tests for FileSystemModel
 
@@ -269,6 +456,533 @@ public class TestModel {
         assertTrue(true);
     }
 
+    @Test
+    public void testJdkBackendRecoversFromOverflow(@TempDir Path tempDir)
+            throws IOException, InterruptedException {
+        Set<Path> created = ConcurrentHashMap.newKeySet();
+        JdkWatchBackend backend = new JdkWatchBackend();
+        backend.start(tempDir, e -> {
+            if (created.isEmpty()) {
+                try {
+                    // A slow consumer, so the key fills up and overflows
+                    Thread.sleep(500);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (e.getMyKind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                created.add(e.getMyPath());
+            }
+        });
+
+        Set<Path> expected = new HashSet<>();
+        for (int i = 0; i < 3000; i++) {
+            expected.add(Files.createFile(tempDir.resolve("burst" + i + ".txt")));
+        }
+        Thread.sleep(1500);
+        backend.close();
+
+        assertEquals(expected, created);
+    }
+
+    @Test
+    public void testJdkBackendRegistersTreeInParallel(@TempDir Path tempDir)
+            throws IOException, InterruptedException {
+        Path deepest = tempDir;
+        for (int i = 0; i < 20; i++) {
+            for (int j = 0; j < 10; j++) {
+                Files.createDirectories(deepest.resolve("sibling" + j));
+            }
+            deepest = deepest.resolve("sibling0");
+        }
+        List<RawWatchEvent> events = new CopyOnWriteArrayList<>();
+        JdkWatchBackend backend = new JdkWatchBackend();
+        backend.start(tempDir, events::add);
+        for (int i = 0; i < 100 && backend.getTimeToFullCoverage() < 0; i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(backend.getTimeToFullCoverage() >= 0);
+        assertEquals(201, backend.getDirectoryCount());
+        assertEquals(-1, backend.getTimeToFirstEvent());
+
+        Path file = Files.createFile(deepest.resolve("deep.txt"));
+        Thread.sleep(300);
+        backend.close();
+
+        assertEquals(file, events.get(0).getMyPath());
+        assertTrue(backend.getTimeToFirstEvent() >= backend.getTimeToFullCoverage());
+    }
+
+    @Test
+    public void testJdkBackendDeregistersRemovedSubtrees(@TempDir Path tempDir)
+            throws IOException, InterruptedException {
+        Path root = Files.createDirectory(tempDir.resolve("tree"));
+        Path outside = Files.createDirectory(tempDir.resolve("outside"));
+        Path deleted = Files.createDirectories(root.resolve("deleted").resolve("b").resolve("c"));
+        Path moved = Files.createDirectories(root.resolve("moved").resolve("b").resolve("c"));
+        JdkWatchBackend backend = new JdkWatchBackend();
+        backend.start(root, e -> { });
+        for (int i = 0; i < 100 && backend.getTimeToFullCoverage() < 0; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(7, backend.getDirectoryCount());
+
+        for (Path dir = deleted; !dir.equals(root); dir = dir.getParent()) {
+            Files.delete(dir);
+        }
+        Path away = Files.move(root.resolve("moved"), outside.resolve("moved"));
+        for (int i = 0; i < 100 && backend.getDirectoryCount() > 1; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(1, backend.getDirectoryCount());
+
+        Files.move(away, root.resolve("back"));
+        for (int i = 0; i < 100 && backend.getDirectoryCount() < 4; i++) {
+            Thread.sleep(20);
+        }
+        backend.close();
+        assertEquals(4, backend.getDirectoryCount());
+    }
+
+    @Test
+    public void testJdkBackendWarmStartListsOnlyChangedDirectories(@TempDir Path tempDir)
+            throws IOException, InterruptedException {
+        Path root = Files.createDirectory(tempDir.resolve("tree"));
+        Path manifests = tempDir.resolve("manifests");
+        List<Path> directories = new ArrayList<>(List.of(root));
+        for (int i = 0; i < 5; i++) {
+            Path dir = Files.createDirectories(root.resolve("a" + i).resolve("b"));
+            directories.add(dir);
+            directories.add(dir.getParent());
+        }
+        // Old enough that their timestamps are trusted
+        for (Path dir : directories) {
+            Files.setLastModifiedTime(dir, FileTime.fromMillis(
+                    System.currentTimeMillis() - 60_000));
+        }
+
+        JdkWatchBackend first = new JdkWatchBackend(manifests);
+        first.start(root, e -> { });
+        for (int i = 0; i < 100 && first.getTimeToFullCoverage() < 0; i++) {
+            Thread.sleep(20);
+        }
+        first.close();
+        assertEquals(11, first.getDirectoriesListed());
+
+        Files.createDirectory(root.resolve("a3").resolve("new"));
+        JdkWatchBackend second = new JdkWatchBackend(manifests);
+        second.start(root, e -> { });
+        for (int i = 0; i < 100 && second.getTimeToFullCoverage() < 0; i++) {
+            Thread.sleep(20);
+        }
+        second.close();
+
+        // The root is always listed; of the rest only a3 changed, plus its new child
+        assertEquals(12, second.getDirectoryCount());
+        assertEquals(3, second.getDirectoriesListed());
+    }
+
+    @Test
+    public void testJdkBackendCatchUpReportsOfflineChanges(@TempDir Path tempDir)
+            throws IOException, InterruptedException {
+        Path root = Files.createDirectory(tempDir.resolve("tree"));
+        Path manifests = tempDir.resolve("manifests");
+        Path sub = Files.createDirectory(root.resolve("sub"));
+        Path kept = Files.writeString(sub.resolve("kept.txt"), "a");
+        Path changed = Files.writeString(sub.resolve("changed.txt"), "a");
+        Path removed = Files.writeString(root.resolve("removed.txt"), "a");
+
+        JdkWatchBackend first = new JdkWatchBackend(manifests, true);
+        first.start(root, e -> { });
+        for (int i = 0; i < 100 && first.getTimeToFullCoverage() < 0; i++) {
+            Thread.sleep(20);
+        }
+        first.close();
+
+        Files.writeString(changed, "changed while stopped");
+        Files.delete(removed);
+        Path created = Files.writeString(sub.resolve("created.txt"), "a");
+
+        List<RawWatchEvent> events = new CopyOnWriteArrayList<>();
+        JdkWatchBackend second = new JdkWatchBackend(manifests, true);
+        second.start(root, events::add);
+        for (int i = 0; i < 100 && second.getTimeToFullCoverage() < 0; i++) {
+            Thread.sleep(20);
+        }
+        second.close();
+
+        Map<Path, WatchEvent.Kind<?>> reconciled = new HashMap<>();
+        for (RawWatchEvent event : events) {
+            assertTrue(event.isReconciled());
+            reconciled.put(event.getMyPath(), event.getMyKind());
+        }
+        assertEquals(3, reconciled.size());
+        assertEquals(StandardWatchEventKinds.ENTRY_MODIFY, reconciled.get(changed));
+        assertEquals(StandardWatchEventKinds.ENTRY_DELETE, reconciled.get(removed));
+        assertEquals(StandardWatchEventKinds.ENTRY_CREATE, reconciled.get(created));
+        assertFalse(reconciled.containsKey(kept));
+    }
+
+    @Test
+    public void testFileNameMatcher() {
+        assertTrue(FileNameMatcher.compile(Set.of()).isMatchAll());
+        assertTrue(FileNameMatcher.compile(List.of(".txt", "")).isMatchAll());
+        assertTrue(FileNameMatcher.ALL.matches("anything"));
+
+        FileNameMatcher matcher = FileNameMatcher.compile(List.of(".txt", "*.tar.gz", "Makefile",
+                "report-??.csv", "*.[ch]", "regex:v\\d+\\.bin"));
+        assertFalse(matcher.isMatchAll());
+        assertTrue(matcher.matches("notes.TXT"));
+        assertTrue(matcher.matches(".txt"));
+        assertTrue(matcher.matches("backup.tar.gz"));
+        assertFalse(matcher.matches("backup.gz"));
+        assertTrue(matcher.matches("makefile"));
+        assertFalse(matcher.matches("Makefile.bak"));
+        assertTrue(matcher.matches("report-07.csv"));
+        assertFalse(matcher.matches("report-7.csv"));
+        assertTrue(matcher.matches("main.c"));
+        assertTrue(matcher.matches("v12.bin"));
+        assertFalse(matcher.matches("V12.bin"));
+        assertFalse(matcher.matches("txt"));
+    }
+
+    @Test
+    public void testIgnoredDirectoriesAreNeverRegistered(@TempDir Path tempDir)
+            throws IOException, InterruptedException {
+        Path modules = Files.createDirectories(tempDir.resolve("node_modules").resolve("pkg"));
+        Path build = Files.createDirectory(tempDir.resolve("build"));
+        Path nestedBuild = Files.createDirectories(tempDir.resolve("sub").resolve("build"));
+        Files.writeString(tempDir.resolve(".gitignore"), "# root rules\n/build/\n!keep.tmp.txt\n");
+
+        FileSystemModel model = new FileSystemModel();
+        FileWatcher watcher = new FileWatcher(model);
+        watcher.setIgnorePatterns(List.of("node_modules/", "*.tmp.txt"));
+        JdkWatchBackend backend = new JdkWatchBackend();
+        watcher.startWatching(tempDir, Set.of(".txt"), backend);
+        for (int i = 0; i < 100 && backend.getTimeToFullCoverage() < 0; i++) {
+            Thread.sleep(20);
+        }
+        // The root, sub and sub/build; only the top-level build is anchored
+        assertEquals(3, backend.getDirectoryCount());
+
+        Files.writeString(modules.resolve("a.txt"), "a");
+        Files.writeString(build.resolve("b.txt"), "b");
+        Files.writeString(tempDir.resolve("x.tmp.txt"), "x");
+        Path kept = Files.writeString(tempDir.resolve("keep.tmp.txt"), "k");
+        Path nested = Files.writeString(nestedBuild.resolve("c.txt"), "c");
+        Thread.sleep(500);
+        watcher.stopWatching();
+
+        Set<String> paths = new HashSet<>();
+        for (FileEvent event : model.getEvents()) {
+            paths.add(event.getMyPath());
+        }
+        assertEquals(Set.of(kept.toAbsolutePath().toString(), nested.toAbsolutePath().toString()), paths);
+    }
+
+    @Test
+    public void testMovedFileIsReportedAsRename(@TempDir Path tempDir)
+            throws IOException, InterruptedException {
+        Path from = Files.createDirectory(tempDir.resolve("a"));
+        Path to = Files.createDirectory(tempDir.resolve("b"));
+        Path file = Files.writeString(from.resolve("moved.txt"), "contents");
+
+        FileSystemModel model = new FileSystemModel();
+        FileWatcher watcher = new FileWatcher(model);
+        JdkWatchBackend backend = new JdkWatchBackend();
+        watcher.startWatching(tempDir, Set.of(".txt"), backend);
+        for (int i = 0; i < 100 && backend.getTimeToFullCoverage() < 0; i++) {
+            Thread.sleep(20);
+        }
+        Path moved = Files.move(file, to.resolve("moved.txt"));
+        Thread.sleep(500);
+        watcher.stopWatching();
+
+        List<FileEvent> events = model.getEvents();
+        assertEquals(1, events.size());
+        assertEquals(EventType.ENTRY_RENAME, events.get(0).getMyEventType());
+        assertEquals(moved.toAbsolutePath().toString(), events.get(0).getMyPath());
+        assertEquals(file.toAbsolutePath().toString(), events.get(0).getMyPreviousPath());
+    }
+
+    @Test
+    public void testBurstsOfChangesAreCoalesced(@TempDir Path tempDir)
+            throws IOException, InterruptedException {
+        Path existing = Files.writeString(tempDir.resolve("existing.txt"), "0");
+
+        FileSystemModel model = new FileSystemModel();
+        FileWatcher watcher = new FileWatcher(model);
+        watcher.setCoalesceWindow(200);
+        JdkWatchBackend backend = new JdkWatchBackend();
+        watcher.startWatching(tempDir, Set.of(".txt"), backend);
+        for (int i = 0; i < 100 && backend.getTimeToFullCoverage() < 0; i++) {
+            Thread.sleep(20);
+        }
+        Path created = tempDir.resolve("created.txt");
+        for (int i = 1; i <= 5; i++) {
+            Files.writeString(existing, Integer.toString(i));
+            Files.writeString(created, Integer.toString(i));
+            Thread.sleep(30);
+        }
+        Path temporary = Files.writeString(tempDir.resolve("temporary.txt"), "t");
+        Files.delete(temporary);
+        Thread.sleep(800);
+        watcher.stopWatching();
+
+        Map<String, FileEvent> events = new HashMap<>();
+        for (FileEvent event : model.getEvents()) {
+            assertNull(events.put(event.getMyFileName(), event));
+        }
+        assertEquals(Set.of("existing.txt", "created.txt"), events.keySet());
+        assertEquals(EventType.ENTRY_MODIFY, events.get("existing.txt").getMyEventType());
+        assertEquals(EventType.ENTRY_CREATE, events.get("created.txt").getMyEventType());
+        assertTrue(events.get("existing.txt").getMyCount() > 1);
+        assertTrue(events.get("created.txt").getMyCount() > 1);
+        // The size seen by the backend survives the merge
+        assertTrue(events.get("created.txt").getMyFileSize() >= 0);
+        assertFalse(events.get("created.txt").getMyLastTimeStamp()
+                .isBefore(events.get("created.txt").getMyTimeStamp()));
+    }
+
+    @Test
+    public void testSafeSavesAreReportedAsOneModification() throws ReflectiveOperationException {
+        // The detector is internal to the FileWatcher, so it is driven through reflection with explicit times
+        Class<?> type = Class.forName("model.AtomicSaveDetector");
+        Constructor<?> constructor = type.getDeclaredConstructor(long.class, SavePatterns.class, BiConsumer.class);
+        constructor.setAccessible(true);
+        Method accept = type.getDeclaredMethod("accept", Object.class, RawWatchEvent.class, long.class);
+        accept.setAccessible(true);
+        Method flush = type.getDeclaredMethod("flush", long.class);
+        flush.setAccessible(true);
+        List<String> passed = new ArrayList<>();
+        BiConsumer<Object, RawWatchEvent> downstream = (root, event) -> passed.add(event.getMyKind().name()
+                + " " + event.getMyPath().getFileName()
+                + (event.getMyPreviousPath() == null ? "" : " from " + event.getMyPreviousPath().getFileName()));
+        Object detector = constructor.newInstance(200L, SavePatterns.compile(SavePatterns.DEFAULT_PATTERNS),
+                downstream);
+        Path root = Path.of("watched").toAbsolutePath();
+        Path notes = root.resolve("notes.txt");
+        Path temporary = root.resolve("notes.txt.tmp");
+        Path backup = root.resolve("notes.txt~");
+
+        // Write a temporary file and rename it over the real one
+        accept.invoke(detector, root, new RawWatchEvent(StandardWatchEventKinds.ENTRY_CREATE, temporary), 0L);
+        accept.invoke(detector, root, new RawWatchEvent(StandardWatchEventKinds.ENTRY_MODIFY, temporary), 10L);
+        accept.invoke(detector, root, new RawWatchEvent(RawWatchEvent.ENTRY_RENAME, notes, temporary), 20L);
+        flush.invoke(detector, 100L);
+        assertEquals(List.of(), passed);
+        flush.invoke(detector, 220L);
+        assertEquals(List.of("ENTRY_MODIFY notes.txt"), passed);
+
+        // Move the real file aside, reported as its delete before the backup's create
+        passed.clear();
+        accept.invoke(detector, root, new RawWatchEvent(StandardWatchEventKinds.ENTRY_DELETE, notes), 1000L);
+        accept.invoke(detector, root, new RawWatchEvent(StandardWatchEventKinds.ENTRY_CREATE, backup), 1005L);
+        accept.invoke(detector, root, new RawWatchEvent(StandardWatchEventKinds.ENTRY_CREATE, notes), 1010L);
+        accept.invoke(detector, root, new RawWatchEvent(StandardWatchEventKinds.ENTRY_DELETE, backup), 1020L);
+        flush.invoke(detector, 1100L);
+        assertEquals(List.of(), passed);
+        flush.invoke(detector, 1220L);
+        assertEquals(List.of("ENTRY_MODIFY notes.txt"), passed);
+
+        // A delete with no save after it is passed on when its window ends
+        passed.clear();
+        accept.invoke(detector, root, new RawWatchEvent(StandardWatchEventKinds.ENTRY_DELETE,
+                root.resolve("other.txt")), 2000L);
+        flush.invoke(detector, 2100L);
+        assertEquals(List.of(), passed);
+        flush.invoke(detector, 2200L);
+        assertEquals(List.of("ENTRY_DELETE other.txt"), passed);
+
+        // ... or at once, in order, when its file is created again
+        passed.clear();
+        accept.invoke(detector, root, new RawWatchEvent(StandardWatchEventKinds.ENTRY_DELETE,
+                root.resolve("again.txt")), 3000L);
+        accept.invoke(detector, root, new RawWatchEvent(StandardWatchEventKinds.ENTRY_CREATE,
+                root.resolve("again.txt")), 3010L);
+        assertEquals(List.of("ENTRY_DELETE again.txt", "ENTRY_CREATE again.txt"), passed);
+
+        // Moved away to a file that remains, then saved anew: the rename is kept
+        passed.clear();
+        accept.invoke(detector, root, new RawWatchEvent(RawWatchEvent.ENTRY_RENAME,
+                root.resolve("notes.old"), notes), 4000L);
+        accept.invoke(detector, root, new RawWatchEvent(StandardWatchEventKinds.ENTRY_CREATE, temporary), 4010L);
+        accept.invoke(detector, root, new RawWatchEvent(RawWatchEvent.ENTRY_RENAME, notes, temporary), 4020L);
+        flush.invoke(detector, 4220L);
+        assertEquals(List.of("ENTRY_RENAME notes.old from notes.txt", "ENTRY_MODIFY notes.txt"), passed);
+
+        // Named like a temporary file, but no real file is replaced
+        passed.clear();
+        accept.invoke(detector, root, new RawWatchEvent(StandardWatchEventKinds.ENTRY_CREATE,
+                root.resolve("archive.bak")), 5000L);
+        flush.invoke(detector, 5200L);
+        assertEquals(List.of("ENTRY_CREATE archive.bak"), passed);
+    }
+
+    @Test
+    public void testSavePatternsTellTheRealFile() {
+        SavePatterns patterns = SavePatterns.compile(List.of("{name}~", ".#{name}", "tmp-*"));
+        assertEquals("a.txt", patterns.realNameOf("a.txt~"));
+        assertEquals("b.c", patterns.realNameOf(".#b.c"));
+        assertTrue(patterns.isTemporary("tmp-123"));
+        assertNull(patterns.realNameOf("tmp-123"));
+        assertFalse(patterns.isTemporary("a.txt"));
+        assertTrue(SavePatterns.compile(List.of()).isEmpty());
+    }
+
+    @Test
+    public void testGrowingFileIsReportedOnceSettled(@TempDir Path tempDir)
+            throws IOException, InterruptedException {
+        FileSystemModel model = new FileSystemModel();
+        FileWatcher watcher = new FileWatcher(model);
+        watcher.setSettleInterval(300);
+        JdkWatchBackend backend = new JdkWatchBackend();
+        watcher.startWatching(tempDir, Set.of(), backend);
+        for (int i = 0; i < 100 && backend.getTimeToFullCoverage() < 0; i++) {
+            Thread.sleep(20);
+        }
+        // A slow copy: the file grows for longer than one interval
+        Path copy = tempDir.resolve("copy.bin");
+        byte[] chunk = new byte[4096];
+        for (int i = 0; i < 10; i++) {
+            Files.write(copy, chunk, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            Thread.sleep(100);
+        }
+        assertTrue(model.getEvents().isEmpty());
+        Thread.sleep(1000);
+        watcher.stopWatching();
+
+        List<FileEvent> events = model.getEvents();
+        assertEquals(1, events.size());
+        assertEquals(EventType.ENTRY_CREATE, events.get(0).getMyEventType());
+        assertEquals(10 * chunk.length, events.get(0).getMyFileSize());
+        assertTrue(events.get(0).getMyCount() > 1);
+        assertFalse(events.get(0).getMyDuration().isNegative());
+    }
+
+    @Test
+    public void testSlowSubscribersFallBehindByTheirPolicies(@TempDir Path tempDir)
+            throws InterruptedException {
+        FileSystemModel model = new FileSystemModel();
+        FileWatcher watcher = new FileWatcher(model);
+        watcher.setRingCapacity(16);
+        Consumer<FileEvent> slow = event -> {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        List<FileEvent> spilled = new CopyOnWriteArrayList<>();
+        EventSubscription drop = watcher.subscribe("drop", BackpressurePolicy.DROP_OLDEST, slow);
+        EventSubscription merge = watcher.subscribe("merge", BackpressurePolicy.COALESCE, slow);
+        EventSubscription spill = watcher.subscribe("spill", BackpressurePolicy.SPILL,
+                slow.andThen(spilled::add));
+        // A backend reporting a burst much faster than the slow subscribers take it
+        watcher.startWatching(tempDir, Set.of(), new WatchBackend() {
+            @Override
+            public void start(final Path theRoot, final IgnoreRules theRules,
+                              final Consumer<RawWatchEvent> theSink) {
+                for (int i = 0; i < 100; i++) {
+                    Path file = theRoot.resolve("burst" + i + ".txt");
+                    theSink.accept(new RawWatchEvent(StandardWatchEventKinds.ENTRY_CREATE, file));
+                    theSink.accept(new RawWatchEvent(StandardWatchEventKinds.ENTRY_MODIFY, file));
+                }
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        for (int i = 0; i < 200 && spilled.size() < 200; i++) {
+            Thread.sleep(50);
+        }
+        watcher.stopWatching();
+
+        List<FileEvent> events = model.getEvents();
+        assertEquals(200, events.size());
+        assertEquals(events.stream().map(FileEvent::getMyPath).toList(),
+                spilled.stream().map(FileEvent::getMyPath).toList());
+        assertTrue(spill.getSpilledCount() > 0);
+        assertEquals(0, spill.getDroppedCount());
+        assertEquals(0, watcher.getSubscriptions().get(0).getDroppedCount());
+        for (int i = 0; i < 100 && drop.getDeliveredCount() + drop.getDroppedCount() < 200; i++) {
+            Thread.sleep(20);
+        }
+        assertTrue(drop.getDroppedCount() > 0);
+        assertEquals(200, drop.getDeliveredCount() + drop.getDroppedCount());
+        for (int i = 0; i < 100 && merge.getDeliveredCount() + merge.getDroppedCount()
+                + merge.getCoalescedCount() < 200; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(200, merge.getDeliveredCount() + merge.getDroppedCount() + merge.getCoalescedCount());
+        assertTrue(merge.getDeliveredCount() < 200);
+    }
+
+    @Test
+    public void testPollingBackendReportsChanges(@TempDir Path tempDir) throws IOException, InterruptedException {
+        FileSystemModel model = new FileSystemModel();
+        FileWatcher watcher = new FileWatcher(model);
+        watcher.startWatching(tempDir, Set.of(".txt"), new PollingWatchBackend(50));
+
+        Path file = tempDir.resolve("polled.txt");
+        Files.writeString(file, "a");
+        Files.writeString(tempDir.resolve("ignored.log"), "a");
+        Thread.sleep(400);
+        Files.delete(file);
+        Thread.sleep(400);
+        watcher.stopWatching();
+
+        List<FileEvent> events = model.getEvents();
+        assertEquals(2, events.size());
+        assertEquals(EventType.ENTRY_CREATE, events.get(0).getMyEventType());
+        assertEquals(EventType.ENTRY_DELETE, events.get(1).getMyEventType());
+        assertEquals(file.toAbsolutePath().toString(), events.get(1).getMyPath());
+    }
+
+    @Test
+    public void testPollingBackendFollowsNewDirectoriesAndRenames(@TempDir Path tempDir)
+            throws IOException, InterruptedException {
+        List<RawWatchEvent> events = new CopyOnWriteArrayList<>();
+        PollingWatchBackend backend = new PollingWatchBackend(20);
+        backend.start(tempDir, events::add);
+
+        Path dir = Files.createDirectory(tempDir.resolve("sub"));
+        Files.writeString(dir.resolve("inner.txt"), "a");
+        Thread.sleep(300);
+        Files.move(dir.resolve("inner.txt"), dir.resolve("renamed.txt"));
+        Thread.sleep(300);
+        assertEquals(2, backend.getDirectoryCount());
+        backend.close();
+
+        List<String> seen = events.stream()
+                .map(e -> e.getMyKind().name() + " " + tempDir.relativize(e.getMyPath()))
+                .toList();
+        assertEquals(List.of("ENTRY_CREATE sub", "ENTRY_CREATE sub/inner.txt",
+                "ENTRY_RENAME sub/renamed.txt"), seen);
+        assertEquals(dir.resolve("inner.txt"), events.get(2).getMyPreviousPath());
+    }
+
+    @Test
+    public void testInotifyBackendReportsRenameAndCloseWrite(@TempDir Path tempDir)
+            throws IOException, InterruptedException {
+        assumeTrue(InotifyWatchBackend.isSupported());
+        FileSystemModel model = new FileSystemModel();
+        FileWatcher watcher = new FileWatcher(model);
+        watcher.startWatching(tempDir, Set.of(".txt"), WatchBackendType.NATIVE);
+
+        Path file = tempDir.resolve("draft.txt");
+        Files.writeString(file, "a");
+        Files.move(file, tempDir.resolve("final.txt"));
+        Thread.sleep(300);
+        watcher.stopWatching();
+
+        List<EventType> types = model.getEvents().stream().map(FileEvent::getMyEventType).toList();
+        assertEquals(List.of(EventType.ENTRY_CREATE, EventType.ENTRY_MODIFY,
+                EventType.ENTRY_WRITE_COMPLETE, EventType.ENTRY_RENAME), types);
+        assertEquals(tempDir.resolve("final.txt").toString(), model.getEvents().get(3).getMyPath());
+    }
+
     // Tests for QueryManager class
     @Test
     public void testQueryByExtension_EmptyResult() {
@@ -16,9 +16,11 @@ import java.util.concurrent.Executors;
 import java.io.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 import model.DatabaseManager; // Added for database access
 import model.FileEvent; // Added for FileEvent creation
 import model.EventType; // Added for EventType parsing
+import model.FileNameMatcher;
 
 /**
  * FileWatcherView is the main GUI component for the File Watcher application.
@@ -130,6 +132,9 @@ public class FileWatcherView implements PropertyChangeListener {
     /** Currently selected file extension filter. */
     private String currentExtension = "";
 
+    /** Matches the names of the files shown, compiled from the selected filter. */
+    private FileNameMatcher currentFilter = FileNameMatcher.ALL;
+
     /** PropertyChangeSupport for MVC communication. */
     private final PropertyChangeSupport support = new PropertyChangeSupport(this);
 
@@ -340,6 +345,8 @@ public class FileWatcherView implements PropertyChangeListener {
 
         currentWatchPath = directorySelector.getText().trim();
         currentExtension = (String) extensionSelector.getSelectedItem();
+        currentFilter = currentExtension == null ? FileNameMatcher.ALL
+                : FileNameMatcher.compile(List.of(currentExtension));
 
         if (currentWatchPath.isEmpty()) {
             JOptionPane.showMessageDialog(mainFrame,
@@ -461,11 +468,9 @@ public class FileWatcherView implements PropertyChangeListener {
         Path fileName = (Path) event.context();
         String fileNameStr = fileName.toString();
 
-        // Apply extension filter if specified
-        if (currentExtension != null && !currentExtension.isEmpty()) {
-            if (!fileNameStr.toLowerCase().endsWith(currentExtension.toLowerCase())) {
-                return;
-            }
+        // Apply the same file name filter as the FileWatcher
+        if (!currentFilter.matches(fileNameStr)) {
+            return;
         }
 
         SwingUtilities.invokeLater(() -> addFileEventToTable(fileNameStr, kind.name(), currentWatchPath));
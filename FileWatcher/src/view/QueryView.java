@@ -9,10 +9,11 @@ import java.time.LocalDateTime;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import model.EventQuery;
 import model.QueryManager;
 import model.FileEvent;
 import model.EventType;
-import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Enhanced QueryView with comprehensive search capabilities.
@@ -51,7 +52,7 @@ public class QueryView {
 
     // Event types for dropdown (matching backend EventType enum)
     private final String[] eventTypes = {
-            "ALL", "ENTRY_CREATE", "ENTRY_MODIFY", "ENTRY_DELETE"
+            "ALL", "ENTRY_CREATE", "ENTRY_MODIFY", "ENTRY_DELETE", "ENTRY_RENAME", "ENTRY_WRITE_COMPLETE"
     };
 
     // Reference to main view and QueryManager
@@ -317,8 +318,9 @@ public class QueryView {
             if (!extension.isEmpty() && !extension.startsWith(".")) {
                 extension = "." + extension;
             }
-            List<FileEvent> events = queryManager.queryByExtension(extension);
-            populateTable(events);
+            try (Stream<FileEvent> events = queryManager.streamByExtension(extension)) {
+                populateTable(events);
+            }
             showMessage("Queried by extension: " + (extension.isEmpty() ? "ALL files" : extension),
                     "Extension Search", JOptionPane.INFORMATION_MESSAGE);
             checkNoResults("extension: " + (extension.isEmpty() ? "ALL files" : extension));
@@ -338,21 +340,15 @@ public class QueryView {
 
         tableModel.setRowCount(0);
         try {
-            List<FileEvent> events = queryManager.queryByExtension(extension.isEmpty() ? null : "." + extension);
+            EventQuery query = new EventQuery()
+                    .withExtension(extension.isEmpty() || extension.startsWith(".") ? extension : "." + extension)
+                    .withFileName(filename);
             if (!eventTypeStr.equals("ALL")) {
-                EventType eventType = EventType.valueOf(eventTypeStr);
-                events = events.stream()
-                        .filter(e -> e.getMyEventType() == eventType)
-                        .toList();
+                query.withEventType(EventType.valueOf(eventTypeStr));
             }
-
-            if (!filename.isEmpty()) {
-                String finalFilename = filename.toLowerCase();
-                events = events.stream()
-                        .filter(e -> e.getMyFileName().toLowerCase().contains(finalFilename))
-                        .toList();
+            try (Stream<FileEvent> events = queryManager.stream(query)) {
+                populateTable(events);
             }
-            populateTable(events);
             StringBuilder summary = new StringBuilder("Advanced Search Applied:");
             if (!extension.isEmpty()) summary.append("\n• Extension: ").append("." + extension);
             if (!eventTypeStr.equals("ALL")) summary.append("\n• Event Type: ").append(eventTypeStr);
@@ -386,22 +382,20 @@ public class QueryView {
     // ------ Helper Methods -------
 
     /**
-     * This method populates the table.
+     * This method populates the table from a stream, one row at a time,
+     * so the results never have to be held in a list.
      *
      * @param events
      */
-    private void populateTable(final List<FileEvent> events) {
-        for (int i = 0; i < events.size(); i++) {
-            FileEvent event = events.get(i);
-            tableModel.addRow(new Object[]{
-                    i + 1,
-                    event.getMyFileExtension(),
-                    event.getMyFileName(),
-                    event.getMyPath(),
-                    event.getMyEventType().toString(),
-                    event.getMyTimeStamp().format(dateTimeFormatter)
-            });
-        }
+    private void populateTable(final Stream<FileEvent> events) {
+        events.forEach(event -> tableModel.addRow(new Object[]{
+                tableModel.getRowCount() + 1,
+                event.getMyFileExtension(),
+                event.getMyFileName(),
+                event.getMyPath(),
+                event.getMyEventType().toString(),
+                event.getMyTimeStamp().format(dateTimeFormatter)
+        }));
     }
 
     /**